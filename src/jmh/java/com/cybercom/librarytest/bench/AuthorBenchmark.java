@@ -0,0 +1,87 @@
+package com.cybercom.librarytest.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cybercom.librarytest.model.Author;
+
+/**
+ * Measures the operations on authors that rely on {@link Author#equals}
+ * and {@link Author#compareTo}: sorting a list of authors, looking an
+ * author up in the author list of a book, as the service does before
+ * adding an author, and comparing equal authors that are distinct
+ * instances, as when an author of a request is checked against the
+ * database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthorBenchmark {
+
+	@Param({"10", "1000"})
+	public int authors;
+
+	private List<Author> inOrder;
+	private List<Author> shuffled;
+	private Author missing;
+	private Author[] copies;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		inOrder = new ArrayList<>();
+		copies = new Author[authors];
+		for (int i = 0; i < authors; i++) {
+			inOrder.add(new Author((long)i + 1, "Author name " + i));
+			copies[i] = new Author((long)i + 1, "Author name " + i);
+		}
+		shuffled = new ArrayList<>(inOrder);
+		Collections.shuffle(shuffled, new Random(1));
+		missing = new Author((long)authors + 1, "Author name " + authors);
+	}
+
+	@Benchmark
+	public List<Author> sort() {
+		List<Author> list = new ArrayList<>(shuffled);
+		Collections.sort(list);
+		return list;
+	}
+
+	/**
+	 * Looks up an author that is not in the list, which compares it with
+	 * every author.
+	 */
+	@Benchmark
+	public boolean contains() {
+		return inOrder.contains(missing);
+	}
+
+	@Benchmark
+	public int equalCopies() {
+		int equal = 0;
+		for (int i = 0; i < copies.length; i++) {
+			if (copies[i].equals(inOrder.get(i))) {
+				equal++;
+			}
+		}
+		return equal;
+	}
+}
@@ -0,0 +1,199 @@
+package com.cybercom.librarytest.bench;
+
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.jboss.resteasy.core.Dispatcher;
+import org.jboss.resteasy.mock.MockDispatcherFactory;
+import org.jboss.resteasy.mock.MockHttpRequest;
+import org.jboss.resteasy.mock.MockHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cybercom.librarytest.LocalEntityManagerFactory;
+import com.cybercom.librarytest.cache.EntityCache;
+import com.cybercom.librarytest.cache.RepresentationCache;
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.rest.ApplicationConfig;
+import com.cybercom.librarytest.search.IsbnIndex;
+import com.cybercom.librarytest.search.SearchIndex;
+
+/**
+ * Measures the resource methods of the book service in-process: requests
+ * are dispatched by the RESTEasy mock dispatcher, with the providers,
+ * filters and interceptors of the application, to resources backed by an
+ * in-memory H2 database holding {@value #BOOKS} books. The response body
+ * is produced but not sent over a network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookRestServiceBenchmark {
+
+	static final int BOOKS = 1000;
+	static final int AUTHORS = 100;
+
+	private static final String XML_BOOK = "<book><title>Benchmark book</title>"
+			+ "<description>A book created by the benchmark.</description>"
+			+ "<nbOfPage>100</nbOfPage></book>";
+	private static final String JSON_BOOK = "{\"book\":{\"title\":\"Benchmark book\","
+			+ "\"description\":\"A book created by the benchmark.\",\"nbOfPage\":100}}";
+
+	private static final String[] SEARCHES = {"snowman", "crakers", "apocalypse", "book 7"};
+
+	@Param({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+	public String mediaType;
+
+	private Dispatcher dispatcher;
+	private List<Long> bookIds;
+	private byte[] newBook;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+		LocalEntityManagerFactory.initialize(dataSource);
+		bookIds = createLibrary();
+		dispatcher = createDispatcher();
+		newBook = (mediaType.equals(MediaType.APPLICATION_XML) ? XML_BOOK : JSON_BOOK)
+				.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public byte[] getBook() throws URISyntaxException {
+		return get("/books/" + nextBookId());
+	}
+
+	/**
+	 * Gets a book with empty caches, so that it is read from the database
+	 * and encoded.
+	 */
+	@Benchmark
+	public byte[] getBookUncached() throws URISyntaxException {
+		EntityCache.BOOKS.clear();
+		RepresentationCache.BOOKS.clear();
+		return get("/books/" + nextBookId());
+	}
+
+	@Benchmark
+	public byte[] getPageOfBooks() throws URISyntaxException {
+		return get("/books?limit=100&after=" + (next++ % (BOOKS / 100)) * 100);
+	}
+
+	@Benchmark
+	public byte[] getBooksForAuthor() throws URISyntaxException {
+		return get("/books/byauthor/" + (next++ % AUTHORS + 1));
+	}
+
+	@Benchmark
+	public byte[] searchBooks() throws URISyntaxException {
+		return get("/books/search?q=" + SEARCHES[next++ % SEARCHES.length].replace(' ', '+'));
+	}
+
+	@Benchmark
+	public byte[] createAndDeleteBook() throws URISyntaxException {
+		MockHttpRequest request = MockHttpRequest.post("/books")
+				.contentType(mediaType).content(newBook);
+		MockHttpResponse response = invoke(request, 201);
+		String location = response.getOutputHeaders().getFirst(HttpHeaders.LOCATION).toString();
+		String id = location.substring(location.lastIndexOf('/') + 1);
+		invoke(MockHttpRequest.delete("/books/" + id), 204);
+		return response.getOutput();
+	}
+
+	private Long nextBookId() {
+		return bookIds.get(next++ % bookIds.size());
+	}
+
+	private byte[] get(String uri) throws URISyntaxException {
+		return invoke(MockHttpRequest.get(uri).accept(mediaType), 200).getOutput();
+	}
+
+	private MockHttpResponse invoke(MockHttpRequest request, int expectedStatus) {
+		MockHttpResponse response = new MockHttpResponse();
+		dispatcher.invoke(request, response);
+		if (response.getStatus() != expectedStatus) {
+			throw new IllegalStateException(request.getHttpMethod() + " " + request.getUri().getPath()
+					+ " returned " + response.getStatus() + ": " + response.getContentAsString());
+		}
+		return response;
+	}
+
+	/**
+	 * Adds {@value #AUTHORS} authors and {@value #BOOKS} books with two
+	 * authors each to the database and rebuilds the indexes.
+	 * @return The ids of the books.
+	 */
+	static List<Long> createLibrary() {
+		EntityManager em = LocalEntityManagerFactory.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			List<Author> authors = new ArrayList<>();
+			for (int i = 0; i < AUTHORS; i++) {
+				Author author = new Author("Benchmark author " + i);
+				em.persist(author);
+				authors.add(author);
+			}
+			List<Book> books = MediaTypeBenchmark.createBooks(BOOKS);
+			for (int i = 0; i < books.size(); i++) {
+				Book book = books.get(i);
+				book.setId(null);
+				book.setIsbn(null);
+				book.getAuthors().clear();
+				book.getAuthors().add(authors.get(i % AUTHORS));
+				book.getAuthors().add(authors.get((i + 1) % AUTHORS));
+				em.persist(book);
+			}
+			em.getTransaction().commit();
+			SearchIndex.BOOKS.rebuild(em);
+			IsbnIndex.BOOKS.rebuild(em);
+			List<Long> ids = new ArrayList<>();
+			for (Book book : books) {
+				ids.add(book.getId());
+			}
+			return ids;
+		} finally {
+			em.close();
+		}
+	}
+
+	/**
+	 * Creates a dispatcher with the resources and providers of the
+	 * application.
+	 */
+	static Dispatcher createDispatcher() {
+		Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+		for (Class<?> type : new ApplicationConfig().getClasses()) {
+			if (type.isAnnotationPresent(Path.class)) {
+				dispatcher.getRegistry().addPerRequestResource(type);
+			} else {
+				dispatcher.getProviderFactory().register(type);
+			}
+		}
+		return dispatcher;
+	}
+}
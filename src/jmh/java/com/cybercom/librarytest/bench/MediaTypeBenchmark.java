@@ -0,0 +1,143 @@
+package com.cybercom.librarytest.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+
+import org.jboss.resteasy.plugins.providers.RegisterBuiltin;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.Books;
+import com.cybercom.librarytest.rest.BinaryProvider;
+import com.cybercom.librarytest.rest.JsonProvider;
+
+/**
+ * Compares the XML, JSON and binary providers on lists of books and of
+ * authors: the time to encode and to decode a list, as the server does for
+ * a response and a request. The providers are the ones RESTEasy selects for each media type;
+ * the "jettison" format is JSON with the built-in Jettison provider that
+ * the JSON provider of the service replaces. The encoded size of each list
+ * is printed when a trial starts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MediaTypeBenchmark {
+
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+	@Param({"xml", "json", "jettison", "binary"})
+	public String format;
+
+	@Param({"books", "authors"})
+	public String list;
+
+	@Param({"1", "100", "1000"})
+	public int size;
+
+	private Class<Object> type;
+	private MediaType mediaType;
+	private MessageBodyWriter<Object> writer;
+	private MessageBodyReader<Object> reader;
+	private Object entity;
+	private byte[] encoded;
+	private ByteArrayOutputStream output;
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp() throws IOException {
+		ResteasyProviderFactory factory = new ResteasyProviderFactory();
+		RegisterBuiltin.register(factory);
+		factory.registerProvider(BinaryProvider.class);
+		if (!format.equals("jettison")) {
+			factory.registerProvider(JsonProvider.class);
+		}
+		ResteasyProviderFactory.pushContext(Providers.class, factory);
+		type = (Class<Object>)(Class<?>)(list.equals("books") ? Books.class : Authors.class);
+		mediaType = format.equals("xml") ? MediaType.APPLICATION_XML_TYPE
+				: format.equals("binary") ? BinaryProvider.MEDIA_TYPE_TYPE
+				: MediaType.APPLICATION_JSON_TYPE;
+		writer = factory.getMessageBodyWriter(type, type, NO_ANNOTATIONS, mediaType);
+		reader = factory.getMessageBodyReader(type, type, NO_ANNOTATIONS, mediaType);
+		entity = list.equals("books") ? createBooks(size) : createAuthors(size);
+		output = new ByteArrayOutputStream();
+		encoded = encode();
+		System.out.println(format + ", " + size + " " + list + ": " + encoded.length + " bytes");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		ResteasyProviderFactory.clearContextData();
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		output.reset();
+		writer.writeTo(entity, type, type, NO_ANNOTATIONS, mediaType,
+				new MultivaluedHashMap<String, Object>(), output);
+		return output.toByteArray();
+	}
+
+	@Benchmark
+	public Object decode() throws IOException {
+		return reader.readFrom(type, type, NO_ANNOTATIONS, mediaType,
+				new MultivaluedHashMap<String, String>(), new ByteArrayInputStream(encoded));
+	}
+
+	/**
+	 * Creates books like those of the service: a title, a description of a
+	 * few sentences, an ISBN and two authors.
+	 */
+	static Books createBooks(int count) {
+		Books books = new Books();
+		for (int i = 0; i < count; i++) {
+			Book book = new Book((long)i + 1, "The title of book number " + i,
+					"The novel focuses on a post-apocalyptic character named Snowman, "
+					+ "living near a group of primitive human-like creatures whom he "
+					+ "calls Crakers. Book " + i + ".",
+					"978-0-575-04800-3", 100 + i % 500);
+			book.getAuthors().add(new Author((long)i % 100 + 1, "Author name " + i % 100));
+			book.getAuthors().add(new Author((long)i % 37 + 101, "Second author " + i % 37));
+			books.add(book);
+		}
+		return books;
+	}
+
+	/**
+	 * Creates authors with names of the usual length.
+	 */
+	static Authors createAuthors(int count) {
+		Authors authors = new Authors();
+		for (int i = 0; i < count; i++) {
+			authors.add(new Author((long)i + 1, "Author name " + i));
+		}
+		return authors;
+	}
+}
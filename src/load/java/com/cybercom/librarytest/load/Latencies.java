@@ -0,0 +1,82 @@
+package com.cybercom.librarytest.load;
+
+import java.util.Arrays;
+
+/**
+ * The latencies of the requests of one operation, in nanoseconds. Every
+ * latency is kept, so that the percentiles are exact; a client records
+ * into its own instance, and the instances of all clients are merged at
+ * the end of the run.
+ */
+class Latencies {
+
+	private long[] values = new long[1024];
+	private int count;
+	private int errors;
+
+	void record(long nanos) {
+		if (count == values.length) {
+			values = Arrays.copyOf(values, count * 2);
+		}
+		values[count++] = nanos;
+	}
+
+	/**
+	 * Counts a request that failed or got an unexpected status. Its latency
+	 * is not recorded.
+	 */
+	void error() {
+		errors++;
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	int getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Adds the latencies and errors of another instance to this one.
+	 */
+	void add(Latencies other) {
+		if (count + other.count > values.length) {
+			values = Arrays.copyOf(values, count + other.count);
+		}
+		System.arraycopy(other.values, 0, values, count, other.count);
+		count += other.count;
+		errors += other.errors;
+	}
+
+	/**
+	 * Returns the summary of the latencies in milliseconds: the mean, the
+	 * 50th, 99th and 99.9th percentile and the maximum, in that order.
+	 * Sorts the latencies.
+	 */
+	double[] summary() {
+		if (count == 0) {
+			return new double[5];
+		}
+		Arrays.sort(values, 0, count);
+		long sum = 0;
+		for (int i = 0; i < count; i++) {
+			sum += values[i];
+		}
+		return new double[] {millis(sum / count), millis(percentile(0.5)),
+				millis(percentile(0.99)), millis(percentile(0.999)), millis(values[count - 1])};
+	}
+
+	/**
+	 * Returns the smallest latency that is greater than or equal to the
+	 * given fraction of the latencies. The latencies must be sorted.
+	 */
+	private long percentile(double fraction) {
+		int rank = (int)Math.ceil(fraction * count);
+		return values[Math.max(rank, 1) - 1];
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+}
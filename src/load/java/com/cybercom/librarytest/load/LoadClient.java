@@ -0,0 +1,185 @@
+package com.cybercom.librarytest.load;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.cybercom.librarytest.model.Author;
+
+/**
+ * One client of the load test. It sends the operations of the mix one
+ * after the other, picking each at random by its weight, and records the
+ * latencies of those that start after the warmup.
+ */
+class LoadClient implements Runnable {
+
+	static final String[] WORDS = {"snowman", "apocalypse", "garden", "river", "winter",
+			"machine", "ocean", "forest"};
+
+	private final WebTarget root;
+	private final MediaType mediaType;
+	private final List<Long> bookIds;
+	private final List<Author> authors;
+	private final Operation[] schedule;
+	private final long measureStart;
+	private final long end;
+	private final Random random;
+	private final Map<Operation, Latencies> latencies = new EnumMap<>(Operation.class);
+
+	private Long ownBookId;
+	private int ownAuthorStart;
+	private int ownAuthors;
+	private int created;
+
+	/**
+	 * @param schedule The operations of the mix, each repeated as many times
+	 * as its weight.
+	 * @param measureStart The {@link System#nanoTime} at which the warmup
+	 * ends.
+	 * @param end The {@link System#nanoTime} at which the run ends.
+	 */
+	LoadClient(WebTarget root, MediaType mediaType, List<Long> bookIds, List<Author> authors,
+			Operation[] schedule, long measureStart, long end, long seed) {
+		this.root = root;
+		this.mediaType = mediaType;
+		this.bookIds = bookIds;
+		this.authors = authors;
+		this.schedule = schedule;
+		this.measureStart = measureStart;
+		this.end = end;
+		this.random = new Random(seed);
+		for (Operation operation : schedule) {
+			latencies.put(operation, new Latencies());
+		}
+	}
+
+	@Override
+	public void run() {
+		while (System.nanoTime() < end) {
+			Operation operation = schedule[random.nextInt(schedule.length)];
+			operation.prepare(this);
+			long start = System.nanoTime();
+			boolean ok;
+			try {
+				ok = operation.call(this);
+			} catch (RuntimeException e) {
+				ok = false;
+			}
+			long latency = System.nanoTime() - start;
+			if (start >= measureStart) {
+				if (ok) {
+					latencies.get(operation).record(latency);
+				} else {
+					latencies.get(operation).error();
+				}
+			}
+		}
+	}
+
+	Map<Operation, Latencies> getLatencies() {
+		return latencies;
+	}
+
+	MediaType getMediaType() {
+		return mediaType;
+	}
+
+	WebTarget path(Object... segments) {
+		WebTarget target = root;
+		for (Object segment : segments) {
+			target = target.path(String.valueOf(segment));
+		}
+		return target;
+	}
+
+	Long randomBookId() {
+		return bookIds.get(random.nextInt(bookIds.size()));
+	}
+
+	Author randomAuthor() {
+		return authors.get(random.nextInt(authors.size()));
+	}
+
+	String randomWord() {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+	/**
+	 * Sends a GET accepting the media type of the test.
+	 * @return The status of the response, or -1 if there was none.
+	 */
+	int get(WebTarget target) {
+		return send(target.request(mediaType).buildGet());
+	}
+
+	/**
+	 * Sends the request and reads and discards the body of the response.
+	 * @return The status of the response, or -1 if there was none.
+	 */
+	int send(Invocation invocation) {
+		try {
+			Response response = invocation.invoke();
+			try {
+				if (response.hasEntity()) {
+					response.readEntity(byte[].class);
+				}
+				return response.getStatus();
+			} finally {
+				response.close();
+			}
+		} catch (ProcessingException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Creates a new book.
+	 * @return The id of the book, or null if it was not created.
+	 */
+	Long createBook() {
+		String word = randomWord();
+		Response response = root.path("books").request()
+				.post(Entity.entity(Operation.newBook(word, created++), mediaType));
+		try {
+			if (response.getStatus() != 201) {
+				return null;
+			}
+			String location = response.getHeaderString(HttpHeaders.LOCATION);
+			return Long.valueOf(location.substring(location.lastIndexOf('/') + 1));
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Creates a new book for the client to add authors to, unless the
+	 * current one has fewer than the given number of authors.
+	 */
+	void ensureOwnBook(int maxAuthors) {
+		if (ownBookId == null || ownAuthors >= maxAuthors) {
+			ownBookId = createBook();
+			ownAuthorStart = random.nextInt(authors.size());
+			ownAuthors = 0;
+		}
+	}
+
+	Long getOwnBookId() {
+		return ownBookId;
+	}
+
+	/**
+	 * Returns an author that the book of the client does not have yet.
+	 */
+	Author nextAuthorOfOwnBook() {
+		return authors.get((ownAuthorStart + ownAuthors++) % authors.size());
+	}
+}
@@ -0,0 +1,271 @@
+package com.cybercom.librarytest.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+
+import com.cybercom.librarytest.EmbeddedServer;
+import com.cybercom.librarytest.LocalEntityManagerFactory;
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.BatchResult;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.Books;
+
+/**
+ * Load test of the service. Starts the application on an
+ * {@link EmbeddedServer} on a free port, with an in-memory H2 database,
+ * creates a catalog of books and authors through the batch endpoints and
+ * has a number of concurrent clients send a mix of requests for a fixed
+ * time. Each client waits for a response before it
+ * sends its next request. The throughput and the latency percentiles of
+ * every operation and of the whole mix are printed and written to a JSON
+ * file.
+ * <p>
+ * The options are given as <code>name=value</code> arguments:
+ * <ul>
+ * <li><code>clients</code> - the number of concurrent clients (32)</li>
+ * <li><code>threads</code> - the number of worker threads of the server (32)</li>
+ * <li><code>warmup</code> - the seconds before the latencies are recorded (10)</li>
+ * <li><code>duration</code> - the seconds during which they are recorded (30)</li>
+ * <li><code>books</code>, <code>authors</code> - the size of the catalog (1000, 100)</li>
+ * <li><code>mediaType</code> - the media type of the requests and responses
+ * (application/json)</li>
+ * <li><code>mix</code> - the operations as comma separated
+ * <code>name:weight</code> pairs, see {@link #DEFAULT_MIX}</li>
+ * <li><code>output</code> - the JSON report (target/load-test.json)</li>
+ * </ul>
+ */
+public class LoadHarness {
+
+	static final String DEFAULT_MIX =
+			"getBook:40,listBooks:10,listByAuthor:15,search:10,getAuthor:10,createBook:10,addAuthor:5";
+
+	private static final int BATCH_SIZE = 500;
+
+	private final Map<String, String> options = new LinkedHashMap<>();
+
+	private LoadHarness(String[] args) {
+		options.put("clients", "32");
+		options.put("threads", "32");
+		options.put("warmup", "10");
+		options.put("duration", "30");
+		options.put("books", "1000");
+		options.put("authors", "100");
+		options.put("mediaType", MediaType.APPLICATION_JSON);
+		options.put("mix", DEFAULT_MIX);
+		options.put("output", "target/load-test.json");
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0 || !options.containsKey(arg.substring(0, separator))) {
+				throw new IllegalArgumentException("Unknown option " + arg + ".");
+			}
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		new LoadHarness(args).run();
+		System.exit(0);
+	}
+
+	private void run() throws Exception {
+		int clients = intOption("clients");
+		MediaType mediaType = MediaType.valueOf(options.get("mediaType"));
+		Map<Operation, Integer> mix = parseMix(options.get("mix"));
+		if (intOption("authors") < Operation.MAX_AUTHORS_PER_BOOK) {
+			throw new IllegalArgumentException("The catalog needs at least "
+					+ Operation.MAX_AUTHORS_PER_BOOK + " authors.");
+		}
+
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:load;DB_CLOSE_DELAY=-1");
+		LocalEntityManagerFactory.initialize(dataSource);
+		EmbeddedServer server = new EmbeddedServer("localhost", 0,
+				Math.max(2, Runtime.getRuntime().availableProcessors()), intOption("threads"));
+		server.start();
+		Client client = new ResteasyClientBuilder()
+				.connectionPoolSize(clients)
+				.maxPooledPerRoute(clients)
+				.build();
+		try {
+			WebTarget root = client.target(server.getBaseUri());
+			List<Author> authors = createAuthors(root, intOption("authors"));
+			List<Long> bookIds = createBooks(root, intOption("books"), authors);
+			System.out.println("Created " + authors.size() + " authors and " + bookIds.size()
+					+ " books on " + server.getBaseUri());
+
+			List<Operation> schedule = new ArrayList<>();
+			for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+				for (int i = 0; i < entry.getValue(); i++) {
+					schedule.add(entry.getKey());
+				}
+			}
+			long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(intOption("warmup"));
+			long end = measureStart + TimeUnit.SECONDS.toNanos(intOption("duration"));
+			List<LoadClient> loadClients = new ArrayList<>();
+			ExecutorService executor = Executors.newFixedThreadPool(clients);
+			for (int i = 0; i < clients; i++) {
+				LoadClient loadClient = new LoadClient(root, mediaType, bookIds, authors,
+						schedule.toArray(new Operation[schedule.size()]), measureStart, end, i);
+				loadClients.add(loadClient);
+				executor.execute(loadClient);
+			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+			Map<Operation, Latencies> latencies = new EnumMap<>(Operation.class);
+			Latencies total = new Latencies();
+			for (Operation operation : mix.keySet()) {
+				latencies.put(operation, new Latencies());
+			}
+			for (LoadClient loadClient : loadClients) {
+				for (Map.Entry<Operation, Latencies> entry : loadClient.getLatencies().entrySet()) {
+					latencies.get(entry.getKey()).add(entry.getValue());
+					total.add(entry.getValue());
+				}
+			}
+			writeReport(latencies, total, new File(options.get("output")));
+		} finally {
+			client.close();
+			server.stop();
+		}
+	}
+
+	/**
+	 * Parses the mix option into the weights of the operations.
+	 */
+	static Map<Operation, Integer> parseMix(String mix) {
+		Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+		for (String entry : mix.split(",")) {
+			String[] nameAndWeight = entry.trim().split(":");
+			if (nameAndWeight.length != 2) {
+				throw new IllegalArgumentException("Expected name:weight, got " + entry + ".");
+			}
+			int weight = Integer.parseInt(nameAndWeight[1]);
+			if (weight > 0) {
+				weights.put(Operation.forName(nameAndWeight[0]), weight);
+			}
+		}
+		if (weights.isEmpty()) {
+			throw new IllegalArgumentException("The mix has no operations.");
+		}
+		return weights;
+	}
+
+	private static List<Author> createAuthors(WebTarget root, int count) {
+		List<Author> authors = new ArrayList<>();
+		for (int start = 0; start < count; start += BATCH_SIZE) {
+			Authors batch = new Authors();
+			for (int i = start; i < Math.min(start + BATCH_SIZE, count); i++) {
+				batch.add(new Author("Load test author " + i));
+			}
+			List<Long> ids = postBatch(root.path("authors").path("batch"), batch);
+			for (int i = 0; i < ids.size(); i++) {
+				authors.add(new Author(ids.get(i), batch.get(i).getName()));
+			}
+		}
+		return authors;
+	}
+
+	/**
+	 * Creates the given number of books with two authors each.
+	 */
+	private static List<Long> createBooks(WebTarget root, int count, List<Author> authors) {
+		List<Long> ids = new ArrayList<>();
+		for (int start = 0; start < count; start += BATCH_SIZE) {
+			Books batch = new Books();
+			for (int i = start; i < Math.min(start + BATCH_SIZE, count); i++) {
+				Book book = Operation.newBook(LoadClient.WORDS[i % LoadClient.WORDS.length], i);
+				book.getAuthors().add(authors.get(i % authors.size()));
+				book.getAuthors().add(authors.get((i + 1) % authors.size()));
+				batch.add(book);
+			}
+			ids.addAll(postBatch(root.path("books").path("batch"), batch));
+		}
+		return ids;
+	}
+
+	private static List<Long> postBatch(WebTarget target, Object batch) {
+		BatchResult result = target.request(MediaType.APPLICATION_XML)
+				.post(Entity.entity(batch, MediaType.APPLICATION_XML), BatchResult.class);
+		if (!result.getErrors().isEmpty()) {
+			throw new IllegalStateException("The catalog could not be created: "
+					+ result.getErrors().get(0).getMessage());
+		}
+		return result.getCreated();
+	}
+
+	/**
+	 * Prints the results and writes them as JSON to the given file.
+	 */
+	private void writeReport(Map<Operation, Latencies> latencies, Latencies total, File file)
+			throws IOException {
+		double seconds = intOption("duration");
+		StringBuilder json = new StringBuilder("{\n  \"options\": {");
+		String separator = "\n";
+		for (Map.Entry<String, String> option : options.entrySet()) {
+			json.append(separator).append("    \"").append(option.getKey()).append("\": \"")
+					.append(option.getValue()).append('"');
+			separator = ",\n";
+		}
+		json.append("\n  },\n  \"total\": ");
+		appendResult(json, "total", total, seconds);
+		json.append(",\n  \"operations\": {");
+		separator = "\n    ";
+		for (Map.Entry<Operation, Latencies> entry : latencies.entrySet()) {
+			json.append(separator).append('"').append(entry.getKey().getName()).append("\": ");
+			appendResult(json, entry.getKey().getName(), entry.getValue(), seconds);
+			separator = ",\n    ";
+		}
+		json.append("\n  }\n}\n");
+
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory + ".");
+		}
+		try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+			out.print(json);
+		}
+		System.out.println("Wrote " + file);
+	}
+
+	/**
+	 * Appends the result of one operation as a JSON object and prints it.
+	 */
+	private static void appendResult(StringBuilder json, String name, Latencies latencies,
+			double seconds) {
+		double[] summary = latencies.summary();
+		double throughput = latencies.getCount() / seconds;
+		json.append(String.format(Locale.ROOT, "{\"requests\": %d, \"errors\": %d, "
+				+ "\"throughput\": %.1f, \"meanMs\": %.3f, \"p50Ms\": %.3f, \"p99Ms\": %.3f, "
+				+ "\"p999Ms\": %.3f, \"maxMs\": %.3f}", latencies.getCount(), latencies.getErrors(),
+				throughput, summary[0], summary[1], summary[2], summary[3], summary[4]));
+		System.out.println(String.format(Locale.ROOT, "%-12s %8d requests %5d errors %9.1f/s"
+				+ "   mean %8.3f ms  p50 %8.3f ms  p99 %8.3f ms  p99.9 %8.3f ms  max %8.3f ms",
+				name, latencies.getCount(), latencies.getErrors(), throughput, summary[0],
+				summary[1], summary[2], summary[3], summary[4]));
+	}
+
+	private int intOption(String name) {
+		return Integer.parseInt(options.get(name));
+	}
+}
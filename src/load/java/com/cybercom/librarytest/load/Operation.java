@@ -0,0 +1,126 @@
+package com.cybercom.librarytest.load;
+
+import javax.ws.rs.client.Entity;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Book;
+
+/**
+ * The requests the load test sends, each to one endpoint of the service.
+ * The books and authors they refer to are picked at random from the
+ * catalog the test created; writes go to books of the client's own.
+ */
+enum Operation {
+
+	GET_BOOK("getBook") {
+		@Override
+		boolean call(LoadClient client) {
+			return client.get(client.path("books", client.randomBookId())) == 200;
+		}
+	},
+
+	LIST_BOOKS("listBooks") {
+		@Override
+		boolean call(LoadClient client) {
+			return client.get(client.path("books").queryParam("limit", PAGE_SIZE)
+					.queryParam("after", client.randomBookId())) == 200;
+		}
+	},
+
+	LIST_BY_AUTHOR("listByAuthor") {
+		@Override
+		boolean call(LoadClient client) {
+			return client.get(client.path("books", "byauthor",
+					client.randomAuthor().getId())) == 200;
+		}
+	},
+
+	SEARCH("search") {
+		@Override
+		boolean call(LoadClient client) {
+			return client.get(client.path("books", "search")
+					.queryParam("q", client.randomWord())) == 200;
+		}
+	},
+
+	GET_AUTHOR("getAuthor") {
+		@Override
+		boolean call(LoadClient client) {
+			return client.get(client.path("authors", client.randomAuthor().getId())) == 200;
+		}
+	},
+
+	CREATE_BOOK("createBook") {
+		@Override
+		boolean call(LoadClient client) {
+			return client.createBook() != null;
+		}
+	},
+
+	/**
+	 * Adds the next author to the book of the client, which gets a new book
+	 * when it has {@value #MAX_AUTHORS_PER_BOOK} authors, so that the books
+	 * written to do not grow without bound.
+	 */
+	ADD_AUTHOR("addAuthor") {
+		@Override
+		void prepare(LoadClient client) {
+			client.ensureOwnBook(MAX_AUTHORS_PER_BOOK);
+		}
+
+		@Override
+		boolean call(LoadClient client) {
+			Author author = client.nextAuthorOfOwnBook();
+			return client.send(client.path("books", client.getOwnBookId(), "authors").request()
+					.buildPost(Entity.entity(author, client.getMediaType()))) == 200;
+		}
+	};
+
+	static final int PAGE_SIZE = 20;
+	static final int MAX_AUTHORS_PER_BOOK = 10;
+
+	private final String name;
+
+	Operation(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of the operation in the mix option and the report.
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Does the work the request depends on and that should not be timed
+	 * with it.
+	 */
+	void prepare(LoadClient client) {
+	}
+
+	/**
+	 * Sends the request and reads the whole response.
+	 * @return True if the response had the expected status.
+	 */
+	abstract boolean call(LoadClient client);
+
+	static Operation forName(String name) {
+		for (Operation operation : values()) {
+			if (operation.name.equals(name)) {
+				return operation;
+			}
+		}
+		throw new IllegalArgumentException("Unknown operation " + name + ".");
+	}
+
+	/**
+	 * Returns a new book for the catalog of the load test, without an ISBN
+	 * so that any number of them can be created.
+	 */
+	static Book newBook(String word, int number) {
+		return new Book("Load test book " + number + " about the " + word,
+				"A book created by the load test to have something to read about the "
+				+ word + ".", null, 100 + number % 400);
+	}
+}
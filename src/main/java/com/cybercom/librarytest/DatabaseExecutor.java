@@ -0,0 +1,203 @@
+package com.cybercom.librarytest;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded executor for the persistence work of asynchronous requests, so
+ * that request threads are not held during database round trips. At most
+ * <code>librarytest.db.threads</code> tasks run at a time and at most
+ * <code>librarytest.db.queueSize</code> wait; further tasks are rejected.
+ * With <code>librarytest.db.virtualThreads=true</code> the tasks run on
+ * virtual threads, if the JVM has them, instead of platform threads.
+ * <p>
+ * The number of tasks that wait and the time they wait are measured, since
+ * a growing queue means that the database cannot keep up with the load.
+ */
+public final class DatabaseExecutor {
+
+	private static final Logger LOG = Logger.getLogger(DatabaseExecutor.class.getName());
+
+	static final int DEFAULT_THREADS = 16;
+	static final int DEFAULT_QUEUE_SIZE = 1000;
+	static final long DEFAULT_TIMEOUT_SECONDS = 30;
+
+	private static final int THREADS = Integer.getInteger("librarytest.db.threads", DEFAULT_THREADS);
+	private static final int QUEUE_SIZE =
+			Integer.getInteger("librarytest.db.queueSize", DEFAULT_QUEUE_SIZE);
+	private static final long TIMEOUT_SECONDS =
+			Long.getLong("librarytest.db.timeout", DEFAULT_TIMEOUT_SECONDS);
+
+	private static final ThreadFactory VIRTUAL_THREADS =
+			Boolean.getBoolean("librarytest.db.virtualThreads") ? virtualThreadFactory() : null;
+
+	private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS,
+			60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+			VIRTUAL_THREADS != null ? VIRTUAL_THREADS : new PlatformThreadFactory());
+
+	private static final AtomicLong rejected = new AtomicLong();
+	private static final AtomicLong timedOut = new AtomicLong();
+	private static final AtomicLong waitNanos = new AtomicLong();
+	private static final AtomicLong maxWaitNanos = new AtomicLong();
+	private static final AtomicInteger maxQueued = new AtomicInteger();
+
+	static {
+		EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
+	private DatabaseExecutor() {
+	}
+
+	/**
+	 * Runs the task when a thread is free.
+	 * @return The task as it was queued, for {@link #remove}.
+	 * @throws RejectedExecutionException If the queue is full.
+	 */
+	public static Runnable execute(final Runnable task) {
+		final long queued = System.nanoTime();
+		Runnable timed = new Runnable() {
+			@Override
+			public void run() {
+				waited(System.nanoTime() - queued);
+				task.run();
+			}
+		};
+		try {
+			EXECUTOR.execute(timed);
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			throw e;
+		}
+		int size = EXECUTOR.getQueue().size();
+		int max = maxQueued.get();
+		while (size > max && !maxQueued.compareAndSet(max, size)) {
+			max = maxQueued.get();
+		}
+		return timed;
+	}
+
+	/**
+	 * Removes a task that has not started yet from the queue.
+	 * @param queued The task returned by {@link #execute}.
+	 */
+	public static void remove(Runnable queued) {
+		EXECUTOR.remove(queued);
+	}
+
+	private static void waited(long wait) {
+		waitNanos.addAndGet(wait);
+		long max = maxWaitNanos.get();
+		while (wait > max && !maxWaitNanos.compareAndSet(max, wait)) {
+			max = maxWaitNanos.get();
+		}
+	}
+
+	/**
+	 * Counts a request that was answered before its task had completed.
+	 */
+	public static void timedOut() {
+		timedOut.incrementAndGet();
+	}
+
+	/**
+	 * The time after which an asynchronous request is answered with 503
+	 * Service Unavailable if its task has not completed.
+	 */
+	public static long getTimeoutSeconds() {
+		return TIMEOUT_SECONDS;
+	}
+
+	public static int getThreads() {
+		return THREADS;
+	}
+
+	public static boolean isVirtual() {
+		return VIRTUAL_THREADS != null;
+	}
+
+	/**
+	 * Number of tasks that are running.
+	 */
+	public static int getActive() {
+		return EXECUTOR.getActiveCount();
+	}
+
+	/**
+	 * Number of tasks waiting for a thread.
+	 */
+	public static int getQueued() {
+		return EXECUTOR.getQueue().size();
+	}
+
+	public static int getMaxQueued() {
+		return maxQueued.get();
+	}
+
+	public static int getQueueSize() {
+		return QUEUE_SIZE;
+	}
+
+	public static long getCompleted() {
+		return EXECUTOR.getCompletedTaskCount();
+	}
+
+	public static long getRejected() {
+		return rejected.get();
+	}
+
+	public static long getTimedOut() {
+		return timedOut.get();
+	}
+
+	/**
+	 * Total time tasks have waited for a thread.
+	 */
+	public static long getWaitTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+	}
+
+	public static long getMaxWaitTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+	}
+
+	/**
+	 * Returns a factory of virtual threads, or null if the JVM has none. The
+	 * API is called by reflection since the service is built for Java 8.
+	 */
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class)
+					.invoke(builder, "db-", 0L);
+			Method factory = builderClass.getMethod("factory");
+			return (ThreadFactory)factory.invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			LOG.log(Level.INFO, "Virtual threads are not supported; using platform threads.");
+			return null;
+		}
+	}
+
+	private static final class PlatformThreadFactory implements ThreadFactory {
+
+		private final ThreadFactory threads = Executors.defaultThreadFactory();
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = threads.newThread(r);
+			thread.setName("db-" + count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
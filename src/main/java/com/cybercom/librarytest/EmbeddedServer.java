@@ -0,0 +1,123 @@
+package com.cybercom.librarytest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import javax.servlet.DispatcherType;
+
+import io.undertow.Undertow;
+import io.undertow.servlet.Servlets;
+import io.undertow.servlet.api.DeploymentInfo;
+
+import org.jboss.resteasy.plugins.server.undertow.UndertowJaxrsServer;
+import org.jboss.resteasy.spi.ResteasyDeployment;
+
+import com.cybercom.librarytest.rest.ApplicationConfig;
+import com.cybercom.librarytest.rest.MetricsServletFilter;
+import com.cybercom.librarytest.rest.UnitOfWorkServletFilter;
+
+/**
+ * The application on an embedded Undertow server, deployed as in
+ * <code>web.xml</code> under <code>/librarytest/rest</code>, with the
+ * {@link MetricsServletFilter} and the {@link UnitOfWorkServletFilter}.
+ * The server may be started before the persistence unit is initialized
+ * with {@link LocalEntityManagerFactory#initialize}; requests that use it
+ * wait until it is.
+ */
+public class EmbeddedServer {
+
+	static final String CONTEXT_PATH = "/librarytest";
+	static final String MAPPING_PREFIX = "/rest";
+
+	private static final String METRICS_FILTER = "metrics";
+	private static final String UNIT_OF_WORK_FILTER = "unitOfWork";
+
+	private final UndertowJaxrsServer server = new UndertowJaxrsServer();
+	private final String host;
+	private final int ioThreads;
+	private final int workerThreads;
+	private int port;
+	private boolean deployed;
+
+	/**
+	 * @param host The host name or address to listen on.
+	 * @param port The port to listen on, or 0 for a free port.
+	 * @param ioThreads The number of threads accepting and reading requests.
+	 * @param workerThreads The number of threads running the resource
+	 * methods, the equivalent of the request threads of a servlet container.
+	 */
+	public EmbeddedServer(String host, int port, int ioThreads, int workerThreads) {
+		this.host = host;
+		this.port = port;
+		this.ioThreads = ioThreads;
+		this.workerThreads = workerThreads;
+	}
+
+	/**
+	 * Deploys the application, which starts RESTEasy and registers the
+	 * resources and providers, without accepting requests yet.
+	 */
+	public synchronized void deploy() {
+		if (deployed) {
+			return;
+		}
+		ResteasyDeployment deployment = new ResteasyDeployment();
+		deployment.setApplicationClass(ApplicationConfig.class.getName());
+		DeploymentInfo info = server.undertowDeployment(deployment, MAPPING_PREFIX)
+				.setContextPath(CONTEXT_PATH)
+				.setDeploymentName("librarytest")
+				.setClassLoader(EmbeddedServer.class.getClassLoader())
+				.addFilter(Servlets.filter(METRICS_FILTER, MetricsServletFilter.class)
+						.setAsyncSupported(true))
+				.addFilterUrlMapping(METRICS_FILTER, MAPPING_PREFIX + "/*", 
+						DispatcherType.REQUEST)
+				.addFilter(Servlets.filter(UNIT_OF_WORK_FILTER, UnitOfWorkServletFilter.class)
+						.setAsyncSupported(true))
+				.addFilterUrlMapping(UNIT_OF_WORK_FILTER, MAPPING_PREFIX + "/*", 
+						DispatcherType.REQUEST);
+		server.deploy(info);
+		deployed = true;
+	}
+
+	/**
+	 * Deploys the application if that is not done yet and starts accepting
+	 * requests.
+	 */
+	public synchronized void start() throws IOException {
+		deploy();
+		if (port == 0) {
+			port = freePort(host);
+		}
+		server.start(Undertow.builder()
+				.addHttpListener(port, host)
+				.setIoThreads(ioThreads)
+				.setWorkerThreads(workerThreads));
+	}
+
+	public void stop() {
+		server.stop();
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Returns the URI of the REST services, the equivalent of
+	 * <code>http://localhost:8080/librarytest/rest</code> for the WAR.
+	 */
+	public String getBaseUri() {
+		return "http://" + host + ":" + port + CONTEXT_PATH + MAPPING_PREFIX;
+	}
+
+	/**
+	 * Returns a port that is free now. The version of Undertow used by
+	 * RESTEasy cannot report the port it bound when asked for port 0.
+	 */
+	private static int freePort(String host) throws IOException {
+		try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName(host))) {
+			return socket.getLocalPort();
+		}
+	}
+}
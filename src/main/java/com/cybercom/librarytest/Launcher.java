@@ -0,0 +1,113 @@
+package com.cybercom.librarytest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Runs the service without a servlet container, on an {@link EmbeddedServer}
+ * with a {@link DriverManagerDataSource} in place of the JNDI data source.
+ * It is configured with system properties:
+ * <ul>
+ * <li><code>librarytest.http.host</code>, <code>librarytest.http.port</code> -
+ * the address to listen on (localhost, 8080)</li>
+ * <li><code>librarytest.http.ioThreads</code>,
+ * <code>librarytest.http.workerThreads</code> - the threads of the server
+ * (the number of processors, eight times as many)</li>
+ * <li><code>librarytest.jdbc.url</code>, <code>librarytest.jdbc.user</code>,
+ * <code>librarytest.jdbc.password</code> - the database, whose JDBC driver
+ * must be on the class path (an in-memory H2 database)</li>
+ * <li><code>librarytest.testdata</code> - whether to add the test data, as
+ * the WAR does (true)</li>
+ * </ul>
+ * The server accepts requests as soon as the application is deployed. The
+ * persistence unit is initialized after that, in the background; requests
+ * that use the database wait until it is done, while the metrics and admin
+ * resources are served at once. Once started, the launcher requests the
+ * metrics and then a page of books from the server, and logs how long
+ * after the start of the JVM and of the launcher each of these first
+ * requests was served.
+ */
+public class Launcher {
+
+	private static final Logger LOG = Logger.getLogger(Launcher.class.getName());
+
+	private static final String DEFAULT_JDBC_URL = "jdbc:h2:mem:library;DB_CLOSE_DELAY=-1";
+
+	private Launcher() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		long start = System.nanoTime();
+		int ioThreads = Integer.getInteger("librarytest.http.ioThreads",
+				Math.max(2, Runtime.getRuntime().availableProcessors()));
+		final EmbeddedServer server = new EmbeddedServer(
+				System.getProperty("librarytest.http.host", "localhost"),
+				Integer.getInteger("librarytest.http.port", 8080), ioThreads,
+				Integer.getInteger("librarytest.http.workerThreads", ioThreads * 8));
+		server.start();
+		long listening = System.nanoTime();
+		new Thread("persistence-initializer") {
+			@Override
+			public void run() {
+				try {
+					LocalEntityManagerFactory.initialize(new DriverManagerDataSource(
+							System.getProperty("librarytest.jdbc.url", DEFAULT_JDBC_URL),
+							System.getProperty("librarytest.jdbc.user", ""),
+							System.getProperty("librarytest.jdbc.password", "")),
+							Boolean.parseBoolean(System.getProperty("librarytest.testdata", "true")));
+				} catch (RuntimeException e) {
+					LOG.log(Level.SEVERE, "The persistence unit could not be initialized.", e);
+				}
+			}
+		}.start();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				server.stop();
+				LocalEntityManagerFactory.close();
+			}
+		});
+
+		int metricsStatus = firstRequest(server.getBaseUri() + "/metrics", 
+				MediaType.TEXT_PLAIN);
+		long metricsServed = System.nanoTime();
+		long metricsUptime = ManagementFactory.getRuntimeMXBean().getUptime();
+		int booksStatus = firstRequest(server.getBaseUri() + "/books?limit=10", 
+				MediaType.APPLICATION_JSON);
+		LOG.info(String.format("Listening on %s %d ms after the launcher started. "
+				+ "The first request, for the metrics, was served with status %d "
+				+ "%d ms after the launcher started, %d ms after the JVM started. "
+				+ "The first request for books was served with status %d "
+				+ "%d ms after the launcher started, %d ms after the JVM started.",
+				server.getBaseUri(), TimeUnit.NANOSECONDS.toMillis(listening - start),
+				metricsStatus, TimeUnit.NANOSECONDS.toMillis(metricsServed - start), metricsUptime,
+				booksStatus, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+				ManagementFactory.getRuntimeMXBean().getUptime()));
+	}
+
+	/**
+	 * Gets the given URI and returns the status of the response.
+	 */
+	private static int firstRequest(String uri, String mediaType) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection)new URL(uri).openConnection();
+		connection.setRequestProperty(HttpHeaders.ACCEPT, mediaType);
+		try (InputStream in = connection.getInputStream()) {
+			byte[] buffer = new byte[4096];
+			while (in.read(buffer) >= 0) {
+				// Read the whole response.
+			}
+			return connection.getResponseCode();
+		} finally {
+			connection.disconnect();
+		}
+	}
+}
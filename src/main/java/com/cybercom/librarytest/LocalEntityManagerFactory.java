@@ -1,36 +1,120 @@
 package com.cybercom.librarytest;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
+import javax.sql.DataSource;
+
+import com.cybercom.librarytest.search.IsbnIndex;
+import com.cybercom.librarytest.search.SearchIndex;
 
 @WebListener
 public class LocalEntityManagerFactory implements ServletContextListener {
 	
 	private static final boolean SHOULD_INIT_TEST_DATA = true;
 	
-    private static EntityManagerFactory emf;
+	private static final String DATA_SOURCE = "java:comp/env/jdbc/embedded_datasource";
+	
+    private static final CountDownLatch initialized = new CountDownLatch(1);
+    
+    private static volatile EntityManagerFactory emf;
+    private static volatile MeteredDataSource dataSource;
+    private static volatile RuntimeException failure;
     
     @Override
     public void contextInitialized(ServletContextEvent event) {
-        emf = Persistence.createEntityManagerFactory("LibraryPU");
-        if (SHOULD_INIT_TEST_DATA) {
-        	TestData.initTestData(emf.createEntityManager());
+        try {
+        	initialize((DataSource)new InitialContext().lookup(DATA_SOURCE));
+        } catch (NamingException e) {
+        	throw new IllegalStateException("Data source " + DATA_SOURCE + " not found.", e);
+        }
+    }
+    /**
+     * Creates the EntityManagerFactory on top of the given data source, 
+     * which is wrapped to collect connection statistics, and builds the 
+     * search and ISBN indexes.
+     */
+    public static void initialize(DataSource ds) {
+        initialize(ds, SHOULD_INIT_TEST_DATA);
+    }
+    /**
+     * Like {@link #initialize(DataSource)}, with or without the test data. 
+     * Requests waiting in {@link #awaitInitialization()} go on when it is 
+     * done, or fail if it failed.
+     */
+    public static void initialize(DataSource ds, boolean testData) {
+        try {
+        	MeteredDataSource metered = new MeteredDataSource(ds);
+        	Map<String, Object> properties = new HashMap<>();
+        	properties.put("javax.persistence.nonJtaDataSource", metered);
+        	EntityManagerFactory factory = Persistence.createEntityManagerFactory("LibraryPU", properties);
+        	if (testData) {
+        		TestData.initTestData(factory.createEntityManager());
+        	}
+        	EntityManager em = factory.createEntityManager();
+        	try {
+        		SearchIndex.BOOKS.rebuild(em);
+        		IsbnIndex.BOOKS.rebuild(em);
+        	} finally {
+        		em.close();
+        	}
+        	dataSource = metered;
+        	emf = factory;
+        } catch (RuntimeException e) {
+        	failure = e;
+        	throw e;
+        } finally {
+        	initialized.countDown();
+        }
+    }
+    /**
+     * Waits until the persistence unit and the indexes built from it are 
+     * initialized. The launcher accepts requests before that, so requests 
+     * that use the database or the indexes wait here.
+     * @throws IllegalStateException - if the initialization failed or the 
+     * thread was interrupted.
+     */
+    public static void awaitInitialization() {
+        try {
+        	initialized.await();
+        } catch (InterruptedException e) {
+        	Thread.currentThread().interrupt();
+        	throw new IllegalStateException("Interrupted while the persistence unit is initialized.", e);
+        }
+        if (emf == null) {
+        	throw new IllegalStateException("The persistence unit could not be initialized.", failure);
         }
     }
     @Override
     public void contextDestroyed(ServletContextEvent event) {
+    	close();
+    }
+    /**
+     * Closes the EntityManagerFactory, if it was created.
+     */
+    public static void close() {
     	if (emf != null) {
     		emf.close();
     	}
     }
     public static EntityManager createEntityManager() {  
-        if (emf == null) {
-            throw new IllegalStateException("Context is not initialized yet.");  
-        }
+        awaitInitialization();
         return emf.createEntityManager();
     }
+    /**
+     * Returns the data source of the persistence unit, or null if the 
+     * context is not initialized yet.
+     */
+    public static MeteredDataSource getDataSource() {
+        return dataSource;
+    }
 }
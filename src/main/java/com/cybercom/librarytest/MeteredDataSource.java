@@ -0,0 +1,172 @@
+package com.cybercom.librarytest;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource wrapper measuring how connections are used: how many are
+ * checked out of the pool, how many are in use, and how long callers wait
+ * in <code>getConnection()</code>. A growing wait time means that the pool is
+ * too small for the load, or that connections are held too long.
+ * <p>
+ * It also counts the statements executed, i.e. the database round trips; a
+ * JDBC batch counts as one.
+ */
+public class MeteredDataSource implements DataSource {
+
+	private final DataSource dataSource;
+	private final AtomicLong acquired = new AtomicLong();
+	private final AtomicLong released = new AtomicLong();
+	private final AtomicLong waitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicLong statements = new AtomicLong();
+
+	public MeteredDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		Connection connection = dataSource.getConnection();
+		return acquired(connection, start);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		long start = System.nanoTime();
+		Connection connection = dataSource.getConnection(username, password);
+		return acquired(connection, start);
+	}
+
+	private Connection acquired(final Connection connection, long start) {
+		long wait = System.nanoTime() - start;
+		acquired.incrementAndGet();
+		waitNanos.addAndGet(wait);
+		long max = maxWaitNanos.get();
+		while (wait > max && !maxWaitNanos.compareAndSet(max, wait)) {
+			max = maxWaitNanos.get();
+		}
+		final AtomicBoolean open = new AtomicBoolean(true);
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("close") && open.compareAndSet(true, false)) {
+					released.incrementAndGet();
+				}
+				Object result = delegate(connection, method, args);
+				if (result instanceof Statement) {
+					return counted((Statement) result, method.getReturnType());
+				}
+				return result;
+			}
+		});
+	}
+
+	private Object counted(final Statement statement, Class<?> type) {
+		return Proxy.newProxyInstance(Statement.class.getClassLoader(),
+				new Class<?>[] { type }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().startsWith("execute")) {
+					statements.incrementAndGet();
+				}
+				return delegate(statement, method, args);
+			}
+		});
+	}
+
+	private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Number of connections checked out since startup.
+	 */
+	public long getAcquired() {
+		return acquired.get();
+	}
+
+	/**
+	 * Number of connections currently checked out.
+	 */
+	public long getActive() {
+		return acquired.get() - released.get();
+	}
+
+	/**
+	 * Number of statements executed since startup.
+	 */
+	public long getStatements() {
+		return statements.get();
+	}
+
+	/**
+	 * Total time spent waiting for connections, in milliseconds.
+	 */
+	public long getWaitTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+	}
+
+	/**
+	 * Longest time spent waiting for a connection, in milliseconds.
+	 */
+	public long getMaxWaitTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return dataSource.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		dataSource.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		dataSource.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return dataSource.getLoginTimeout();
+	}
+
+	@Override
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return dataSource.getParentLogger();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		return dataSource.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+	}
+}
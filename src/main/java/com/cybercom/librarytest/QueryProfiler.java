@@ -0,0 +1,321 @@
+package com.cybercom.librarytest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.persistence.internal.sessions.AbstractRecord;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.queries.ReadQuery;
+import org.eclipse.persistence.sessions.Record;
+import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.sessions.SessionProfiler;
+
+import com.cybercom.librarytest.metrics.RequestMetrics;
+import com.cybercom.librarytest.metrics.Trace;
+
+/**
+ * EclipseLink session profiler, set with the <code>eclipselink.profiler</code>
+ * property of the persistence unit, measuring the queries by the
+ * route of the {@link RequestMetrics#current() request} they were executed
+ * for: how many times each query was executed, the rows it read and the
+ * time it took, including the statements executed and the objects built.
+ * A named query is known by its name, such as <code>Book.findAll</code>,
+ * other queries by the entity and the kind of query, such as
+ * <code>Book.readObject</code> for <code>em.find</code>. The queries a query
+ * executes itself, such as those loading relationships, are part of it.
+ * <p>
+ * Queries that take longer than <code>librarytest.db.slowQueryMillis</code>
+ * (default {@value #DEFAULT_SLOW_QUERY_MILLIS} ms, 0 disables the log) are
+ * logged with their SQL and bind parameters.
+ * <p>
+ * If the request is traced, every query, SQL statement (from its execution
+ * until it is closed, after its rows have been read) and commit of a unit
+ * of work is a span of its {@link Trace}.
+ */
+public class QueryProfiler implements SessionProfiler {
+
+	private static final Logger LOG = Logger.getLogger(QueryProfiler.class.getName());
+
+	static final long DEFAULT_SLOW_QUERY_MILLIS = 100;
+
+	/**
+	 * The operation of queries executed outside requests, e.g. at startup.
+	 */
+	public static final String NO_OPERATION = "none";
+
+	private static final long SLOW_QUERY_MILLIS =
+			Long.getLong("librarytest.db.slowQueryMillis", DEFAULT_SLOW_QUERY_MILLIS);
+	private static final long SLOW_QUERY_NANOS = TimeUnit.MILLISECONDS.toNanos(SLOW_QUERY_MILLIS);
+
+	private static final ConcurrentMap<String, Statistics> STATISTICS = new ConcurrentHashMap<>();
+	private static final AtomicLong slowQueries = new AtomicLong();
+
+	private static final ThreadLocal<int[]> DEPTH = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	private int profileWeight = NORMAL;
+
+	@Override
+	public Object profileExecutionOfQuery(DatabaseQuery query, Record row, AbstractSession session) {
+		Trace.Span span = Trace.begin("query");
+		if (span != null) {
+			span.setDetail(name(query));
+		}
+		int[] depth = DEPTH.get();
+		if (depth[0] > 0) {
+			try {
+				return session.internalExecuteQuery(query, (AbstractRecord)row);
+			} finally {
+				Trace.end(span);
+			}
+		}
+		depth[0]++;
+		long start = System.nanoTime();
+		Object result = null;
+		try {
+			result = session.internalExecuteQuery(query, (AbstractRecord)row);
+			return result;
+		} finally {
+			depth[0]--;
+			Trace.end(span);
+			executed(query, row, rows(query, result), System.nanoTime() - start);
+		}
+	}
+
+	private static void executed(DatabaseQuery query, Record row, int rows, long nanos) {
+		RequestMetrics request = RequestMetrics.current();
+		String operation = request != null ? request.getRoute().getName() : NO_OPERATION;
+		String name = name(query);
+		String key = operation + '\n' + name;
+		Statistics statistics = STATISTICS.get(key);
+		if (statistics == null) {
+			Statistics created = new Statistics(operation, name);
+			statistics = STATISTICS.putIfAbsent(key, created);
+			if (statistics == null) {
+				statistics = created;
+			}
+		}
+		statistics.executed(rows, nanos);
+		if (SLOW_QUERY_NANOS > 0 && nanos > SLOW_QUERY_NANOS) {
+			slowQueries.incrementAndGet();
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.warning("Slow query " + name + " for " + operation + " took "
+						+ TimeUnit.NANOSECONDS.toMillis(nanos) + " ms: " + query.getSQLString()
+						+ " binds " + binds(row));
+			}
+		}
+	}
+
+	/**
+	 * Returns the name of a named query, else the entity and the kind of
+	 * query, such as <code>Book.readAll</code>, or for queries of no entity,
+	 * such as those of a join table, the kind and the name of the query.
+	 */
+	static String name(DatabaseQuery query) {
+		String name = query.getName();
+		if (name != null && name.indexOf('.') > 0) {
+			return name;
+		}
+		Class<?> entity = query.getReferenceClass();
+		String kind = query.getClass().getSimpleName();
+		if (kind.endsWith("Query") && kind.length() > "Query".length()) {
+			kind = kind.substring(0, kind.length() - "Query".length());
+		}
+		kind = Character.toLowerCase(kind.charAt(0)) + kind.substring(1);
+		if (entity != null) {
+			return entity.getSimpleName() + '.' + kind;
+		}
+		return name != null && !name.isEmpty() ? kind + '(' + name + ')' : kind;
+	}
+
+	/**
+	 * Returns the number of rows read by a read query, or 0.
+	 */
+	private static int rows(DatabaseQuery query, Object result) {
+		if (!(query instanceof ReadQuery) || result == null) {
+			return 0;
+		}
+		return result instanceof Collection ? ((Collection<?>)result).size() : 1;
+	}
+
+	private static String binds(Record row) {
+		if (row == null || row.isEmpty()) {
+			return "[]";
+		}
+		AbstractRecord record = (AbstractRecord)row;
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < record.size(); i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(record.getFields().get(i).getName()).append('=')
+					.append(record.getValues().get(i));
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Returns the statistics of all queries executed so far, the most
+	 * time-consuming first.
+	 */
+	public static List<Statistics> getStatistics() {
+		List<Statistics> all = new ArrayList<>(STATISTICS.values());
+		Collections.sort(all, new Comparator<Statistics>() {
+			@Override
+			public int compare(Statistics a, Statistics b) {
+				return Long.compare(b.nanos.get(), a.nanos.get());
+			}
+		});
+		return all;
+	}
+
+	public static long getSlowQueryMillis() {
+		return SLOW_QUERY_MILLIS;
+	}
+
+	public static long getSlowQueries() {
+		return slowQueries.get();
+	}
+
+	@Override
+	public void setProfileWeight(int weight) {
+		profileWeight = weight;
+	}
+
+	@Override
+	public int getProfileWeight() {
+		return profileWeight;
+	}
+
+	@Override
+	public void setSession(Session session) {
+	}
+
+	@Override
+	public void initialize() {
+	}
+
+	@Override
+	public void startOperationProfile(String operationName) {
+		startOperationProfile(operationName, null, ALL);
+	}
+
+	@Override
+	public void startOperationProfile(String operationName, DatabaseQuery query, int weight) {
+		if (StatementExecute.equals(operationName)) {
+			// also reported around the closing of the statement
+			if (Trace.isEnabled()) {
+				Trace.resume("sql", query != null ? query.getSQLString() : null);
+			}
+		} else if (UowCommit.equals(operationName)) {
+			Trace.begin("commit");
+		}
+	}
+
+	@Override
+	public void endOperationProfile(String operationName) {
+		endOperationProfile(operationName, null, ALL);
+	}
+
+	@Override
+	public void endOperationProfile(String operationName, DatabaseQuery query, int weight) {
+		String spanName = spanName(operationName);
+		if (spanName != null) {
+			Trace.end(spanName);
+		}
+	}
+
+	/**
+	 * Returns the name of the span of the traced operations, or null.
+	 */
+	private static String spanName(String operationName) {
+		if (StatementExecute.equals(operationName)) {
+			return "sql";
+		} else if (UowCommit.equals(operationName)) {
+			return "commit";
+		}
+		return null;
+	}
+
+	@Override
+	public void update(String operationName, Object value) {
+	}
+
+	@Override
+	public void occurred(String operationName, AbstractSession session) {
+	}
+
+	@Override
+	public void occurred(String operationName, DatabaseQuery query, AbstractSession session) {
+	}
+
+	/**
+	 * Executions, rows read and time of one query for one operation.
+	 */
+	public static final class Statistics {
+
+		private final String operation;
+		private final String query;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong rows = new AtomicLong();
+		private final AtomicLong nanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		Statistics(String operation, String query) {
+			this.operation = operation;
+			this.query = query;
+		}
+
+		void executed(int rowsRead, long time) {
+			count.incrementAndGet();
+			rows.addAndGet(rowsRead);
+			nanos.addAndGet(time);
+			long max = maxNanos.get();
+			while (time > max && !maxNanos.compareAndSet(max, time)) {
+				max = maxNanos.get();
+			}
+		}
+
+		/**
+		 * The route of the request, such as <code>GET /books</code>, or
+		 * {@link QueryProfiler#NO_OPERATION}.
+		 */
+		public String getOperation() {
+			return operation;
+		}
+
+		public String getQuery() {
+			return query;
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public long getRows() {
+			return rows.get();
+		}
+
+		public long getTimeMicros() {
+			return TimeUnit.NANOSECONDS.toMicros(nanos.get());
+		}
+
+		public long getMaxTimeMicros() {
+			return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.cybercom.librarytest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+
+import com.cybercom.librarytest.metrics.Trace;
+
+/**
+ * Request-scoped unit of work. The EntityManager of the current request is
+ * opened on first use by {@link #entityManager()} and bound to the request
+ * thread; {@link #end()} rolls back a transaction that is still active and
+ * closes it. Resource methods must therefore not close the EntityManager
+ * themselves.
+ * <p>
+ * An EntityManager that is still bound to a thread when the next request
+ * starts on it has leaked (its request ended without {@link #end()}); it is
+ * closed and counted.
+ */
+public final class UnitOfWork {
+
+	private static final Logger LOG = Logger.getLogger(UnitOfWork.class.getName());
+
+	private static final ThreadLocal<EntityManager> CURRENT = new ThreadLocal<>();
+
+	private static final AtomicLong opened = new AtomicLong();
+	private static final AtomicLong closed = new AtomicLong();
+	private static final AtomicLong rolledBack = new AtomicLong();
+	private static final AtomicLong leaked = new AtomicLong();
+
+	private UnitOfWork() {
+	}
+
+	/**
+	 * Starts the unit of work of a request on the current thread.
+	 */
+	public static void begin() {
+		EntityManager leftOver = CURRENT.get();
+		if (leftOver != null) {
+			CURRENT.remove();
+			leaked.incrementAndGet();
+			LOG.warning("EntityManager of a previous request was not closed; closing it.");
+			close(leftOver);
+		}
+	}
+
+	/**
+	 * Returns the EntityManager of the current request, opening it if needed.
+	 */
+	public static EntityManager entityManager() {
+		EntityManager em = CURRENT.get();
+		if (em == null) {
+			Trace.Span span = Trace.begin("entityManager.open");
+			em = LocalEntityManagerFactory.createEntityManager();
+			Trace.end(span);
+			opened.incrementAndGet();
+			CURRENT.set(em);
+		}
+		return em;
+	}
+
+	/**
+	 * Ends the unit of work of the current thread: rolls back the transaction
+	 * if it is still active and closes the EntityManager, if one was opened.
+	 */
+	public static void end() {
+		EntityManager em = CURRENT.get();
+		if (em != null) {
+			CURRENT.remove();
+			Trace.Span span = Trace.begin("entityManager.close");
+			close(em);
+			Trace.end(span);
+		}
+	}
+
+	private static void close(EntityManager em) {
+		try {
+			if (em.getTransaction().isActive()) {
+				rolledBack.incrementAndGet();
+				em.getTransaction().rollback();
+			}
+		} catch (RuntimeException e) {
+			LOG.log(Level.WARNING, "Could not roll back transaction.", e);
+		} finally {
+			em.close();
+			closed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Number of EntityManagers opened since startup.
+	 */
+	public static long getOpened() {
+		return opened.get();
+	}
+
+	/**
+	 * Number of EntityManagers closed since startup.
+	 */
+	public static long getClosed() {
+		return closed.get();
+	}
+
+	/**
+	 * Number of EntityManagers that are currently open.
+	 */
+	public static long getOpen() {
+		return opened.get() - closed.get();
+	}
+
+	/**
+	 * Number of transactions that were still active at the end of a request.
+	 */
+	public static long getRolledBack() {
+		return rolledBack.get();
+	}
+
+	/**
+	 * Number of EntityManagers that outlived their request.
+	 */
+	public static long getLeaked() {
+		return leaked.get();
+	}
+}
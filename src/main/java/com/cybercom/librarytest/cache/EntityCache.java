@@ -0,0 +1,149 @@
+package com.cybercom.librarytest.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Book;
+
+/**
+ * Size-bounded, shared cache of detached entities keyed by id, with LRU
+ * eviction and a time-to-live per entry. The cache is not kept in sync by
+ * the persistence layer; every path that changes an entity must call
+ * {@link #invalidate(Long)} (or {@link #clear()}) after committing.
+ * <p>
+ * Sizes and time-to-live are configured with the system properties
+ * <code>librarytest.cache.&lt;name&gt;.size</code> (entries, 0 disables the
+ * cache) and <code>librarytest.cache.&lt;name&gt;.ttl</code> (seconds).
+ */
+public class EntityCache<T> {
+
+	public static final EntityCache<Book> BOOKS = configure("books");
+	public static final EntityCache<Author> AUTHORS = configure("authors");
+
+	private static final int DEFAULT_SIZE = 10000;
+	private static final long DEFAULT_TTL_SECONDS = 300;
+
+	private final String name;
+	private final int maxSize;
+	private final long ttlNanos;
+	private final LinkedHashMap<Long, Entry<T>> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private long generation;
+
+	public EntityCache(String name, int maxSize, long ttl, TimeUnit unit) {
+		this.name = name;
+		this.maxSize = maxSize;
+		this.ttlNanos = unit.toNanos(ttl);
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	private static <T> EntityCache<T> configure(String name) {
+		int size = Integer.getInteger("librarytest.cache." + name + ".size", DEFAULT_SIZE);
+		long ttl = Long.getLong("librarytest.cache." + name + ".ttl", DEFAULT_TTL_SECONDS);
+		return new EntityCache<>(name, size, ttl, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Returns the cached entity with the given id, or null if it is not
+	 * cached or has expired.
+	 */
+	public synchronized T get(Long id) {
+		Entry<T> entry = entries.get(id);
+		if (entry != null && entry.expiresAt - System.nanoTime() < 0) {
+			entries.remove(id);
+			evictions.incrementAndGet();
+			entry = null;
+		}
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.value;
+	}
+
+	/**
+	 * Returns a stamp to pass to {@link #put(Long, Object, long)}. Take it
+	 * before reading the entity from the database, so that an entity read
+	 * concurrently with an invalidation is not cached.
+	 */
+	public synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * Caches the entity, unless the cache has been invalidated since the
+	 * given generation was taken. The entity must be fully loaded, since it
+	 * is shared between requests.
+	 */
+	public synchronized void put(Long id, T value, long generation) {
+		if (maxSize <= 0 || id == null || value == null || generation != this.generation) {
+			return;
+		}
+		entries.put(id, new Entry<>(value, System.nanoTime() + ttlNanos));
+		Iterator<Map.Entry<Long, Entry<T>>> eldest = entries.entrySet().iterator();
+		while (entries.size() > maxSize) {
+			eldest.next();
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes the entity with the given id from the cache.
+	 */
+	public synchronized void invalidate(Long id) {
+		generation++;
+		if (id != null) {
+			entries.remove(id);
+		}
+	}
+
+	/**
+	 * Removes all entities from the cache.
+	 */
+	public synchronized void clear() {
+		generation++;
+		entries.clear();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	private static final class Entry<T> {
+		final T value;
+		final long expiresAt;
+
+		Entry(T value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
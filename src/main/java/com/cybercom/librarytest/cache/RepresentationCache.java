@@ -0,0 +1,203 @@
+package com.cybercom.librarytest.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared cache of encoded responses, bounded by the total size of the
+ * cached bodies. The representations of an entity are cached together
+ * under its id, for one version of the entity, with one body per variant:
+ * the media type, the content coding and the requested fields. Caching a
+ * newer version replaces the representations of the older one, and the
+ * entities are evicted in LRU order. Like {@link EntityCache}, the cache is
+ * not kept in sync by the persistence layer; every path that changes an
+ * entity must call {@link #invalidate(Long)} (or {@link #clear()}) after
+ * committing.
+ * <p>
+ * The size is configured with the system property
+ * <code>librarytest.cache.&lt;name&gt;.bytes</code> (0 disables the cache).
+ */
+public class RepresentationCache {
+
+	public static final RepresentationCache BOOKS = configure("bookRepresentations");
+	public static final RepresentationCache AUTHORS = configure("authorRepresentations");
+
+	private static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+	private final String name;
+	private final long maxBytes;
+	private final LinkedHashMap<Long, Entry> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private long bytes;
+	private long generation;
+
+	public RepresentationCache(String name, long maxBytes) {
+		this.name = name;
+		this.maxBytes = maxBytes;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	private static RepresentationCache configure(String name) {
+		return new RepresentationCache(name,
+				Long.getLong("librarytest.cache." + name + ".bytes", DEFAULT_MAX_BYTES));
+	}
+
+	public boolean isEnabled() {
+		return maxBytes > 0;
+	}
+
+	/**
+	 * Returns the cached representation of the given version of an entity,
+	 * or null if it is not cached.
+	 * @param variant Identifies the media type, content coding and fields of
+	 * the representation.
+	 */
+	public synchronized Representation get(Long id, long version, String variant) {
+		Entry entry = entries.get(id);
+		Representation representation = entry == null || entry.version != version
+				? null : entry.variants.get(variant);
+		if (representation == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return representation;
+	}
+
+	/**
+	 * Returns a stamp to pass to {@link #put}. Take it before reading the
+	 * entity, so that a representation of an entity read concurrently with
+	 * an invalidation is not cached.
+	 */
+	public synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * Caches a representation of the given version of an entity, unless the
+	 * cache has been invalidated since the given generation was taken, a
+	 * newer version is cached or the body alone exceeds the size of the
+	 * cache.
+	 */
+	public synchronized void put(Long id, long version, String variant,
+			Representation representation, long generation) {
+		if (id == null || representation.size() > maxBytes || generation != this.generation) {
+			return;
+		}
+		Entry entry = entries.get(id);
+		if (entry != null && entry.version > version) {
+			return;
+		}
+		if (entry == null || entry.version != version) {
+			if (entry != null) {
+				bytes -= entry.bytes;
+			}
+			entry = new Entry(version);
+			entries.put(id, entry);
+		}
+		Representation replaced = entry.variants.put(variant, representation);
+		int delta = representation.size() - (replaced == null ? 0 : replaced.size());
+		entry.bytes += delta;
+		bytes += delta;
+		Iterator<Entry> eldest = entries.values().iterator();
+		while (bytes > maxBytes) {
+			bytes -= eldest.next().bytes;
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes the representations of the entity with the given id.
+	 */
+	public synchronized void invalidate(Long id) {
+		generation++;
+		if (id != null) {
+			Entry entry = entries.remove(id);
+			if (entry != null) {
+				bytes -= entry.bytes;
+			}
+		}
+	}
+
+	/**
+	 * Removes all representations from the cache.
+	 */
+	public synchronized void clear() {
+		generation++;
+		entries.clear();
+		bytes = 0;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of entities with cached representations.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * An encoded response body and its content coding, or null if the body
+	 * is not compressed. The body must not be modified.
+	 */
+	public static final class Representation {
+		private final byte[] body;
+		private final String contentEncoding;
+
+		public Representation(byte[] body, String contentEncoding) {
+			this.body = body;
+			this.contentEncoding = contentEncoding;
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+
+		public String getContentEncoding() {
+			return contentEncoding;
+		}
+
+		public int size() {
+			return body.length;
+		}
+	}
+
+	private static final class Entry {
+		final long version;
+		final Map<String, Representation> variants = new HashMap<>(4);
+		long bytes;
+
+		Entry(long version) {
+			this.version = version;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.cybercom.librarytest.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values, with buckets laid out as in
+ * an HDR histogram: every power of two is split into {@value #SUB_BUCKETS}
+ * linear sub-buckets, so that any recorded value is known to within about
+ * 3% whatever its magnitude, in a fixed array of counters. Recording a
+ * value is a few shifts and an atomic increment.
+ * <p>
+ * Negative values are counted as 0 and values above {@link #MAX_VALUE}
+ * (2<sup>37</sup> - 1) as {@link #MAX_VALUE}.
+ */
+public class Histogram {
+
+	static final int SUB_BUCKET_BITS = 5;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final long MAX_VALUE = (1L << 37) - 1;
+	static final int BUCKETS = index(MAX_VALUE) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		value = Math.max(0, Math.min(value, MAX_VALUE));
+		counts.incrementAndGet(index(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotal() {
+		return total.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the value below which the given fraction of the recorded
+	 * values are, as the upper bound of the bucket the value is in, or 0
+	 * if nothing has been recorded. Values recorded concurrently may or may
+	 * not be taken into account.
+	 * @param quantile The fraction, from 0 to 1.
+	 */
+	public long getQuantile(double quantile) {
+		long recorded = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			recorded += counts.get(i);
+		}
+		if (recorded == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(quantile * recorded));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Values below twice the number of sub-buckets have a bucket each;
+	 * above, the bucket is given by the highest bit set and the
+	 * {@value #SUB_BUCKET_BITS} bits below it.
+	 */
+	static int index(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int)value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int)(value >>> shift);
+	}
+
+	/**
+	 * Returns the highest value counted in the bucket.
+	 */
+	static long upperBound(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long top = index % SUB_BUCKETS + SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+}
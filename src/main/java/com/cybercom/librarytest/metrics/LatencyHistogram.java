@@ -0,0 +1,33 @@
+package com.cybercom.librarytest.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Histogram} of latencies in microseconds. Values below 1
+ * microsecond are counted as 0 and values above {@link #MAX_MICROS} (about
+ * 38 hours) as {@link #MAX_MICROS}.
+ */
+public class LatencyHistogram extends Histogram {
+
+	static final long MAX_MICROS = MAX_VALUE;
+
+	public void record(long duration, TimeUnit unit) {
+		record(unit.toMicros(duration));
+	}
+
+	public long getTotalMicros() {
+		return getTotal();
+	}
+
+	public long getMaxMicros() {
+		return getMax();
+	}
+
+	/**
+	 * Returns the latency below which the given fraction of the recorded
+	 * latencies are, as by {@link #getQuantile(double)}.
+	 */
+	public long getQuantileMicros(double quantile) {
+		return getQuantile(quantile);
+	}
+}
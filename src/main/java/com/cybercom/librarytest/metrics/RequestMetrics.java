@@ -0,0 +1,161 @@
+package com.cybercom.librarytest.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+/**
+ * Measurements of one request, from the matching of its resource method
+ * until its response has been written: the {@link RouteMetrics route} of
+ * the request, its {@link Trace} if it is sampled and, if
+ * <code>librarytest.metrics.allocation</code> is set to true and the JVM
+ * supports it, the bytes allocated by the threads handling it.
+ * <p>
+ * The request is attached to the thread handling it, as the
+ * {@link #current()} request. A request handled by several threads, such
+ * as an asynchronous one, is detached from a thread before it is attached
+ * to the next; only the allocations made while it is attached to a thread
+ * are counted. The counters of the allocations of a thread are those of
+ * <code>com.sun.management.ThreadMXBean</code>.
+ */
+public final class RequestMetrics {
+
+	private static final Logger LOG = Logger.getLogger(RequestMetrics.class.getName());
+
+	private static final ThreadLocal<RequestMetrics> CURRENT = new ThreadLocal<>();
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			Boolean.getBoolean("librarytest.metrics.allocation") ? allocationCounters() : null;
+
+	private final RouteMetrics route;
+	private final Trace trace;
+	private final long start = System.nanoTime();
+	private long allocatedBytes;
+	private long attachedAt;
+	private int status;
+	private boolean written;
+
+	private RequestMetrics(RouteMetrics route) {
+		this.route = route;
+		this.trace = Trace.sample(route.getName());
+	}
+
+	/**
+	 * Starts the measurements of a request of the route and attaches it to
+	 * the current thread, detaching any request that was left attached.
+	 */
+	public static RequestMetrics start(RouteMetrics route) {
+		RequestMetrics leftOver = CURRENT.get();
+		if (leftOver != null) {
+			leftOver.detach();
+		}
+		route.started();
+		RequestMetrics request = new RequestMetrics(route);
+		request.attach();
+		return request;
+	}
+
+	/**
+	 * Returns the request attached to the current thread, or null.
+	 */
+	public static RequestMetrics current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Returns whether the allocations of requests are measured.
+	 */
+	public static boolean isAllocationMeasured() {
+		return THREADS != null;
+	}
+
+	/**
+	 * Attaches the request to the current thread.
+	 */
+	public void attach() {
+		CURRENT.set(this);
+		if (THREADS != null) {
+			attachedAt = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+	}
+
+	/**
+	 * Detaches the request from the current thread, if it is attached to it.
+	 */
+	public void detach() {
+		if (CURRENT.get() != this) {
+			return;
+		}
+		CURRENT.remove();
+		if (THREADS != null) {
+			allocatedBytes += THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - attachedAt;
+		}
+	}
+
+	/**
+	 * Records the status and the latency of the response, which is about to
+	 * be written.
+	 */
+	public void responded(int status) {
+		this.status = status;
+		route.completed(status, System.nanoTime() - start);
+	}
+
+	/**
+	 * Detaches the request, whose response has been written, and records
+	 * its allocations, the size of its response body and its trace.
+	 * @param bodyBytes The size of the response body, or -1 if it has none.
+	 */
+	public void written(long bodyBytes) {
+		written = true;
+		detach();
+		if (THREADS != null) {
+			route.getAllocatedBytes().record(allocatedBytes);
+		}
+		if (bodyBytes >= 0) {
+			route.getResponseBytes().record(bodyBytes);
+		}
+		if (trace != null) {
+			trace.complete(status);
+		}
+	}
+
+	/**
+	 * Ends the measurements of a request that failed with an exception no
+	 * mapper handles, to which the container responds with 500 without
+	 * RESTEasy running the response filters: records that response, unless
+	 * a response was recorded, and, unless it was written, completes the
+	 * request as {@link #written(long)} does, without a response body.
+	 */
+	public void failed() {
+		if (status == 0) {
+			responded(500);
+		}
+		if (!written) {
+			written(-1);
+		}
+	}
+
+	public RouteMetrics getRoute() {
+		return route;
+	}
+
+	/**
+	 * Returns the trace of the request, or null if it is not sampled.
+	 */
+	public Trace getTrace() {
+		return trace;
+	}
+
+	private static com.sun.management.ThreadMXBean allocationCounters() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean)threads;
+			if (counters.isThreadAllocatedMemorySupported()) {
+				counters.setThreadAllocatedMemoryEnabled(true);
+				return counters;
+			}
+		}
+		LOG.info("Thread allocation counters are not supported; allocations are not measured.");
+		return null;
+	}
+}
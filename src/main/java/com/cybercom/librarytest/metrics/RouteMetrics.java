@@ -0,0 +1,153 @@
+package com.cybercom.librarytest.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latencies, status codes, requests in flight, allocations and response
+ * sizes of one route: an HTTP method with the path template of the
+ * resource method handling it, such as <code>GET /books/{id}</code>. The
+ * metrics of all routes are kept for the lifetime of the application and
+ * may be updated from any thread without locking.
+ */
+public class RouteMetrics {
+
+	/**
+	 * The route of requests that did not match a resource method.
+	 */
+	public static final String UNMATCHED = "unmatched";
+
+	private static final ConcurrentMap<String, RouteMetrics> ROUTES = new ConcurrentHashMap<>();
+
+	private static final int STATUSES = 600;
+
+	private final String method;
+	private final String route;
+	private final String name;
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final Histogram allocatedBytes = new Histogram();
+	private final Histogram responseBytes = new Histogram();
+	private final AtomicLongArray statuses = new AtomicLongArray(STATUSES);
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	RouteMetrics(String method, String route) {
+		this.method = method;
+		this.route = route;
+		this.name = method + ' ' + route;
+	}
+
+	/**
+	 * Returns the metrics of the route, creating them on first use.
+	 */
+	public static RouteMetrics of(String method, String route) {
+		String key = method + ' ' + route;
+		RouteMetrics metrics = ROUTES.get(key);
+		if (metrics == null) {
+			RouteMetrics created = new RouteMetrics(method, route);
+			metrics = ROUTES.putIfAbsent(key, created);
+			if (metrics == null) {
+				metrics = created;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Returns the metrics of all routes used so far, ordered by route and
+	 * method.
+	 */
+	public static List<RouteMetrics> all() {
+		List<RouteMetrics> all = new ArrayList<>(ROUTES.values());
+		Collections.sort(all, new Comparator<RouteMetrics>() {
+			@Override
+			public int compare(RouteMetrics a, RouteMetrics b) {
+				int c = a.route.compareTo(b.route);
+				return c != 0 ? c : a.method.compareTo(b.method);
+			}
+		});
+		return all;
+	}
+
+	/**
+	 * Counts a request that is being handled.
+	 */
+	public void started() {
+		inFlight.incrementAndGet();
+	}
+
+	/**
+	 * Counts the response to a request counted with {@link #started()}.
+	 */
+	public void completed(int status, long durationNanos) {
+		inFlight.decrementAndGet();
+		latencies.record(durationNanos, TimeUnit.NANOSECONDS);
+		counted(status);
+	}
+
+	/**
+	 * Counts a response whose request was not counted as started, and
+	 * whose latency is therefore unknown.
+	 */
+	public void counted(int status) {
+		if (status >= 0 && status < STATUSES) {
+			statuses.incrementAndGet(status);
+		}
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	/**
+	 * Returns the method and the route, such as <code>GET /books/{id}</code>.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * Returns the bytes allocated per request, if
+	 * {@link RequestMetrics#isAllocationMeasured() measured}.
+	 */
+	public Histogram getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Returns the sizes of the response bodies, as sent.
+	 */
+	public Histogram getResponseBytes() {
+		return responseBytes;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Returns the number of responses with each status code, indexed by the
+	 * status code.
+	 */
+	public long[] getStatuses() {
+		long[] counts = new long[STATUSES];
+		for (int i = 0; i < STATUSES; i++) {
+			counts[i] = statuses.get(i);
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,290 @@
+package com.cybercom.librarytest.metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Timeline of a sampled request: the spans of the work done for it, such
+ * as its resource method, its queries and SQL statements and the writing
+ * of its response, each with its start, duration and nesting. Completed
+ * traces are kept in a ring buffer of the
+ * <code>librarytest.trace.bufferSize</code> (default
+ * {@value #DEFAULT_BUFFER_SIZE}) most recent ones.
+ * <p>
+ * The fraction of the requests that are traced is set with
+ * <code>librarytest.trace.sampleRate</code>, from 0 (the default) to 1.
+ * When it is 0, {@link #begin(String)} returns null without looking up the
+ * request, so the instrumented code costs nothing more than the check.
+ * Spans are begun and ended on the thread the request is attached to; a
+ * request handled by several threads is handled by one at a time.
+ */
+public final class Trace {
+
+	static final int DEFAULT_BUFFER_SIZE = 100;
+
+	private static final double SAMPLE_RATE = sampleRate();
+	private static final boolean ENABLED = SAMPLE_RATE > 0;
+
+	private static final AtomicReferenceArray<Trace> RECENT = new AtomicReferenceArray<>(
+			Math.max(1, Integer.getInteger("librarytest.trace.bufferSize", DEFAULT_BUFFER_SIZE)));
+	private static final AtomicLong sequence = new AtomicLong();
+
+	private final long id = sequence.incrementAndGet();
+	private final String name;
+	private final long startMillis = System.currentTimeMillis();
+	private final long start = System.nanoTime();
+	private final List<Span> spans = new ArrayList<>();
+	private final Deque<Span> open = new ArrayDeque<>();
+	private long durationNanos = -1;
+	private int status;
+
+	Trace(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns a new trace for a request, if it is sampled, else null.
+	 * @param name The name of the request, such as its route.
+	 */
+	static Trace sample(String name) {
+		if (!ENABLED || ThreadLocalRandom.current().nextDouble() >= SAMPLE_RATE) {
+			return null;
+		}
+		return new Trace(name);
+	}
+
+	/**
+	 * Begins a span of the trace of the {@link RequestMetrics#current()
+	 * current} request.
+	 * @return The span, or null if the request is not traced.
+	 */
+	public static Span begin(String name) {
+		if (!ENABLED) {
+			return null;
+		}
+		RequestMetrics request = RequestMetrics.current();
+		Trace trace = request != null ? request.getTrace() : null;
+		return trace != null ? trace.open(name) : null;
+	}
+
+	/**
+	 * Resumes the last span of the trace of the current request if it has
+	 * the given name and details and has ended, else begins a new one with
+	 * them. A piece of work reported in several steps, such as a statement
+	 * that is executed and later closed, is thus one span.
+	 * @return The span, or null if the request is not traced.
+	 */
+	public static Span resume(String name, String detail) {
+		if (!ENABLED) {
+			return null;
+		}
+		RequestMetrics request = RequestMetrics.current();
+		Trace trace = request != null ? request.getTrace() : null;
+		return trace != null ? trace.reopen(name, detail) : null;
+	}
+
+	/**
+	 * Ends the innermost span of the trace of the current request, if it has
+	 * the given name.
+	 */
+	public static void end(String name) {
+		if (!ENABLED) {
+			return;
+		}
+		RequestMetrics request = RequestMetrics.current();
+		Trace trace = request != null ? request.getTrace() : null;
+		if (trace != null) {
+			trace.close(name);
+		}
+	}
+
+	/**
+	 * Ends the span, if there is one.
+	 */
+	public static void end(Span span) {
+		if (span != null) {
+			span.trace.close(span);
+		}
+	}
+
+	synchronized Span open(String spanName) {
+		Span span = new Span(this, spanName, open.size() + 1, System.nanoTime() - start);
+		spans.add(span);
+		open.push(span);
+		return span;
+	}
+
+	synchronized Span reopen(String spanName, String detail) {
+		Span last = spans.isEmpty() ? null : spans.get(spans.size() - 1);
+		if (last != null && last.durationNanos >= 0 && last.name.equals(spanName)
+				&& detail != null && detail.equals(last.detail)) {
+			last.durationNanos = -1;
+			open.push(last);
+			return last;
+		}
+		Span span = open(spanName);
+		span.detail = detail;
+		return span;
+	}
+
+	synchronized void close(String spanName) {
+		Span span = open.peek();
+		if (span != null && span.name.equals(spanName)) {
+			close(span);
+		}
+	}
+
+	synchronized void close(Span span) {
+		if (span.durationNanos < 0) {
+			span.durationNanos = System.nanoTime() - start - span.startNanos;
+			open.remove(span);
+		}
+	}
+
+	/**
+	 * Completes the trace and adds it to the recent traces.
+	 */
+	synchronized void complete(int responseStatus) {
+		durationNanos = System.nanoTime() - start;
+		status = responseStatus;
+		RECENT.set((int)(id % RECENT.length()), this);
+	}
+
+	/**
+	 * Returns the recent traces, the most recent first.
+	 */
+	public static List<Trace> recent() {
+		List<Trace> traces = new ArrayList<>();
+		long last = sequence.get();
+		for (long i = last; i > 0 && i > last - RECENT.length(); i--) {
+			Trace trace = RECENT.get((int)(i % RECENT.length()));
+			if (trace != null && trace.id == i) {
+				traces.add(trace);
+			}
+		}
+		return traces;
+	}
+
+	/**
+	 * Returns whether any request is traced, so that the details of spans
+	 * need not be computed otherwise.
+	 */
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	public static double getSampleRate() {
+		return SAMPLE_RATE;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	public synchronized long getDurationMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(durationNanos);
+	}
+
+	public synchronized int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns a copy of the spans, in the order they began.
+	 */
+	public synchronized List<Span> getSpans() {
+		List<Span> copy = new ArrayList<>(spans.size());
+		for (Span span : spans) {
+			copy.add(span.copy());
+		}
+		return copy;
+	}
+
+	private static double sampleRate() {
+		String rate = System.getProperty("librarytest.trace.sampleRate");
+		try {
+			return rate != null ? Math.min(1, Double.parseDouble(rate)) : 0;
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * A piece of work done for a traced request.
+	 */
+	public static final class Span {
+
+		private final Trace trace;
+		private final String name;
+		private final int depth;
+		private final long startNanos;
+		private long durationNanos = -1;
+		private String detail;
+
+		private Span(Trace trace, String name, int depth, long startNanos) {
+			this.trace = trace;
+			this.name = name;
+			this.depth = depth;
+			this.startNanos = startNanos;
+		}
+
+		private Span copy() {
+			Span copy = new Span(null, name, depth, startNanos);
+			copy.durationNanos = durationNanos;
+			copy.detail = detail;
+			return copy;
+		}
+
+		/**
+		 * Sets the details of the work, such as the SQL of a statement.
+		 */
+		public void setDetail(String detail) {
+			synchronized (trace) {
+				this.detail = detail;
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getDetail() {
+			return detail;
+		}
+
+		/**
+		 * The nesting of the span, 1 for the spans of the request itself.
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * The time from the start of the request to the start of the span.
+		 */
+		public long getStartMicros() {
+			return TimeUnit.NANOSECONDS.toMicros(startNanos);
+		}
+
+		/**
+		 * The duration of the span, or -1 if it was not ended.
+		 */
+		public long getDurationMicros() {
+			return durationNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(durationNanos);
+		}
+	}
+}
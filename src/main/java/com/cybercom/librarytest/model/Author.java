@@ -2,6 +2,10 @@ package com.cybercom.librarytest.model;
 
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
+
+import org.eclipse.persistence.config.PessimisticLock;
+import org.eclipse.persistence.config.QueryHints;
 
 /**
  * JPA bean for representing an author in the library.
@@ -9,16 +13,43 @@ import javax.xml.bind.annotation.XmlRootElement;
  */
 @Entity
 @XmlRootElement
-@NamedQuery(name = Author.FIND_ALL, query = "SELECT a FROM Author a")
+@NamedQueries({
+	@NamedQuery(name = Author.FIND_ALL, query = "SELECT a FROM Author a"), 
+	@NamedQuery(
+		name = Author.FIND_LAST_MODIFIED, 
+		query = "SELECT a.lastModified FROM Author a WHERE a.id = :id"
+	), 
+	@NamedQuery(
+		name = Author.FIND_BY_IDS, 
+		query = "SELECT a FROM Author a WHERE a.id IN :ids"
+	), 
+	@NamedQuery(
+		name = Author.FIND_PAGE, 
+		query = "SELECT a FROM Author a WHERE a.id > :after ORDER BY a.id"
+	), 
+	@NamedQuery(
+		name = Author.FIND_FOR_UPDATE, 
+		query = "SELECT a FROM Author a WHERE a.id = :id", 
+		hints = {
+			@QueryHint(name = QueryHints.PESSIMISTIC_LOCK, value = PessimisticLock.Lock)
+		}
+	)
+})
 public class Author implements Comparable<Author> {
 
 	public static final String FIND_ALL = "Author.findAll";
+	public static final String FIND_PAGE = "Author.findPage";
+	public static final String FIND_LAST_MODIFIED = "Author.findLastModified";
+	public static final String FIND_BY_IDS = "Author.findByIds";
+	public static final String FIND_FOR_UPDATE = "Author.findForUpdate";
 
 	@Id
 	@GeneratedValue
 	private Long id;
 	@Column(nullable = false)
 	private String name;
+	@Column(name = "last_modified")
+	private Long lastModified;
 
 	public Author() {
 		this(null, null);
@@ -49,6 +80,31 @@ public class Author implements Comparable<Author> {
 		this.name = name;
 	}
 	
+	/**
+	 * Returns the time of the last change to this author, in milliseconds 
+	 * since the epoch. Used as the version of the author in ETags; it is 
+	 * not part of the XML/JSON representation.
+	 */
+	@XmlTransient
+	public Long getLastModified() {
+		return lastModified;
+	}
+	
+	public void setLastModified(Long lastModified) {
+		this.lastModified = lastModified;
+	}
+	
+	/**
+	 * Moves the last modified time forward. Called automatically when the 
+	 * author is persisted or updated.
+	 */
+	@PrePersist
+	@PreUpdate
+	public void touch() {
+		long now = System.currentTimeMillis();
+		lastModified = (lastModified == null || now > lastModified) ? now : lastModified + 1;
+	}
+	
 	@Override
 	public boolean equals(Object other) {
 		if (!(other instanceof Author)) {
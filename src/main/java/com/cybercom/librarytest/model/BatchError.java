@@ -0,0 +1,39 @@
+package com.cybercom.librarytest.model;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * An entity of a batch create that was rejected, identified by its 
+ * (zero-based) position in the request.
+ */
+@XmlRootElement(name = "error")
+public class BatchError {
+
+	private Integer index;
+	private String message;
+
+	public BatchError() {
+		this(null, null);
+	}
+
+	public BatchError(Integer index, String message) {
+		this.index = index;
+		this.message = message;
+	}
+
+	public Integer getIndex() {
+		return index;
+	}
+
+	public void setIndex(Integer index) {
+		this.index = index;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+}
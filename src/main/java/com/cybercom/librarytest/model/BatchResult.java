@@ -0,0 +1,54 @@
+package com.cybercom.librarytest.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlSeeAlso;
+
+/**
+ * Result of a batch create: the ids of the created entities, in the order 
+ * they were given, and an error for every entity that was not created, 
+ * in the same order.
+ */
+@XmlRootElement
+@XmlSeeAlso(BatchError.class)
+public class BatchResult {
+
+	private List<Long> created;
+	private List<BatchError> errors;
+
+	public BatchResult() {
+		this.created = new ArrayList<>();
+		this.errors = new ArrayList<>();
+	}
+
+	@XmlElement(name = "id")
+	public List<Long> getCreated() {
+		return created;
+	}
+
+	public void setCreated(List<Long> created) {
+		this.created = created;
+	}
+
+	@XmlElement(name = "error")
+	public List<BatchError> getErrors() {
+		return errors;
+	}
+
+	public void setErrors(List<BatchError> errors) {
+		this.errors = errors;
+	}
+
+	/**
+	 * Sorts the errors by the position of their entity in the request. The 
+	 * errors of a chunk that fails when it is saved are found after the 
+	 * validation errors of the chunk.
+	 */
+	public void sortErrors() {
+		errors.sort(Comparator.comparing(BatchError::getIndex));
+	}
+}
@@ -6,9 +6,27 @@ import java.util.List;
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
+
+import org.eclipse.persistence.config.PessimisticLock;
+import org.eclipse.persistence.config.QueryHints;
 
 /**
  * JPA bean for representing a book in the library.
+ * <p>
+ * The queries behind the list endpoints batch-fetch the lazy author lists: 
+ * the authors of up to {@link #AUTHORS_BATCH_SIZE} books are read with one 
+ * <code>IN</code> query instead of one query per book. A fetch join is not 
+ * used, since it would break <code>setMaxResults</code> and filter the 
+ * author lists of the by-author queries. EclipseLink ignores batch reading 
+ * on scrollable cursors, so the streaming cursor reads 
+ * {@link #FIND_ALL_FOR_CURSOR} instead, which fetch-joins the authors and 
+ * is ordered by id so that the rows of a book are read together.
+ * <p>
+ * The list endpoints use the summary queries instead, which create 
+ * {@link BookSummary} objects with a constructor expression and do not 
+ * read the description. The description is also fetched lazily, which 
+ * takes effect when the entities are woven by EclipseLink.
  * @author Lennart Moraeus
  */
 @Entity
@@ -18,30 +36,166 @@ import javax.xml.bind.annotation.XmlRootElement;
 		name = Book.FIND_ALL, 
 		query = "SELECT b FROM Book b"
 	), 
+	@NamedQuery(
+		name = Book.FIND_ALL_FOR_CURSOR, 
+		query = "SELECT b FROM Book b LEFT JOIN FETCH b.authors ORDER BY b.id"
+	), 
+	@NamedQuery(
+		name = Book.FIND_ALL_WITH_AUTHORS, 
+		query = "SELECT b FROM Book b", 
+		hints = {
+			@QueryHint(name = QueryHints.BATCH, value = "b.authors"), 
+			@QueryHint(name = QueryHints.BATCH_TYPE, value = "IN"), 
+			@QueryHint(name = QueryHints.BATCH_SIZE, value = Book.AUTHORS_BATCH_SIZE)
+		}
+	), 
 	@NamedQuery(
 	    name=Book.FIND_ALL_BY_AUTHOR,
 	    query="SELECT DISTINCT b "
 	    +     "FROM Book b, IN (b.authors) AS a "
-	    +     "WHERE a.id = :id"
+	    +     "WHERE a.id = :id", 
+		hints = {
+			@QueryHint(name = QueryHints.BATCH, value = "b.authors"), 
+			@QueryHint(name = QueryHints.BATCH_TYPE, value = "IN"), 
+			@QueryHint(name = QueryHints.BATCH_SIZE, value = Book.AUTHORS_BATCH_SIZE)
+		}
+	), 
+	@NamedQuery(
+		name = Book.FIND_PAGE, 
+		query = "SELECT b FROM Book b WHERE b.id > :after ORDER BY b.id", 
+		hints = {
+			@QueryHint(name = QueryHints.BATCH, value = "b.authors"), 
+			@QueryHint(name = QueryHints.BATCH_TYPE, value = "IN"), 
+			@QueryHint(name = QueryHints.BATCH_SIZE, value = Book.AUTHORS_BATCH_SIZE)
+		}
+	), 
+	@NamedQuery(
+		name = Book.FIND_BY_IDS, 
+		query = "SELECT b FROM Book b WHERE b.id IN :ids", 
+		hints = {
+			@QueryHint(name = QueryHints.BATCH, value = "b.authors"), 
+			@QueryHint(name = QueryHints.BATCH_TYPE, value = "IN"), 
+			@QueryHint(name = QueryHints.BATCH_SIZE, value = Book.AUTHORS_BATCH_SIZE)
+		}
+	), 
+	@NamedQuery(
+		name = Book.FIND_TEXT_PAGE, 
+		query = "SELECT b.id, b.title, b.description FROM Book b "
+		+       "WHERE b.id > :after ORDER BY b.id"
+	), 
+	@NamedQuery(
+		name = Book.FIND_ISBN_KEYS, 
+		query = "SELECT b.isbnKey, b.id FROM Book b WHERE b.isbnKey IS NOT NULL"
+	), 
+	@NamedQuery(
+		name = Book.FIND_ID_BY_ISBN_KEY, 
+		query = "SELECT b.id FROM Book b WHERE b.isbnKey = :isbnKey"
+	), 
+	@NamedQuery(
+		name = Book.FIND_ALL_SUMMARIES, 
+		query = "SELECT NEW com.cybercom.librarytest.model.BookSummary("
+		+       "b.id, b.title, b.isbn, b.nbrPages) FROM Book b"
+	), 
+	@NamedQuery(
+		name = Book.FIND_SUMMARY_PAGE, 
+		query = "SELECT NEW com.cybercom.librarytest.model.BookSummary("
+		+       "b.id, b.title, b.isbn, b.nbrPages) FROM Book b "
+		+       "WHERE b.id > :after ORDER BY b.id"
+	), 
+	@NamedQuery(
+		name = Book.FIND_ALL_SUMMARIES_BY_AUTHOR, 
+		query = "SELECT DISTINCT NEW com.cybercom.librarytest.model.BookSummary("
+		+       "b.id, b.title, b.isbn, b.nbrPages) "
+		+       "FROM Book b, IN (b.authors) AS a "
+		+       "WHERE a.id = :id"
+	), 
+	@NamedQuery(
+		name = Book.FIND_SUMMARY_PAGE_BY_AUTHOR, 
+		query = "SELECT DISTINCT NEW com.cybercom.librarytest.model.BookSummary("
+		+       "b.id, b.title, b.isbn, b.nbrPages) "
+		+       "FROM Book b, IN (b.authors) AS a "
+		+       "WHERE a.id = :id AND b.id > :after "
+		+       "ORDER BY b.id"
+	), 
+	@NamedQuery(
+		name = Book.FIND_AUTHORS_OF_BOOKS, 
+		query = "SELECT b.id, a FROM Book b JOIN b.authors a WHERE b.id IN :ids"
+	), 
+	@NamedQuery(
+		name = Book.FIND_DESCRIPTION, 
+		query = "SELECT b.description, b.lastModified FROM Book b WHERE b.id = :id"
+	), 
+	@NamedQuery(
+		name = Book.FIND_FOR_UPDATE, 
+		query = "SELECT b FROM Book b WHERE b.id = :id", 
+		hints = {
+			@QueryHint(name = QueryHints.PESSIMISTIC_LOCK, value = PessimisticLock.Lock)
+		}
+	), 
+	@NamedQuery(
+		name = Book.FIND_LAST_MODIFIED, 
+		query = "SELECT b.lastModified, MAX(a.lastModified) "
+		+       "FROM Book b LEFT JOIN b.authors a "
+		+       "WHERE b.id = :id "
+		+       "GROUP BY b.id, b.lastModified"
+	), 
+	@NamedQuery(
+	    name=Book.FIND_PAGE_BY_AUTHOR,
+	    query="SELECT DISTINCT b "
+	    +     "FROM Book b, IN (b.authors) AS a "
+	    +     "WHERE a.id = :id AND b.id > :after "
+	    +     "ORDER BY b.id", 
+		hints = {
+			@QueryHint(name = QueryHints.BATCH, value = "b.authors"), 
+			@QueryHint(name = QueryHints.BATCH_TYPE, value = "IN"), 
+			@QueryHint(name = QueryHints.BATCH_SIZE, value = Book.AUTHORS_BATCH_SIZE)
+		}
 	)
 })
 public class Book {
 
 	public static final String FIND_ALL = "Book.findAll";
+	public static final String FIND_ALL_WITH_AUTHORS = "Book.findAllWithAuthors";
+	public static final String FIND_ALL_FOR_CURSOR = "Book.findAllForCursor";
 	public static final String FIND_ALL_BY_AUTHOR = "Book.findAllByAuthor";
+	public static final String FIND_PAGE = "Book.findPage";
+	public static final String FIND_PAGE_BY_AUTHOR = "Book.findPageByAuthor";
+	public static final String FIND_LAST_MODIFIED = "Book.findLastModified";
+	public static final String FIND_BY_IDS = "Book.findByIds";
+	public static final String FIND_TEXT_PAGE = "Book.findTextPage";
+	public static final String FIND_ISBN_KEYS = "Book.findIsbnKeys";
+	public static final String FIND_ID_BY_ISBN_KEY = "Book.findIdByIsbnKey";
+	public static final String FIND_ALL_SUMMARIES = "Book.findAllSummaries";
+	public static final String FIND_SUMMARY_PAGE = "Book.findSummaryPage";
+	public static final String FIND_ALL_SUMMARIES_BY_AUTHOR = "Book.findAllSummariesByAuthor";
+	public static final String FIND_SUMMARY_PAGE_BY_AUTHOR = "Book.findSummaryPageByAuthor";
+	public static final String FIND_AUTHORS_OF_BOOKS = "Book.findAuthorsOfBooks";
+	public static final String FIND_DESCRIPTION = "Book.findDescription";
+	public static final String FIND_FOR_UPDATE = "Book.findForUpdate";
+	
+	/**
+	 * The number of books whose authors are read with one query; the 
+	 * maximum page size of the list endpoints.
+	 */
+	static final String AUTHORS_BATCH_SIZE = "1000";
 
 	@Id
 	@GeneratedValue
 	private Long id;
 	@Column(nullable = false)
 	private String title;
+	@Basic(fetch = FetchType.LAZY)
 	@Column(length = 2000)
 	private String description;
 	private String isbn;
+	@Column(name = "isbn_key", unique = true, length = 13)
+	private String isbnKey;
 	private Integer nbrPages;
 	@ManyToMany
 	@JoinTable(name="book_has_author")
 	private List<Author> authors;
+	@Column(name = "last_modified")
+	private Long lastModified;
 
 	public Book() {
 		this(null, null, null, null, null);
@@ -55,7 +209,7 @@ public class Book {
 		this.id = id;
 		this.title = title;
 		this.description = description;
-		this.isbn = isbn;
+		setIsbn(isbn);
 		this.nbrPages = nbrPages;
 		this.authors = new ArrayList<>();
 	}
@@ -90,6 +244,18 @@ public class Book {
 
 	public void setIsbn(String isbn) {
 		this.isbn = isbn;
+		this.isbnKey = Isbn.toKey(isbn);
+	}
+	
+	/**
+	 * Returns the normalized ISBN, which is unique among all books, or null 
+	 * if the book has no ISBN or an invalid one. It is derived from the ISBN 
+	 * and is not part of the XML/JSON representation.
+	 * @see Isbn#toKey(String)
+	 */
+	@XmlTransient
+	public String getIsbnKey() {
+		return isbnKey;
 	}
 
 	public Integer getNbOfPage() {
@@ -108,4 +274,31 @@ public class Book {
 	public void setAuthors(List<Author> authors) {
 		this.authors = authors;
 	}
+	
+	/**
+	 * Returns the time of the last change to this book, in milliseconds 
+	 * since the epoch. Together with the last modified times of the authors 
+	 * it is used as the version of the book in ETags; it is not part of the 
+	 * XML/JSON representation.
+	 */
+	@XmlTransient
+	public Long getLastModified() {
+		return lastModified;
+	}
+	
+	public void setLastModified(Long lastModified) {
+		this.lastModified = lastModified;
+	}
+	
+	/**
+	 * Moves the last modified time forward. Called automatically when the 
+	 * book is persisted or updated; call it explicitly when only the author 
+	 * list changes.
+	 */
+	@PrePersist
+	@PreUpdate
+	public void touch() {
+		long now = System.currentTimeMillis();
+		lastModified = (lastModified == null || now > lastModified) ? now : lastModified + 1;
+	}
 }
@@ -0,0 +1,36 @@
+package com.cybercom.librarytest.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlSeeAlso;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Container for a list of book summaries, to facilitate XML serialization. 
+ * It has the same XML/JSON shape as {@link Books}.
+ */
+@XmlRootElement(name = "books")
+@XmlSeeAlso({BookSummary.class, Author.class})
+public class BookSummaries extends ArrayList<BookSummary> {
+
+	private static final long serialVersionUID = 3113566911318484707L;
+
+	public BookSummaries() {
+		super();
+	}
+
+	public BookSummaries(Collection<? extends BookSummary> c) {
+		super(c);
+	}
+
+	@XmlElement(name = "book")
+	public List<BookSummary> getBooks() {
+		return this;
+	}
+
+	public void setBooks(List<BookSummary> books) {
+		this.addAll(books);
+	}
+}
@@ -0,0 +1,111 @@
+package com.cybercom.librarytest.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A book without its description, as returned by the list endpoints. It is 
+ * not an entity: the summary queries of {@link Book} create it with a 
+ * constructor expression, which reads only the short columns and skips the 
+ * persistence context and the shared cache. The authors are read with one 
+ * more query by {@link #loadAuthors}.
+ * <p>
+ * The XML/JSON representation is that of a {@link Book} without the 
+ * description.
+ */
+@XmlRootElement(name = "book")
+public class BookSummary {
+
+	/**
+	 * The number of books whose authors are read with one query.
+	 */
+	private static final int AUTHORS_BATCH_SIZE = Integer.parseInt(Book.AUTHORS_BATCH_SIZE);
+
+	private Long id;
+	private String title;
+	private String isbn;
+	private Integer nbOfPage;
+	private List<Author> authors;
+
+	public BookSummary() {
+		this(null, null, null, null);
+	}
+
+	public BookSummary(Long id, String title, String isbn, Integer nbOfPage) {
+		this.id = id;
+		this.title = title;
+		this.isbn = isbn;
+		this.nbOfPage = nbOfPage;
+		this.authors = new ArrayList<>();
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	public String getIsbn() {
+		return isbn;
+	}
+
+	public void setIsbn(String isbn) {
+		this.isbn = isbn;
+	}
+
+	public Integer getNbOfPage() {
+		return nbOfPage;
+	}
+
+	public void setNbOfPage(Integer nbOfPage) {
+		this.nbOfPage = nbOfPage;
+	}
+
+	@XmlElement(name = "author")
+	public List<Author> getAuthors() {
+		return authors;
+	}
+
+	public void setAuthors(List<Author> authors) {
+		this.authors = authors;
+	}
+
+	/**
+	 * Reads the authors of the given books with the 
+	 * {@link Book#FIND_AUTHORS_OF_BOOKS} query, one query per 
+	 * {@link Book#AUTHORS_BATCH_SIZE} books, and adds them to the books.
+	 */
+	public static void loadAuthors(List<? extends BookSummary> books, EntityManager em) {
+		for (int start = 0; start < books.size(); start += AUTHORS_BATCH_SIZE) {
+			List<? extends BookSummary> batch = 
+					books.subList(start, Math.min(start + AUTHORS_BATCH_SIZE, books.size()));
+			Map<Long, BookSummary> booksById = new HashMap<>();
+			for (BookSummary book : batch) {
+				booksById.put(book.getId(), book);
+			}
+			List<?> rows = em.createNamedQuery(Book.FIND_AUTHORS_OF_BOOKS)
+					.setParameter("ids", new ArrayList<>(booksById.keySet()))
+					.getResultList();
+			for (Object row : rows) {
+				Object[] bookAndAuthor = (Object[])row;
+				booksById.get(bookAndAuthor[0]).getAuthors().add((Author)bookAndAuthor[1]);
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.cybercom.librarytest.model;
+
+/**
+ * Normalizes ISBNs. An ISBN-10 and the ISBN-13 of the same book, written
+ * with or without hyphens and spaces, all have the same key: the 13 digits
+ * of the ISBN-13.
+ */
+public final class Isbn {
+
+	private Isbn() {
+	}
+
+	/**
+	 * Returns the key of the given ISBN-10 or ISBN-13, or null if it is not
+	 * a valid ISBN: wrong length, a character other than a digit, hyphen or
+	 * space (or X as the check digit of an ISBN-10), or a wrong check digit.
+	 */
+	public static String toKey(String isbn) {
+		if (isbn == null) {
+			return null;
+		}
+		char[] digits = new char[13];
+		int length = 0;
+		for (int i = 0; i < isbn.length(); i++) {
+			char c = isbn.charAt(i);
+			if (c == '-' || c == ' ') {
+				continue;
+			}
+			if (length == 13) {
+				return null;
+			}
+			if (c >= '0' && c <= '9') {
+				digits[length++] = c;
+			} else if ((c == 'X' || c == 'x') && length == 9) {
+				digits[length++] = 'X';
+			} else {
+				return null;
+			}
+		}
+		if (length == 10) {
+			return isValidIsbn10(digits) ? isbn10To13(digits) : null;
+		}
+		if (length == 13 && digits[9] != 'X' && isValidIsbn13(digits)) {
+			return new String(digits);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if the given string is a valid ISBN-10 or ISBN-13.
+	 */
+	public static boolean isValid(String isbn) {
+		return toKey(isbn) != null;
+	}
+
+	private static boolean isValidIsbn10(char[] digits) {
+		int sum = 0;
+		for (int i = 0; i < 10; i++) {
+			int digit = digits[i] == 'X' ? 10 : digits[i] - '0';
+			sum += (10 - i) * digit;
+		}
+		return sum % 11 == 0;
+	}
+
+	private static boolean isValidIsbn13(char[] digits) {
+		return checkDigit13(digits) == digits[12] - '0';
+	}
+
+	/**
+	 * Returns the check digit of an ISBN-13 from its first 12 digits.
+	 */
+	private static int checkDigit13(char[] digits) {
+		int sum = 0;
+		for (int i = 0; i < 12; i++) {
+			sum += (i % 2 == 0 ? 1 : 3) * (digits[i] - '0');
+		}
+		return (10 - sum % 10) % 10;
+	}
+
+	private static String isbn10To13(char[] isbn10) {
+		char[] digits = new char[13];
+		digits[0] = '9';
+		digits[1] = '7';
+		digits[2] = '8';
+		System.arraycopy(isbn10, 0, digits, 3, 9);
+		digits[12] = (char)('0' + checkDigit13(digits));
+		return new String(digits);
+	}
+}
@@ -0,0 +1,182 @@
+package com.cybercom.librarytest.rest;
+
+import java.util.Date;
+import java.util.Locale;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import com.cybercom.librarytest.DatabaseExecutor;
+import com.cybercom.librarytest.LocalEntityManagerFactory;
+import com.cybercom.librarytest.MeteredDataSource;
+import com.cybercom.librarytest.QueryProfiler;
+import com.cybercom.librarytest.UnitOfWork;
+import com.cybercom.librarytest.cache.EntityCache;
+import com.cybercom.librarytest.cache.RepresentationCache;
+import com.cybercom.librarytest.metrics.Trace;
+
+/**
+ * REST interface exposing runtime statistics of the library service, as 
+ * plain text with one <code>name value</code> pair per line.
+ */
+@Path("/admin")
+@Produces(MediaType.TEXT_PLAIN)
+public class AdminRestService {
+
+	/**
+	 * Returns the size and the hit, miss and eviction counters of the 
+	 * shared entity and representation caches.
+	 */
+	@GET
+	@Path("/cache")
+	public String getCacheStatistics() {
+		StringBuilder sb = new StringBuilder();
+		appendCacheStatistics(sb, EntityCache.BOOKS);
+		appendCacheStatistics(sb, EntityCache.AUTHORS);
+		appendCacheStatistics(sb, RepresentationCache.BOOKS);
+		appendCacheStatistics(sb, RepresentationCache.AUTHORS);
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the number of open and leaked EntityManagers and the 
+	 * connection pool usage, including the time spent waiting for 
+	 * connections.
+	 */
+	@GET
+	@Path("/persistence")
+	public String getPersistenceStatistics() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("entityManagers.opened ").append(UnitOfWork.getOpened()).append('\n');
+		sb.append("entityManagers.open ").append(UnitOfWork.getOpen()).append('\n');
+		sb.append("entityManagers.leaked ").append(UnitOfWork.getLeaked()).append('\n');
+		sb.append("entityManagers.rolledBack ").append(UnitOfWork.getRolledBack()).append('\n');
+		MeteredDataSource dataSource = LocalEntityManagerFactory.getDataSource();
+		if (dataSource != null) {
+			sb.append("connections.acquired ").append(dataSource.getAcquired()).append('\n');
+			sb.append("connections.active ").append(dataSource.getActive()).append('\n');
+			sb.append("connections.waitTimeMillis ").append(dataSource.getWaitTimeMillis()).append('\n');
+			sb.append("connections.maxWaitTimeMillis ").append(dataSource.getMaxWaitTimeMillis()).append('\n');
+			sb.append("statements.executed ").append(dataSource.getStatements()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the usage of the executor running the persistence work of the 
+	 * asynchronous resources: its threads, the tasks running and waiting, 
+	 * the time spent waiting and the requests rejected or timed out.
+	 */
+	@GET
+	@Path("/executor")
+	public String getExecutorStatistics() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("executor.threads ").append(DatabaseExecutor.getThreads()).append('\n');
+		sb.append("executor.virtual ").append(DatabaseExecutor.isVirtual()).append('\n');
+		sb.append("executor.active ").append(DatabaseExecutor.getActive()).append('\n');
+		sb.append("executor.queued ").append(DatabaseExecutor.getQueued()).append('\n');
+		sb.append("executor.maxQueued ").append(DatabaseExecutor.getMaxQueued()).append('\n');
+		sb.append("executor.queueSize ").append(DatabaseExecutor.getQueueSize()).append('\n');
+		sb.append("executor.completed ").append(DatabaseExecutor.getCompleted()).append('\n');
+		sb.append("executor.rejected ").append(DatabaseExecutor.getRejected()).append('\n');
+		sb.append("executor.timedOut ").append(DatabaseExecutor.getTimedOut()).append('\n');
+		sb.append("executor.waitTimeMillis ").append(DatabaseExecutor.getWaitTimeMillis()).append('\n');
+		sb.append("executor.maxWaitTimeMillis ").append(DatabaseExecutor.getMaxWaitTimeMillis()).append('\n');
+		return sb.toString();
+	}
+
+	/**
+	 * Returns, per route and query, the number of executions, the rows read 
+	 * and the total and longest time in microseconds, the most 
+	 * time-consuming first, as <code>query[GET:/books][Book.findAll].count</code> 
+	 * and so on; queries executed outside requests have the route 
+	 * <code>none</code>. Also returns the slow query threshold and the 
+	 * number of slow queries logged.
+	 */
+	@GET
+	@Path("/queries")
+	public String getQueryStatistics() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("queries.slowQueryMillis ").append(QueryProfiler.getSlowQueryMillis()).append('\n');
+		sb.append("queries.slow ").append(QueryProfiler.getSlowQueries()).append('\n');
+		for (QueryProfiler.Statistics statistics : QueryProfiler.getStatistics()) {
+			String prefix = "query[" + statistics.getOperation().replace(' ', ':') + "]["
+					+ statistics.getQuery() + "].";
+			sb.append(prefix).append("count ").append(statistics.getCount()).append('\n');
+			sb.append(prefix).append("rows ").append(statistics.getRows()).append('\n');
+			sb.append(prefix).append("timeMicros ").append(statistics.getTimeMicros()).append('\n');
+			sb.append(prefix).append("maxTimeMicros ").append(statistics.getMaxTimeMicros()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the recent traces of sampled requests, the most recent first: 
+	 * per trace a line with its id, route, status, duration and start, then 
+	 * a line per span, indented by its nesting, with its start relative to 
+	 * the request, its duration, its name and details.
+	 * @param route Only the traces of this route, such as 
+	 * <code>PUT /books/{book_id}/authors</code>, if given.
+	 * @param minMillis Only the traces of requests that took at least this 
+	 * long, if given.
+	 */
+	@GET
+	@Path("/traces")
+	public String getTraces(@QueryParam("route") String route, 
+			@QueryParam("minMillis") Long minMillis) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("traces.sampleRate ").append(Trace.getSampleRate()).append('\n');
+		for (Trace trace : Trace.recent()) {
+			if (route != null && !route.equals(trace.getName())) {
+				continue;
+			}
+			if (minMillis != null && trace.getDurationMicros() < minMillis * 1000) {
+				continue;
+			}
+			sb.append('\n').append("trace ").append(trace.getId()).append(' ')
+					.append(trace.getName()).append(' ').append(trace.getStatus()).append(' ')
+					.append(millis(trace.getDurationMicros())).append(" ms at ")
+					.append(String.format(Locale.ROOT, "%tFT%<tT.%<tLZ", new Date(trace.getStartMillis())))
+					.append('\n');
+			for (Trace.Span span : trace.getSpans()) {
+				for (int i = 0; i < span.getDepth(); i++) {
+					sb.append("  ");
+				}
+				sb.append('+').append(millis(span.getStartMicros())).append(" ms ")
+						.append(span.getDurationMicros() < 0 ? "-" : millis(span.getDurationMicros()))
+						.append(" ms ").append(span.getName());
+				if (span.getDetail() != null) {
+					sb.append(' ').append(span.getDetail());
+				}
+				sb.append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String millis(long micros) {
+		return String.format(Locale.ROOT, "%.3f", micros / 1000.0);
+	}
+
+	private static void appendCacheStatistics(StringBuilder sb, EntityCache<?> cache) {
+		String prefix = "cache." + cache.getName() + ".";
+		sb.append(prefix).append("size ").append(cache.size()).append('\n');
+		sb.append(prefix).append("maxSize ").append(cache.getMaxSize()).append('\n');
+		sb.append(prefix).append("hits ").append(cache.getHits()).append('\n');
+		sb.append(prefix).append("misses ").append(cache.getMisses()).append('\n');
+		sb.append(prefix).append("evictions ").append(cache.getEvictions()).append('\n');
+	}
+
+	private static void appendCacheStatistics(StringBuilder sb, RepresentationCache cache) {
+		String prefix = "cache." + cache.getName() + ".";
+		sb.append(prefix).append("size ").append(cache.size()).append('\n');
+		sb.append(prefix).append("bytes ").append(cache.getBytes()).append('\n');
+		sb.append(prefix).append("maxBytes ").append(cache.getMaxBytes()).append('\n');
+		sb.append(prefix).append("hits ").append(cache.getHits()).append('\n');
+		sb.append(prefix).append("misses ").append(cache.getMisses()).append('\n');
+		sb.append(prefix).append("evictions ").append(cache.getEvictions()).append('\n');
+	}
+}
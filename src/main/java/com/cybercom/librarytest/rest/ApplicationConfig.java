@@ -21,6 +21,16 @@ public class ApplicationConfig extends Application {
 		HashSet<Class<?>> c = new HashSet<>();
 		c.add(BookRestService.class);
 		c.add(AuthorRestService.class);
+		c.add(AsyncBookRestService.class);
+		c.add(AsyncAuthorRestService.class);
+		c.add(AdminRestService.class);
+		c.add(MetricsRestService.class);
+		c.add(MetricsFilter.class);
+		c.add(UnitOfWorkFilter.class);
+		c.add(CompressionInterceptor.class);
+		c.add(BinaryProvider.class);
+		c.add(JsonProvider.class);
+		c.add(RepresentationWriter.class);
 		//c.add(MOXyJsonProvider.class);
 
 		classes = Collections.unmodifiableSet(c);
@@ -0,0 +1,83 @@
+package com.cybercom.librarytest.rest;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Providers;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+
+/**
+ * Asynchronous variant of the {@link AuthorRestService}, under
+ * <code>/async/authors</code>, in the same way as the
+ * {@link AsyncBookRestService}.
+ */
+@Path("/async/authors")
+@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, BinaryProvider.MEDIA_TYPE})
+@Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, BinaryProvider.MEDIA_TYPE})
+public class AsyncAuthorRestService {
+
+	@Context
+	private UriInfo uriInfo;
+
+	@Context
+	private Providers providers;
+
+	@POST
+	public void createAuthor(final Author author, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> authors().createAuthor(author));
+	}
+
+	@POST
+	@Path("/batch")
+	@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+	public void createAuthors(final Authors authors, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> authors().createAuthors(authors));
+	}
+
+	@PUT
+	public void updateAuthor(final Author author, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> authors().updateAuthor(author));
+	}
+
+	@GET
+	public void getAllAuthors(@QueryParam("after") final Long after,
+			@QueryParam("limit") final Integer limit, @QueryParam("stream") final boolean stream,
+			@QueryParam("fields") final String fields, @Context final Request request,
+			@Suspended AsyncResponse response) {
+		AsyncResources.submit(response,
+				() -> authors().getAllAuthors(after, limit, stream, fields, request));
+	}
+
+	@GET
+	@Path("{id}")
+	public void getAuthor(@PathParam("id") final Long id, @QueryParam("fields") final String fields,
+			@Context final Request request, @Context final HttpHeaders headers,
+			@Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> authors().getAuthor(id, fields, request, headers));
+	}
+
+	@DELETE
+	@Path("{id}")
+	public void deleteAuthor(@PathParam("id") final Long id, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> authors().deleteAuthor(id));
+	}
+
+	private AuthorRestService authors() {
+		return new AuthorRestService(uriInfo, providers);
+	}
+}
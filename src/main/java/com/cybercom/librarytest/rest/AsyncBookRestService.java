@@ -0,0 +1,145 @@
+package com.cybercom.librarytest.rest;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Providers;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.Books;
+
+/**
+ * Asynchronous variant of the {@link BookRestService}, under
+ * <code>/async/books</code>: every method suspends the request and has the
+ * corresponding method of the book service run on the
+ * {@link com.cybercom.librarytest.DatabaseExecutor} by the
+ * {@link AsyncResources}, which frees the request thread while the database
+ * works.
+ */
+@Path("/async/books")
+@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, BinaryProvider.MEDIA_TYPE})
+@Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, BinaryProvider.MEDIA_TYPE})
+public class AsyncBookRestService {
+
+	@Context
+	private UriInfo uriInfo;
+
+	@Context
+	private Providers providers;
+
+	@POST
+	public void createBook(final Book book, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> books().createBook(book));
+	}
+
+	@POST
+	@Path("/batch")
+	@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+	public void createBooks(final Books books, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> books().createBooks(books));
+	}
+
+	@PUT
+	public void updateBook(final Book book, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> books().updateBook(book));
+	}
+
+	@GET
+	public void getAllBooks(@QueryParam("after") final Long after,
+			@QueryParam("limit") final Integer limit, @QueryParam("stream") final boolean stream,
+			@QueryParam("fields") final String fields, @Context final Request request,
+			@Suspended AsyncResponse response) {
+		AsyncResources.submit(response,
+				() -> books().getAllBooks(after, limit, stream, fields, request));
+	}
+
+	@GET
+	@Path("/search")
+	public void searchBooks(@QueryParam("q") final String q,
+			@QueryParam("limit") final Integer limit, @QueryParam("fields") final String fields,
+			@Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> books().searchBooks(q, limit, fields));
+	}
+
+	@GET
+	@Path("{id}")
+	public void getBook(@PathParam("id") final Long id, @QueryParam("fields") final String fields,
+			@Context final Request request, @Context final HttpHeaders headers,
+			@Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> books().getBook(id, fields, request, headers));
+	}
+
+	@GET
+	@Path("/isbn/{isbn}")
+	public void getBookByIsbn(@PathParam("isbn") final String isbn,
+			@QueryParam("fields") final String fields, @Context final Request request,
+			@Context final HttpHeaders headers, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response,
+				() -> books().getBookByIsbn(isbn, fields, request, headers));
+	}
+
+	@GET
+	@Path("{id}/description")
+	@Produces(MediaType.TEXT_PLAIN)
+	public void getDescription(@PathParam("id") final Long id, @Context final Request request,
+			@Context final HttpHeaders headers, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> books().getDescription(id, request, headers));
+	}
+
+	@DELETE
+	@Path("{id}")
+	public void deleteBook(@PathParam("id") final Long id, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> books().deleteBook(id));
+	}
+
+	@GET
+	@Path("/byauthor/{author_id}")
+	public void getBooksForAuthor(@PathParam("author_id") final Long authorId,
+			@QueryParam("after") final Long after, @QueryParam("limit") final Integer limit,
+			@QueryParam("fields") final String fields, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response,
+				() -> books().getBooksForAuthor(authorId, after, limit, fields));
+	}
+
+	@GET
+	@Path("/{book_id}/authors")
+	public void getAuthorsOfBook(@PathParam("book_id") final Long bookId,
+			@QueryParam("fields") final String fields, @Context final Request request,
+			@Context final HttpHeaders headers, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response,
+				() -> books().getAuthorsOfBook(bookId, fields, request, headers));
+	}
+
+	@POST
+	@Path("/{book_id}/authors")
+	public void addAuthorToBook(@PathParam("book_id") final Long bookId, final Author author,
+			@Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> books().addAuthorToBook(bookId, author));
+	}
+
+	@PUT
+	@Path("/{book_id}/authors")
+	public void updateAuthorsOfBook(@PathParam("book_id") final Long bookId,
+			final Authors authors, @Suspended AsyncResponse response) {
+		AsyncResources.submit(response, () -> books().updateAuthorsOfBook(bookId, authors));
+	}
+
+	private BookRestService books() {
+		return new BookRestService(uriInfo, providers);
+	}
+}
@@ -0,0 +1,92 @@
+package com.cybercom.librarytest.rest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import com.cybercom.librarytest.DatabaseExecutor;
+import com.cybercom.librarytest.UnitOfWork;
+import com.cybercom.librarytest.metrics.RequestMetrics;
+
+/**
+ * Runs the work of a suspended request on the {@link DatabaseExecutor} and
+ * resumes the request with its result. The work runs in a
+ * {@link UnitOfWork} of its own, with the RESTEasy context and the
+ * {@link RequestMetrics} of the request, so that the synchronous
+ * resource methods can do it unchanged. The response is written on the
+ * executor thread as well.
+ * <p>
+ * A request whose work cannot be queued, or has not completed within
+ * {@link DatabaseExecutor#getTimeoutSeconds()}, is answered with 503
+ * Service Unavailable.
+ */
+final class AsyncResources {
+
+	private AsyncResources() {
+	}
+
+	static void submit(final AsyncResponse response, final Callable<Response> work) {
+		final Map<Class<?>, Object> context =
+				new HashMap<>(ResteasyProviderFactory.getContextDataMap());
+		final RequestMetrics metrics = RequestMetrics.current();
+		if (metrics != null) {
+			metrics.detach();
+		}
+		final AtomicReference<Runnable> queued = new AtomicReference<>();
+		response.setTimeoutHandler(new TimeoutHandler() {
+			@Override
+			public void handleTimeout(AsyncResponse asyncResponse) {
+				Runnable task = queued.get();
+				if (task != null) {
+					DatabaseExecutor.remove(task);
+				}
+				DatabaseExecutor.timedOut();
+				asyncResponse.resume(unavailable());
+			}
+		});
+		response.setTimeout(DatabaseExecutor.getTimeoutSeconds(), TimeUnit.SECONDS);
+		try {
+			queued.set(DatabaseExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					if (!response.isSuspended()) {
+						return;
+					}
+					ResteasyProviderFactory.pushContextDataMap(context);
+					if (metrics != null) {
+						metrics.attach();
+					}
+					UnitOfWork.begin();
+					try {
+						response.resume(work.call());
+					} catch (Exception e) {
+						if (response.resume(e) && metrics != null) {
+							metrics.failed();
+						}
+					} finally {
+						UnitOfWork.end();
+						if (metrics != null) {
+							metrics.detach();
+						}
+						ResteasyProviderFactory.clearContextData();
+					}
+				}
+			}));
+		} catch (RejectedExecutionException e) {
+			response.resume(unavailable());
+		}
+	}
+
+	private static Response unavailable() {
+		return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+	}
+}
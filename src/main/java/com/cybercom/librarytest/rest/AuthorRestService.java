@@ -3,53 +3,192 @@ package com.cybercom.librarytest.rest;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
+import javax.ws.rs.ext.Providers;
 
 import org.jboss.resteasy.spi.BadRequestException;
 
-import com.cybercom.librarytest.LocalEntityManagerFactory;
+import com.cybercom.librarytest.UnitOfWork;
+import com.cybercom.librarytest.cache.EntityCache;
+import com.cybercom.librarytest.cache.RepresentationCache;
 import com.cybercom.librarytest.model.Author;
 import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.BatchError;
+import com.cybercom.librarytest.model.BatchResult;
 import java.net.URI;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * EJB implementing the REST interface for authors in the library.
+ * EJB implementing the REST interface for authors in the library. All methods 
+ * use the EntityManager of the request's {@link UnitOfWork}, which is closed 
+ * by {@link UnitOfWorkFilter}.
  * @author Lennart Moraeus
  */
 @Path("/authors")
-@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
-@Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, BinaryProvider.MEDIA_TYPE})
+@Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, BinaryProvider.MEDIA_TYPE})
 public class AuthorRestService {
 
+	private static final Logger LOG = Logger.getLogger(AuthorRestService.class.getName());
+
+	/**
+	 * The properties of an author that can be requested with <code>?fields=</code>.
+	 */
+	static final FieldSet AUTHOR_FIELDS = new FieldSet(
+			new String[] {"id", "name"}, new String[] {"id", "name"});
+	
+	// The list queries as projections; %s is replaced by the select list of 
+	// the requested columns.
+	private static final String ALL_AUTHORS = "SELECT %s FROM Author a";
+	private static final String PAGE_OF_AUTHORS = 
+			"SELECT %s FROM Author a WHERE a.id > :after ORDER BY a.id";
+
+	/**
+	 * The media types of the resource, for the responses that are not built 
+	 * by RESTEasy: streamed lists and cached representations.
+	 */
+	private static final List<Variant> VARIANTS = Variant.mediaTypes(
+			MediaType.APPLICATION_XML_TYPE, MediaType.APPLICATION_JSON_TYPE, 
+			BinaryProvider.MEDIA_TYPE_TYPE).build();
+
+	private static final Representations REPRESENTATIONS = 
+			new Representations(RepresentationCache.AUTHORS, VARIANTS);
+
 	@Context
 	private UriInfo uriInfo;
 
+	@Context
+	private Providers providers;
+
+	public AuthorRestService() {
+	}
+
+	/**
+	 * Creates the resource with the context RESTEasy would inject, for the 
+	 * {@link AsyncAuthorRestService} to delegate to.
+	 */
+	AuthorRestService(UriInfo uriInfo, Providers providers) {
+		this.uriInfo = uriInfo;
+		this.providers = providers;
+	}
+
 	/**
 	 * Adds a new Author.
 	 * @throws BadRequestException - if the specified author is null.
 	 */
 	@POST
 	public Response createAuthor(Author author) {
-		if (author == null || doesAuthorExistInDatabase(author.getId())) {
+		EntityManager em = UnitOfWork.entityManager();
+		if (author == null || doesAuthorExistInDatabase(author.getId(), em)) {
 			throw new BadRequestException("Author was null.");
 		}
-		EntityManager em = 
-				LocalEntityManagerFactory.createEntityManager();
 		EntityTransaction tx = em.getTransaction();
 		tx.begin();
 		em.persist(author);
 		tx.commit();
-		em.close();
+		EntityCache.AUTHORS.invalidate(author.getId());
+		RepresentationCache.AUTHORS.invalidate(author.getId());
 		URI authorUri = uriInfo.getAbsolutePathBuilder()
 				.path(String.valueOf(author.getId())).build();
 		return Response.created(authorUri).build();
 	}
 
+	/**
+	 * Adds a batch of new authors. The authors are persisted in chunks of 
+	 * {@link BookRestService#BATCH_CHUNK_SIZE}, each in its own transaction, 
+	 * and the persistence context is cleared after each chunk. Authors that are rejected are reported in the result together with 
+	 * their position in the batch; the other authors are still created. A 
+	 * chunk that the database rejects is saved again one author at a time.
+	 * The result is returned as XML or JSON only.
+	 * @throws BadRequestException - if the list of authors is null.
+	 */
+	@POST
+	@Path("/batch")
+	@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+	public Response createAuthors(Authors authors) {
+		if (authors == null) {
+			throw new BadRequestException("Authors was null.");
+		}
+		BatchResult result = new BatchResult();
+		int chunkSize = BookRestService.BATCH_CHUNK_SIZE;
+		EntityManager em = UnitOfWork.entityManager();
+		for (int start = 0; start < authors.size(); start += chunkSize) {
+			int end = Math.min(start + chunkSize, authors.size());
+			createAuthors(authors.subList(start, end), start, result, em);
+			em.clear();
+		}
+		result.sortErrors();
+		return Response.ok(result).build();
+	}
+	
+	/**
+	 * Helper method for validating and persisting one chunk of a batch in a 
+	 * single transaction, as {@link BookRestService} does for books.
+	 * @param offset The position of the chunk in the batch.
+	 */
+	private void createAuthors(List<Author> chunk, int offset, BatchResult result, 
+			EntityManager em) {
+		List<Author> persisted = new ArrayList<>();
+		List<Integer> indexes = new ArrayList<>();
+		EntityTransaction tx = em.getTransaction();
+		tx.begin();
+		for (int i = 0; i < chunk.size(); i++) {
+			Author author = chunk.get(i);
+			String error = null;
+			if (author == null) {
+				error = "Author was null.";
+			} else if (author.getId() != null) {
+				error = "Author in a batch must not have an id.";
+			} else if (author.getName() == null) {
+				error = "Author must have a name.";
+			}
+			if (error != null) {
+				result.getErrors().add(new BatchError(offset + i, error));
+				continue;
+			}
+			em.persist(author);
+			persisted.add(author);
+			indexes.add(offset + i);
+		}
+		try {
+			tx.commit();
+		} catch (RuntimeException e) {
+			if (persisted.size() == 1) {
+				LOG.log(Level.WARNING, "Author " + indexes.get(0) + " of a batch could not be saved.", e);
+				result.getErrors().add(new BatchError(indexes.get(0), "The author could not be saved."));
+			}
+			persisted.clear();
+		} finally {
+			if (tx.isActive()) {
+				tx.rollback();
+			}
+		}
+		if (persisted.isEmpty() && indexes.size() > 1) {
+			em.clear();
+			for (Integer index : indexes) {
+				Author author = chunk.get(index - offset);
+				author.setId(null);
+				createAuthors(Collections.singletonList(author), index, result, em);
+			}
+			return;
+		}
+		for (Author author : persisted) {
+			result.getCreated().add(author.getId());
+		}
+	}
+
 	/**
 	 * Updates the info about a author.
 	 * @throws BadRequestException - if the specified author is null.
@@ -59,53 +198,159 @@ public class AuthorRestService {
 		if (author == null) {
 			throw new BadRequestException("Author was null.");
 		}
-		if (!doesAuthorExistInDatabase(author.getId())) {
-			return Response.status(Response.Status.NOT_FOUND).build();
-		}
-		EntityManager em = 
-				LocalEntityManagerFactory.createEntityManager();
+		EntityManager em = UnitOfWork.entityManager();
 		EntityTransaction tx = em.getTransaction();
 		tx.begin();
+		Author current = findForUpdate(author.getId(), em);
+		if (current == null) {
+			tx.rollback();
+			return Response.status(Response.Status.NOT_FOUND).build();
+		}
+		author.setLastModified(current.getLastModified());
 		em.merge(author);
 		tx.commit();
-		em.close();
+		EntityCache.AUTHORS.invalidate(author.getId());
+		EntityCache.BOOKS.clear(); // <- Cached books embed the author.
+		RepresentationCache.AUTHORS.invalidate(author.getId());
+		RepresentationCache.BOOKS.clear();
 		return Response.ok().build();
 	}
 
 	/**
-	 * Returns all authors in the database.
+	 * Returns all authors in the database, or a page of them if the 
+	 * <code>after</code> or <code>limit</code> parameter is given.
+	 * @param after The id of the last author of the previous page.
+	 * @param limit The maximum number of authors to return.
+	 * @param stream If true, all authors are streamed to the client while they 
+	 * are read from the database, and paging is ignored.
+	 * @param fields The properties to return, separated by commas; all 
+	 * properties if missing.
+	 * @throws BadRequestException - if the limit is not a positive number or 
+	 * an unknown field is requested.
 	 */
 	@GET
-	public Response getAllAuthors() {
-		EntityManager em = 
-				LocalEntityManagerFactory.createEntityManager();
-
-		// TODO: We can't use JPA 2.0 createNamedQuery call like this. Why? 
-		//TypedQuery<Author> query = em.createNamedQuery(Author.FIND_ALL, Author.class);
-		//Authors authors = new Authors(query.getResultList());
-		
-		// Instead we are stuck with this workaround.
-		Query query = em.createNamedQuery(Author.FIND_ALL);
-		Authors authors = new Authors((Collection<? extends Author>)(query.getResultList()));
-		Response r = Response.ok(authors).build();
-		return r;
+	public Response getAllAuthors(@QueryParam("after") Long after, 
+			@QueryParam("limit") Integer limit, @QueryParam("stream") boolean stream, 
+			@QueryParam("fields") String fields, @Context Request request) {
+		FieldSet requested = AUTHOR_FIELDS.parse(fields);
+		if (stream) {
+			MediaType mediaType = request.selectVariant(VARIANTS).getMediaType();
+			return Response.ok(new CursorStreamingOutput(
+					em -> createAuthorQuery(Author.FIND_ALL, ALL_AUTHORS, requested, em), 
+					row -> toAuthor(row, requested), 
+					"authors", "author", Author.class, mediaType), mediaType).build();
+		}
+		EntityManager em = UnitOfWork.entityManager();
+		if (Paging.isPaged(after, limit)) {
+			int pageSize = Paging.limitOf(limit);
+			Query query = createAuthorQuery(Author.FIND_PAGE, PAGE_OF_AUTHORS, requested, em);
+			List<?> rows = Paging.fetch(query, after, pageSize);
+			boolean hasNext = rows.size() > pageSize;
+			if (hasNext) {
+				rows = rows.subList(0, pageSize);
+			}
+			Long lastId = rows.isEmpty() ? after : idOf(rows.get(rows.size() - 1));
+			return Paging.ok(toAuthors(rows, requested), hasNext, lastId, pageSize, uriInfo).build();
+		}
+		if (!requested.isAll()) {
+			Query query = createAuthorQuery(Author.FIND_ALL, ALL_AUTHORS, requested, em);
+			return Response.ok(toAuthors(query.getResultList(), requested)).build();
+		}
+		TypedQuery<Author> query = em.createNamedQuery(Author.FIND_ALL, Author.class);
+		return Response.ok(new Authors(query.getResultList())).build();
+	}
+	
+	/**
+	 * Creates the query for the requested properties of authors: the named 
+	 * query reading whole authors if all properties are requested, or else 
+	 * the projection selecting just the requested columns.
+	 * @param namedQuery The named query reading whole authors.
+	 * @param projection The same query as a projection, see {@link #ALL_AUTHORS}.
+	 */
+	private static Query createAuthorQuery(String namedQuery, String projection, 
+			FieldSet fields, EntityManager em) {
+		if (fields.isAll()) {
+			return em.createNamedQuery(namedQuery);
+		}
+		return em.createQuery(String.format(projection, fields.select("a")));
+	}
+	
+	/**
+	 * Returns the requested properties of an author, which is either an 
+	 * author entity or a row read with a query from {@link #createAuthorQuery}: 
+	 * the author itself if all properties are requested, or a new author 
+	 * with only the requested properties set.
+	 */
+	static Author toAuthor(Object row, FieldSet fields) {
+		if (fields.isAll()) {
+			return (Author)row;
+		}
+		if (!(row instanceof Author)) {
+			return new Author((Long)fields.value(row, "id"), (String)fields.value(row, "name"));
+		}
+		Author author = (Author)row;
+		return new Author(fields.contains("id") ? author.getId() : null, 
+				fields.contains("name") ? author.getName() : null);
+	}
+	
+	private static Authors toAuthors(List<?> rows, FieldSet fields) {
+		Authors authors = new Authors();
+		for (Object row : rows) {
+			authors.add(toAuthor(row, fields));
+		}
+		return authors;
+	}
+	
+	/**
+	 * Returns the id of a row read with a query from {@link #createAuthorQuery}.
+	 */
+	private static Long idOf(Object row) {
+		return row instanceof Author ? ((Author)row).getId() : FieldSet.idOf(row);
 	}
 	
 	/**
-	 * Gets the author with the specified id.
+	 * Gets the author with the specified id. The response carries the version 
+	 * of the author as ETag and Last-Modified; a conditional request for an 
+	 * unchanged author is answered with 304 Not Modified without loading it. 
+	 * The encoded response is cached in the {@link RepresentationCache}.
+	 * @param fields The properties to return, separated by commas; all 
+	 * properties if missing.
+	 * @throws BadRequestException - if an unknown field is requested.
 	 * @throws NotFoundException - if no author exists with the given id.
 	 */
 	@GET
 	@Path("{id}")
-	public Response getAuthor(@PathParam("id") Long id) {
-		EntityManager em = 
-				LocalEntityManagerFactory.createEntityManager();
-		Author author = em.find(Author.class, id);
-		em.close();
+	public Response getAuthor(@PathParam("id") Long id, @QueryParam("fields") String fields, 
+			@Context Request request, @Context HttpHeaders headers) {
+		FieldSet requested = AUTHOR_FIELDS.parse(fields);
+		Author author = EntityCache.AUTHORS.get(id);
+		if (author == null && Conditional.isConditional(headers)) {
+			List<?> versions = UnitOfWork.entityManager()
+					.createNamedQuery(Author.FIND_LAST_MODIFIED)
+					.setParameter("id", id).getResultList();
+			if (versions.isEmpty()) {
+				return Response.status(Response.Status.NOT_FOUND).build();
+			}
+			Response.ResponseBuilder notModified = 
+					Conditional.evaluate(request, headers, id, (Long)versions.get(0), requested);
+			if (notModified != null) {
+				return notModified.build();
+			}
+		}
+		if (author == null) {
+			author = loadAuthor(id);
+		}
 		if (author == null) {
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
-		return Response.ok(author).build();
+		Response.ResponseBuilder notModified = 
+				Conditional.evaluate(request, headers, id, author.getLastModified(), requested);
+		if (notModified != null) {
+			return notModified.build();
+		}
+		Author found = author;
+		return REPRESENTATIONS.ok(id, author.getLastModified(), requested, 
+				() -> toAuthor(found, requested), request, headers, providers).build();
 	}
 
 	/**
@@ -115,8 +360,7 @@ public class AuthorRestService {
 	@DELETE
 	@Path("{id}")
 	public Response deleteAuthor(@PathParam("id") Long id) {
-		EntityManager em = 
-				LocalEntityManagerFactory.createEntityManager();
+		EntityManager em = UnitOfWork.entityManager();
 		Author author = em.find(Author.class, id);
 		if (author == null) {
 			return Response.status(Response.Status.NOT_FOUND).build();
@@ -125,16 +369,47 @@ public class AuthorRestService {
 		tx.begin();
 		em.remove(author);
 		tx.commit();
+		EntityCache.AUTHORS.invalidate(id);
+		EntityCache.BOOKS.clear(); // <- Cached books embed the author.
+		RepresentationCache.AUTHORS.invalidate(id);
+		RepresentationCache.BOOKS.clear();
 		return Response.noContent().build();
 	}
 	
-	private boolean doesAuthorExistInDatabase(Long id) {
+	/**
+	 * Writes are validated against the database and not against the shared 
+	 * cache, whose entities must not be modified.
+	 */
+	private boolean doesAuthorExistInDatabase(Long id, EntityManager em) {
 		if (id == null) {
 			return false;
 		}
-		EntityManager em = LocalEntityManagerFactory.createEntityManager();
-		boolean exists = em.find(Author.class, id) != null;
-		em.close();
-		return exists;
+		return em.find(Author.class, id) != null;
+	}
+	
+	/**
+	 * Reads and locks the author with the given id for an update, or returns 
+	 * null if there is none. See BookRestService#findForUpdate.
+	 */
+	private static Author findForUpdate(Long id, EntityManager em) {
+		if (id == null) {
+			return null;
+		}
+		List<?> authors = em.createNamedQuery(Author.FIND_FOR_UPDATE)
+				.setParameter("id", id)
+				.getResultList();
+		return authors.isEmpty() ? null : (Author)authors.get(0);
+	}
+	
+	/**
+	 * Reads the author with the given id from the database and caches it. 
+	 * The author is shared between requests once the request's EntityManager 
+	 * is closed, so it must not be modified.
+	 */
+	private Author loadAuthor(Long id) {
+		long generation = EntityCache.AUTHORS.generation();
+		Author author = UnitOfWork.entityManager().find(Author.class, id);
+		EntityCache.AUTHORS.put(id, author, generation);
+		return author;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,218 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.jboss.resteasy.spi.BadRequestException;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.Books;
+
+/**
+ * Reads books and authors in the binary format of the {@link BinaryProvider}
+ * through a buffer of its own.
+ */
+final class BinaryInput {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The longest string that is read, in bytes; a longer length prefix is
+	 * taken for a malformed message rather than allocated.
+	 */
+	static final int MAX_STRING_LENGTH = 1 << 20;
+
+	private final InputStream input;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+
+	BinaryInput(InputStream input) {
+		this.input = input;
+	}
+
+	/**
+	 * Returns true if {@link #readMessage} can read objects of the given
+	 * class.
+	 */
+	static boolean isReadable(Class<?> type) {
+		return type == Book.class || type == Author.class
+				|| type == Books.class || type == Authors.class;
+	}
+
+	/**
+	 * Reads a whole message, which must hold an object of the given class.
+	 * @throws BadRequestException - if the message is malformed or holds
+	 * another kind of object.
+	 */
+	Object readMessage(Class<?> type) throws IOException {
+		int kind = readByte();
+		Object entity;
+		if (type == Book.class && kind == BinaryProvider.BOOK) {
+			entity = readBook();
+		} else if (type == Author.class && kind == BinaryProvider.AUTHOR) {
+			entity = readAuthor();
+		} else if (type == Books.class && kind == BinaryProvider.BOOKS) {
+			Books books = new Books();
+			while (readListElement()) {
+				books.add(readBook());
+			}
+			entity = books;
+		} else if (type == Authors.class && kind == BinaryProvider.AUTHORS) {
+			Authors authors = new Authors();
+			while (readListElement()) {
+				authors.add(readAuthor());
+			}
+			entity = authors;
+		} else {
+			throw malformed("unexpected kind " + kind + " for " + type.getSimpleName());
+		}
+		if (position < limit || fill()) {
+			throw malformed("trailing data");
+		}
+		return entity;
+	}
+
+	private Book readBook() throws IOException {
+		int present = readByte();
+		if ((present & ~BinaryProvider.BOOK_FIELDS) != 0) {
+			throw malformed("unknown book fields " + Integer.toHexString(present));
+		}
+		Book book = new Book();
+		if ((present & BinaryProvider.BOOK_ID) != 0) {
+			book.setId(readLong());
+		}
+		if ((present & BinaryProvider.BOOK_TITLE) != 0) {
+			book.setTitle(readString());
+		}
+		if ((present & BinaryProvider.BOOK_DESCRIPTION) != 0) {
+			book.setDescription(readString());
+		}
+		if ((present & BinaryProvider.BOOK_ISBN) != 0) {
+			book.setIsbn(readString());
+		}
+		if ((present & BinaryProvider.BOOK_NB_OF_PAGE) != 0) {
+			book.setNbOfPage(readInt());
+		}
+		List<Author> authors = book.getAuthors();
+		while (readListElement()) {
+			authors.add(readAuthor());
+		}
+		return book;
+	}
+
+	private Author readAuthor() throws IOException {
+		int present = readByte();
+		if ((present & ~BinaryProvider.AUTHOR_FIELDS) != 0) {
+			throw malformed("unknown author fields " + Integer.toHexString(present));
+		}
+		Author author = new Author();
+		if ((present & BinaryProvider.AUTHOR_ID) != 0) {
+			author.setId(readLong());
+		}
+		if ((present & BinaryProvider.AUTHOR_NAME) != 0) {
+			author.setName(readString());
+		}
+		return author;
+	}
+
+	/**
+	 * Reads the marker before each element of a list: true if an element
+	 * follows, false at the end of the list.
+	 */
+	private boolean readListElement() throws IOException {
+		int marker = readByte();
+		if (marker > 1) {
+			throw malformed("invalid list marker " + marker);
+		}
+		return marker == 1;
+	}
+
+	private int readByte() throws IOException {
+		if (position == limit && !fill()) {
+			throw malformed("unexpected end of data");
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	private long readLong() throws IOException {
+		long zigzag = readVarint();
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	private int readInt() throws IOException {
+		long value = readLong();
+		if (value != (int)value) {
+			throw malformed("integer out of range");
+		}
+		return (int)value;
+	}
+
+	private long readVarint() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			value |= (long)(b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw malformed("varint too long");
+	}
+
+	private String readString() throws IOException {
+		long length = readVarint();
+		if (length > MAX_STRING_LENGTH) {
+			throw malformed("string too long");
+		}
+		int n = (int)length;
+		if (n > buffer.length) {
+			byte[] bytes = new byte[n];
+			int read = Math.min(limit - position, n);
+			System.arraycopy(buffer, position, bytes, 0, read);
+			position += read;
+			while (read < n) {
+				int count = input.read(bytes, read, n - read);
+				if (count < 0) {
+					throw malformed("unexpected end of data");
+				}
+				read += count;
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		while (limit - position < n) {
+			if (!fill()) {
+				throw malformed("unexpected end of data");
+			}
+		}
+		String s = new String(buffer, position, n, StandardCharsets.UTF_8);
+		position += n;
+		return s;
+	}
+
+	/**
+	 * Reads more bytes into the buffer, after moving the unread bytes to its
+	 * start. Returns false at the end of the stream.
+	 */
+	private boolean fill() throws IOException {
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		int count = input.read(buffer, limit, buffer.length - limit);
+		if (count <= 0) {
+			return false;
+		}
+		limit += count;
+		return true;
+	}
+
+	private static BadRequestException malformed(String reason) {
+		return new BadRequestException("Malformed binary entity: " + reason + ".");
+	}
+}
@@ -0,0 +1,249 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.BookSummaries;
+import com.cybercom.librarytest.model.BookSummary;
+import com.cybercom.librarytest.model.Books;
+
+/**
+ * Writes books and authors in the binary format of the {@link BinaryProvider}
+ * through a buffer of its own. Nothing is written to the underlying stream
+ * until the buffer is full or {@link #flush()} is called.
+ */
+final class BinaryOutput {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final OutputStream output;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int count;
+
+	BinaryOutput(OutputStream output) {
+		this.output = output;
+	}
+
+	/**
+	 * Returns true if {@link #writeMessage} can write objects of the given
+	 * class.
+	 */
+	static boolean isWritable(Class<?> type) {
+		return type == Book.class || type == Author.class
+				|| Books.class.isAssignableFrom(type) || Authors.class.isAssignableFrom(type)
+				|| type == BookSummary.class || type == BookSummaries.class;
+	}
+
+	/**
+	 * Writes a whole message: the kind of the object, followed by the object.
+	 * Book summaries are written as books without a description.
+	 */
+	void writeMessage(Object entity) throws IOException {
+		if (entity instanceof Book) {
+			writeByte(BinaryProvider.BOOK);
+			writeBook((Book)entity);
+		} else if (entity instanceof Author) {
+			writeByte(BinaryProvider.AUTHOR);
+			writeAuthor((Author)entity);
+		} else if (entity instanceof BookSummary) {
+			writeByte(BinaryProvider.BOOK);
+			writeBook((BookSummary)entity);
+		} else if (entity instanceof Books || entity instanceof BookSummaries) {
+			writeListStart(Book.class);
+			for (Object book : (List<?>)entity) {
+				writeElement(book);
+			}
+			writeListEnd();
+		} else if (entity instanceof Authors) {
+			writeListStart(Author.class);
+			for (Author author : (Authors)entity) {
+				writeElement(author);
+			}
+			writeListEnd();
+		} else {
+			throw new IllegalArgumentException("Cannot write " + entity.getClass().getName());
+		}
+	}
+
+	/**
+	 * Starts a message with a list of books or authors, whose elements are
+	 * then written one at a time with {@link #writeElement}.
+	 * @param elementClass Book or Author.
+	 */
+	void writeListStart(Class<?> elementClass) throws IOException {
+		writeByte(elementClass == Author.class ? BinaryProvider.AUTHORS : BinaryProvider.BOOKS);
+	}
+
+	/**
+	 * Writes one element of a list: a book, a book summary or an author.
+	 */
+	void writeElement(Object element) throws IOException {
+		writeByte(1);
+		if (element instanceof Book) {
+			writeBook((Book)element);
+		} else if (element instanceof BookSummary) {
+			writeBook((BookSummary)element);
+		} else {
+			writeAuthor((Author)element);
+		}
+	}
+
+	void writeListEnd() throws IOException {
+		writeByte(0);
+	}
+
+	/**
+	 * Writes the buffered bytes and flushes the underlying stream.
+	 */
+	void flush() throws IOException {
+		drain();
+		output.flush();
+	}
+
+	private void writeBook(Book book) throws IOException {
+		writeBook(book.getId(), book.getTitle(), book.getDescription(), book.getIsbn(),
+				book.getNbOfPage(), book.getAuthors());
+	}
+
+	private void writeBook(BookSummary book) throws IOException {
+		writeBook(book.getId(), book.getTitle(), null, book.getIsbn(),
+				book.getNbOfPage(), book.getAuthors());
+	}
+
+	private void writeBook(Long id, String title, String description, String isbn,
+			Integer nbOfPage, List<Author> authors) throws IOException {
+		int present = (id != null ? BinaryProvider.BOOK_ID : 0)
+				| (title != null ? BinaryProvider.BOOK_TITLE : 0)
+				| (description != null ? BinaryProvider.BOOK_DESCRIPTION : 0)
+				| (isbn != null ? BinaryProvider.BOOK_ISBN : 0)
+				| (nbOfPage != null ? BinaryProvider.BOOK_NB_OF_PAGE : 0);
+		writeByte(present);
+		if (id != null) {
+			writeLong(id);
+		}
+		if (title != null) {
+			writeString(title);
+		}
+		if (description != null) {
+			writeString(description);
+		}
+		if (isbn != null) {
+			writeString(isbn);
+		}
+		if (nbOfPage != null) {
+			writeLong(nbOfPage);
+		}
+		if (authors != null) {
+			for (Author author : authors) {
+				writeByte(1);
+				writeAuthor(author);
+			}
+		}
+		writeByte(0);
+	}
+
+	private void writeAuthor(Author author) throws IOException {
+		Long id = author.getId();
+		String name = author.getName();
+		writeByte((id != null ? BinaryProvider.AUTHOR_ID : 0)
+				| (name != null ? BinaryProvider.AUTHOR_NAME : 0));
+		if (id != null) {
+			writeLong(id);
+		}
+		if (name != null) {
+			writeString(name);
+		}
+	}
+
+	private void writeByte(int b) throws IOException {
+		if (count == buffer.length) {
+			drain();
+		}
+		buffer[count++] = (byte)b;
+	}
+
+	/**
+	 * Writes a signed number as a zigzag-encoded varint: seven bits per
+	 * byte, least significant first, with the high bit set on all but the
+	 * last byte.
+	 */
+	private void writeLong(long value) throws IOException {
+		writeVarint((value << 1) ^ (value >> 63));
+	}
+
+	private void writeVarint(long value) throws IOException {
+		if (count + 10 > buffer.length) {
+			drain();
+		}
+		while ((value & ~0x7fL) != 0) {
+			buffer[count++] = (byte)((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		buffer[count++] = (byte)value;
+	}
+
+	/**
+	 * Writes a string as the length of its UTF-8 encoding, followed by the
+	 * encoding. The characters are encoded straight into the buffer; a lone
+	 * surrogate is written as '?', like {@link String#getBytes}.
+	 */
+	private void writeString(String s) throws IOException {
+		int length = s.length();
+		writeVarint(utf8Length(s));
+		for (int i = 0; i < length; i++) {
+			if (count + 4 > buffer.length) {
+				drain();
+			}
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				buffer[count++] = (byte)c;
+			} else if (c < 0x800) {
+				buffer[count++] = (byte)(0xc0 | c >> 6);
+				buffer[count++] = (byte)(0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				buffer[count++] = (byte)(0xf0 | codePoint >> 18);
+				buffer[count++] = (byte)(0x80 | codePoint >> 12 & 0x3f);
+				buffer[count++] = (byte)(0x80 | codePoint >> 6 & 0x3f);
+				buffer[count++] = (byte)(0x80 | codePoint & 0x3f);
+			} else if (Character.isSurrogate(c)) {
+				buffer[count++] = '?';
+			} else {
+				buffer[count++] = (byte)(0xe0 | c >> 12);
+				buffer[count++] = (byte)(0x80 | c >> 6 & 0x3f);
+				buffer[count++] = (byte)(0x80 | c & 0x3f);
+			}
+		}
+	}
+
+	private static int utf8Length(String s) {
+		int length = s.length();
+		int utf8Length = length;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				continue;
+			}
+			if (c < 0x800) {
+				utf8Length += 1;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				utf8Length += 2;
+				i++;
+			} else if (!Character.isSurrogate(c)) {
+				utf8Length += 2;
+			}
+		}
+		return utf8Length;
+	}
+
+	private void drain() throws IOException {
+		output.write(buffer, 0, count);
+		count = 0;
+	}
+}
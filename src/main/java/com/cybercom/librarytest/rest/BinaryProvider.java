@@ -0,0 +1,96 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reads and writes books and authors in a compact binary format, for
+ * clients that do not need XML or JSON. It supports the same entities as
+ * the XML and JSON providers: <code>Book</code>, <code>Author</code>,
+ * <code>Books</code> and <code>Authors</code>, and writes the book summaries
+ * of the list endpoints as books without a description.
+ * <p>
+ * A message is one byte telling the kind of the entity ({@link #BOOK},
+ * {@link #AUTHOR}, {@link #BOOKS} or {@link #AUTHORS}), followed by the entity:
+ * <ul>
+ * <li>A book or an author is a byte with one bit set for each property that
+ * is not null (see {@link #BOOK_ID} etc.), followed by those properties in
+ * the order of the bits. A book ends with the list of its authors.</li>
+ * <li>A list is its elements, each preceded by the byte 1, followed by the
+ * byte 0, so that it can be written before its length is known.</li>
+ * <li>A number is zigzag-encoded into a varint of 1 to 10 bytes.</li>
+ * <li>A string is the varint length of its UTF-8 encoding, followed by the
+ * encoding.</li>
+ * </ul>
+ * An incompatible change to the format needs a new media type.
+ */
+@Provider
+@Produces(BinaryProvider.MEDIA_TYPE)
+@Consumes(BinaryProvider.MEDIA_TYPE)
+public class BinaryProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+	public static final String MEDIA_TYPE = "application/x-librarytest-binary";
+	public static final MediaType MEDIA_TYPE_TYPE = MediaType.valueOf(MEDIA_TYPE);
+
+	static final int BOOK = 1;
+	static final int AUTHOR = 2;
+	static final int BOOKS = 3;
+	static final int AUTHORS = 4;
+
+	static final int BOOK_ID = 1;
+	static final int BOOK_TITLE = 1 << 1;
+	static final int BOOK_DESCRIPTION = 1 << 2;
+	static final int BOOK_ISBN = 1 << 3;
+	static final int BOOK_NB_OF_PAGE = 1 << 4;
+	static final int BOOK_FIELDS = (1 << 5) - 1;
+
+	static final int AUTHOR_ID = 1;
+	static final int AUTHOR_NAME = 1 << 1;
+	static final int AUTHOR_FIELDS = (1 << 2) - 1;
+
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType) {
+		return BinaryInput.isReadable(type);
+	}
+
+	@Override
+	public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType, MultivaluedMap<String, String> httpHeaders,
+			InputStream entityStream) throws IOException, WebApplicationException {
+		return new BinaryInput(entityStream).readMessage(type);
+	}
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType) {
+		return BinaryOutput.isWritable(type);
+	}
+
+	@Override
+	public long getSize(Object t, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType) {
+		return -1;
+	}
+
+	@Override
+	public void writeTo(Object t, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+			OutputStream entityStream) throws IOException, WebApplicationException {
+		BinaryOutput output = new BinaryOutput(entityStream);
+		output.writeMessage(t);
+		output.flush();
+	}
+}
@@ -4,122 +4,703 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.RollbackException;
 import javax.persistence.TypedQuery;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
+import javax.ws.rs.ext.Providers;
 
 import org.jboss.resteasy.spi.BadRequestException;
 
-import com.cybercom.librarytest.LocalEntityManagerFactory;
+import com.cybercom.librarytest.UnitOfWork;
+import com.cybercom.librarytest.cache.EntityCache;
+import com.cybercom.librarytest.cache.RepresentationCache;
 import com.cybercom.librarytest.model.Author;
 import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.BatchError;
+import com.cybercom.librarytest.model.BatchResult;
 import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.BookSummaries;
+import com.cybercom.librarytest.model.BookSummary;
 import com.cybercom.librarytest.model.Books;
+import com.cybercom.librarytest.model.Isbn;
+import com.cybercom.librarytest.search.IsbnIndex;
+import com.cybercom.librarytest.search.SearchHit;
+import com.cybercom.librarytest.search.SearchIndex;
 
 //import com.cybercom.librarytest.entities.Author;
 //import com.cybercom.librarytest.entities.Books;
 
 import java.net.URI;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * EJB implementing the REST interface for books in the library.
+ * EJB implementing the REST interface for books in the library. All methods 
+ * use the EntityManager of the request's {@link UnitOfWork}, which is closed 
+ * by {@link UnitOfWorkFilter}.
  * @author Lennart Moraeus
  */
 @Path("/books")
-@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
-@Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, BinaryProvider.MEDIA_TYPE})
+@Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, BinaryProvider.MEDIA_TYPE})
 public class BookRestService {
 
+	private static final Logger LOG = Logger.getLogger(BookRestService.class.getName());
+
+	static final int BATCH_CHUNK_SIZE = 500;
+	
+	static final int SEARCH_DEFAULT_LIMIT = 10;
+	
+	/**
+	 * The properties of a book that can be requested with <code>?fields=</code>.
+	 */
+	static final FieldSet BOOK_FIELDS = new FieldSet(
+			new String[] {"id", "title", "description", "isbn", "nbOfPage", "author"}, 
+			new String[] {"id", "title", "description", "isbn", "nbrPages", null});
+	
+	/**
+	 * The fieldset of the description, which tells its entity tags apart 
+	 * from those of the book.
+	 */
+	private static final FieldSet DESCRIPTION_FIELDS = BOOK_FIELDS.parse("description");
+	
+	// The list queries as projections; %s is replaced by the select list of 
+	// the requested columns.
+	private static final String ALL_BOOKS = "SELECT %s FROM Book b";
+	private static final String PAGE_OF_BOOKS = 
+			"SELECT %s FROM Book b WHERE b.id > :after ORDER BY b.id";
+	private static final String ALL_BOOKS_BY_AUTHOR = 
+			"SELECT DISTINCT %s FROM Book b, IN (b.authors) AS a WHERE a.id = :id";
+	private static final String PAGE_OF_BOOKS_BY_AUTHOR = 
+			"SELECT DISTINCT %s FROM Book b, IN (b.authors) AS a "
+			+ "WHERE a.id = :id AND b.id > :after ORDER BY b.id";
+	private static final String BOOKS_BY_IDS = "SELECT %s FROM Book b WHERE b.id IN :ids";
+
+	/**
+	 * The media types of the resource, for the responses that are not built 
+	 * by RESTEasy: streamed lists and cached representations.
+	 */
+	private static final List<Variant> VARIANTS = Variant.mediaTypes(
+			MediaType.APPLICATION_XML_TYPE, MediaType.APPLICATION_JSON_TYPE, 
+			BinaryProvider.MEDIA_TYPE_TYPE).build();
+
+	private static final Representations REPRESENTATIONS = 
+			new Representations(RepresentationCache.BOOKS, VARIANTS);
+
 	@Context
 	private UriInfo uriInfo;
 
+	@Context
+	private Providers providers;
+
+	public BookRestService() {
+	}
+
+	/**
+	 * Creates the resource with the context RESTEasy would inject, for the 
+	 * {@link AsyncBookRestService} to delegate to.
+	 */
+	BookRestService(UriInfo uriInfo, Providers providers) {
+		this.uriInfo = uriInfo;
+		this.providers = providers;
+	}
+
 	/**
-	 * Adds a new book. 
-	 * @throws BadRequestException - if the book is null or if the book contains authors 
-	 * with no id field set.
+	 * Adds a new book. The validation and the insert run in one transaction, 
+	 * and the authors are checked with a single query. A book with the same 
+	 * ISBN as an existing book is rejected with 409 Conflict; the check uses 
+	 * the {@link IsbnIndex} and does not query the database.
+	 * @throws BadRequestException - if the book is null, if its ISBN is not a 
+	 * valid ISBN-10 or ISBN-13 or if the book contains authors with no id 
+	 * field set.
 	 */
 	@POST
 	public Response createBook(Book book) {
-		if (book == null || doesBookExistInDatabase(book.getId())) {
+		if (book == null) {
 			throw new BadRequestException("Book was null.");
 		}
-		List<Author> authorsOfBook = book.getAuthors();
-		for (Author authorOfBook : authorsOfBook) {
-			if (authorOfBook.getId() == null) {
-				throw new BadRequestException("Book contained an author with no id field set.");
-			}
-			confirmAuthorExistsInDatabase(authorOfBook);
+		checkIsbn(book);
+		if (IsbnIndex.BOOKS.find(book.getIsbnKey()) != null) {
+			return Response.status(Response.Status.CONFLICT).build();
 		}
-		EntityManager em = LocalEntityManagerFactory.createEntityManager();
+		EntityManager em = UnitOfWork.entityManager();
 		EntityTransaction tx = em.getTransaction();
 		tx.begin();
+		if (doesBookExistInDatabase(book.getId(), em)) {
+			throw new BadRequestException("Book was null.");
+		}
+		useManagedAuthors(book, em);
 		em.persist(book);
-		tx.commit();
-		em.close();
+		if (!commitUnlessIsbnTaken(book, em)) {
+			return Response.status(Response.Status.CONFLICT).build();
+		}
+		EntityCache.BOOKS.invalidate(book.getId());
+		RepresentationCache.BOOKS.invalidate(book.getId());
+		SearchIndex.BOOKS.put(book);
+		IsbnIndex.BOOKS.put(book);
 		URI bookUri = uriInfo.getAbsolutePathBuilder()
 				.path(String.valueOf(book.getId())).build();
 		return Response.created(bookUri).build();
 	}
 
 	/**
-	 * Updates the info about a book. 
-	 * @throws BadRequestException - if the book is null or if the book contains authors 
-	 * with no id field set.
+	 * Adds a batch of new books. The books are validated and persisted in 
+	 * chunks of {@link #BATCH_CHUNK_SIZE}, each in its own transaction, and 
+	 * the authors referenced by a chunk are checked with a single query. The 
+	 * persistence context is cleared after each chunk. Books that are rejected, 
+	 * including books with an invalid ISBN or the ISBN of another book, are reported in the result together with 
+	 * their position in the batch; the other books are still created. If the 
+	 * database rejects a chunk, its books are saved one at a time, so that 
+	 * only the books that cannot be saved are reported.
+	 * The result is returned as XML or JSON only.
+	 * @throws BadRequestException - if the list of books is null.
+	 */
+	@POST
+	@Path("/batch")
+	@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+	public Response createBooks(Books books) {
+		if (books == null) {
+			throw new BadRequestException("Books was null.");
+		}
+		BatchResult result = new BatchResult();
+		EntityManager em = UnitOfWork.entityManager();
+		for (int start = 0; start < books.size(); start += BATCH_CHUNK_SIZE) {
+			int end = Math.min(start + BATCH_CHUNK_SIZE, books.size());
+			createBooks(books.subList(start, end), start, result, em);
+			em.clear();
+		}
+		result.sortErrors();
+		return Response.ok(result).build();
+	}
+	
+	/**
+	 * Helper method for validating and persisting one chunk of a batch in a 
+	 * single transaction. A chunk whose commit fails is retried book by book; 
+	 * the error of a single book is logged and reported without the details 
+	 * of the database.
+	 * @param offset The position of the chunk in the batch.
+	 */
+	private void createBooks(List<Book> chunk, int offset, BatchResult result, 
+			EntityManager em) {
+		Map<Long, Author> authorsInDB = findAuthors(chunk, em);
+		Set<String> isbnKeys = new HashSet<>();
+		List<Book> persisted = new ArrayList<>();
+		List<Integer> indexes = new ArrayList<>();
+		EntityTransaction tx = em.getTransaction();
+		tx.begin();
+		for (int i = 0; i < chunk.size(); i++) {
+			Book book = chunk.get(i);
+			String error = validateBatchBook(book, authorsInDB, isbnKeys);
+			if (error != null) {
+				result.getErrors().add(new BatchError(offset + i, error));
+				continue;
+			}
+			List<Author> authors = book.getAuthors();
+			for (int j = 0; j < authors.size(); j++) {
+				authors.set(j, authorsInDB.get(authors.get(j).getId()));
+			}
+			em.persist(book);
+			persisted.add(book);
+			indexes.add(offset + i);
+		}
+		try {
+			tx.commit();
+		} catch (RuntimeException e) {
+			if (persisted.size() == 1) {
+				LOG.log(Level.WARNING, "Book " + indexes.get(0) + " of a batch could not be saved.", e);
+				result.getErrors().add(new BatchError(indexes.get(0), "The book could not be saved."));
+			}
+			persisted.clear();
+		} finally {
+			if (tx.isActive()) {
+				tx.rollback();
+			}
+		}
+		if (persisted.isEmpty() && indexes.size() > 1) {
+			em.clear();
+			for (Integer index : indexes) {
+				Book book = chunk.get(index - offset);
+				book.setId(null);
+				createBooks(Collections.singletonList(book), index, result, em);
+			}
+			return;
+		}
+		for (Book book : persisted) {
+			result.getCreated().add(book.getId());
+			SearchIndex.BOOKS.put(book);
+			IsbnIndex.BOOKS.put(book);
+		}
+	}
+	
+	/**
+	 * Returns the error message for a book of a batch that cannot be created, 
+	 * or null if the book is valid.
+	 * @param isbnKeys The normalized ISBNs of the valid books of the chunk so 
+	 * far; the ISBN of a valid book is added.
+	 */
+	private static String validateBatchBook(Book book, Map<Long, Author> authorsInDB, 
+			Set<String> isbnKeys) {
+		if (book == null) {
+			return "Book was null.";
+		}
+		if (book.getId() != null) {
+			return "Book in a batch must not have an id.";
+		}
+		if (book.getTitle() == null) {
+			return "Book must have a title.";
+		}
+		if (hasInvalidIsbn(book)) {
+			return "Book had an invalid ISBN.";
+		}
+		String isbnKey = book.getIsbnKey();
+		if (isbnKey != null && (IsbnIndex.BOOKS.find(isbnKey) != null || isbnKeys.contains(isbnKey))) {
+			return "A book with the same ISBN already exists.";
+		}
+		for (Author author : book.getAuthors()) {
+			if (author.getId() == null) {
+				return "Book contained an author with no id field set.";
+			}
+			Author authorInDB = authorsInDB.get(author.getId());
+			if (authorInDB == null || !authorInDB.equals(author)) {
+				return "Author does not exist in database.";
+			}
+		}
+		if (isbnKey != null) {
+			isbnKeys.add(isbnKey);
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns true if the book has an ISBN that is not a valid ISBN-10 or 
+	 * ISBN-13. A book without an ISBN is valid.
+	 */
+	private static boolean hasInvalidIsbn(Book book) {
+		String isbn = book.getIsbn();
+		return isbn != null && !isbn.trim().isEmpty() && book.getIsbnKey() == null;
+	}
+	
+	/**
+	 * @throws BadRequestException - if the book has an invalid ISBN.
+	 */
+	private static void checkIsbn(Book book) {
+		if (hasInvalidIsbn(book)) {
+			throw new BadRequestException("Book had an invalid ISBN.");
+		}
+	}
+	
+	/**
+	 * Commits the transaction of the request. Two requests may pass the 
+	 * {@link IsbnIndex} check with the same ISBN at the same time; the unique 
+	 * index of the database then rejects the later commit, which is reported 
+	 * by returning false.
+	 * @throws RollbackException - if the commit failed for another reason.
+	 */
+	private static boolean commitUnlessIsbnTaken(Book book, EntityManager em) {
+		try {
+			em.getTransaction().commit();
+			return true;
+		} catch (RollbackException e) {
+			if (book.getIsbnKey() == null) {
+				throw e;
+			}
+			List<?> ids = em.createNamedQuery(Book.FIND_ID_BY_ISBN_KEY)
+					.setParameter("isbnKey", book.getIsbnKey())
+					.getResultList();
+			if (ids.isEmpty() || ids.get(0).equals(book.getId())) {
+				throw e;
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Replaces the authors of a book with their managed instances, which are 
+	 * read with a single query.
+	 * @throws BadRequestException - if an author has no id field set or does 
+	 * not exist in the database.
+	 */
+	private static void useManagedAuthors(Book book, EntityManager em) {
+		List<Author> authors = book.getAuthors();
+		for (Author author : authors) {
+			if (author.getId() == null) {
+				throw new BadRequestException("Book contained an author with no id field set.");
+			}
+		}
+		Map<Long, Author> authorsInDB = findAuthors(Collections.singletonList(book), em);
+		for (int i = 0; i < authors.size(); i++) {
+			Author authorInDB = authorsInDB.get(authors.get(i).getId());
+			if (authorInDB == null || !authorInDB.equals(authors.get(i))) {
+				throw new BadRequestException("Author does not exist in database.");
+			}
+			authors.set(i, authorInDB);
+		}
+	}
+	
+	/**
+	 * Reads all authors referenced by the given books with a single query, 
+	 * mapped by id.
+	 */
+	private static Map<Long, Author> findAuthors(List<Book> books, EntityManager em) {
+		Set<Long> ids = new HashSet<>();
+		for (Book book : books) {
+			if (book == null) {
+				continue;
+			}
+			for (Author author : book.getAuthors()) {
+				if (author.getId() != null) {
+					ids.add(author.getId());
+				}
+			}
+		}
+		Map<Long, Author> authors = new HashMap<>();
+		if (ids.isEmpty()) {
+			return authors;
+		}
+		Query query = em.createNamedQuery(Author.FIND_BY_IDS)
+				.setParameter("ids", ids);
+		for (Object author : query.getResultList()) {
+			authors.put(((Author)author).getId(), (Author)author);
+		}
+		return authors;
+	}
+
+	/**
+	 * Updates the info about a book. The validation and the update run in one 
+	 * transaction, and the authors are checked with a single query. Changing 
+	 * the ISBN to that of another book is rejected with 409 Conflict.
+	 * @throws BadRequestException - if the book is null, if its ISBN is not a 
+	 * valid ISBN-10 or ISBN-13 or if the book contains authors with no id 
+	 * field set or authors that don't exist in the database.
 	 */  
 	@PUT
 	public Response updateBook(Book book) {
 		if (book == null) {
 			throw new BadRequestException("Book was null.");
 		}
-		List<Author> authorsOfBook = book.getAuthors();
-		for (Author authorOfBook : authorsOfBook) {
-			if (authorOfBook.getId() == null) {
-				throw new BadRequestException("Book contained an author with no id field set.");
-			}
-		}
-		if (!doesBookExistInDatabase(book.getId())) {
-			return Response.status(Response.Status.NOT_FOUND).build();
+		checkIsbn(book);
+		Long isbnOwner = IsbnIndex.BOOKS.find(book.getIsbnKey());
+		if (isbnOwner != null && !isbnOwner.equals(book.getId())) {
+			return Response.status(Response.Status.CONFLICT).build();
 		}
-		EntityManager em = LocalEntityManagerFactory.createEntityManager();
+		EntityManager em = UnitOfWork.entityManager();
 		EntityTransaction tx = em.getTransaction();
 		tx.begin();
+		Book current = findForUpdate(book.getId(), em);
+		if (current == null) {
+			tx.rollback();
+			return Response.status(Response.Status.NOT_FOUND).build();
+		}
+		book.setLastModified(current.getLastModified());
+		useManagedAuthors(book, em);
 		em.merge(book);
-		tx.commit();
-		em.close();
+		if (!commitUnlessIsbnTaken(book, em)) {
+			return Response.status(Response.Status.CONFLICT).build();
+		}
+		EntityCache.BOOKS.invalidate(book.getId());
+		RepresentationCache.BOOKS.invalidate(book.getId());
+		SearchIndex.BOOKS.put(book);
+		IsbnIndex.BOOKS.put(book);
 		return Response.ok().build();
 	}
 	
 	/**
-	 * Returns all books in the database.
+	 * Returns all books in the database, or a page of them if the 
+	 * <code>after</code> or <code>limit</code> parameter is given. Unless 
+	 * other fields are requested, the books are returned as summaries 
+	 * without their description, which is read with 
+	 * {@link #getDescription}.
+	 * @param after The id of the last book of the previous page.
+	 * @param limit The maximum number of books to return.
+	 * @param stream If true, all books are streamed to the client while they 
+	 * are read from the database, and paging is ignored.
+	 * @param fields The properties to return, separated by commas; all 
+	 * properties but the description if missing.
+	 * @throws BadRequestException - if the limit is not a positive number or 
+	 * an unknown field is requested.
+	 */
+	@GET
+	public Response getAllBooks(@QueryParam("after") Long after, 
+			@QueryParam("limit") Integer limit, @QueryParam("stream") boolean stream, 
+			@QueryParam("fields") String fields, @Context Request request) {
+		FieldSet requested = BOOK_FIELDS.parse(fields);
+		if (stream) {
+			MediaType mediaType = request.selectVariant(VARIANTS).getMediaType();
+			return Response.ok(new CursorStreamingOutput(
+					em -> createBookQuery(Book.FIND_ALL_FOR_CURSOR, ALL_BOOKS, requested, em), 
+					row -> toBook(row, requested), 
+					"books", "book", Book.class, mediaType), mediaType).build();
+		}
+		EntityManager em = UnitOfWork.entityManager();
+		if (isSummary(fields)) {
+			if (Paging.isPaged(after, limit)) {
+				return pageOfSummaries(em.createNamedQuery(Book.FIND_SUMMARY_PAGE, BookSummary.class), 
+						after, Paging.limitOf(limit), em);
+			}
+			return summaries(em.createNamedQuery(Book.FIND_ALL_SUMMARIES, BookSummary.class), em);
+		}
+		if (Paging.isPaged(after, limit)) {
+			Query query = createBookQuery(Book.FIND_PAGE, PAGE_OF_BOOKS, requested, em);
+			return pageOfBooks(query, after, Paging.limitOf(limit), requested);
+		}
+		Query query = createBookQuery(Book.FIND_ALL_WITH_AUTHORS, ALL_BOOKS, requested, em);
+		return Response.ok(toBooks(query.getResultList(), requested)).build();
+	}
+	
+	/**
+	 * Returns true if no fields are requested, so that the list endpoints 
+	 * return book summaries.
+	 */
+	private static boolean isSummary(String fields) {
+		return fields == null || fields.trim().isEmpty();
+	}
+	
+	/**
+	 * Builds the response for a list of book summaries, reading their authors 
+	 * with one more query.
+	 */
+	private static Response summaries(TypedQuery<BookSummary> query, EntityManager em) {
+		BookSummaries books = new BookSummaries(query.getResultList());
+		BookSummary.loadAuthors(books, em);
+		return Response.ok(books).build();
+	}
+	
+	/**
+	 * Helper method for reading one page of book summaries with a keyset 
+	 * query and building the response, including the link to the next page.
+	 */
+	private Response pageOfSummaries(TypedQuery<BookSummary> query, Long after, int limit, 
+			EntityManager em) {
+		BookSummaries books = new BookSummaries(Paging.fetch(query, after, limit));
+		boolean hasNext = books.size() > limit;
+		if (hasNext) {
+			books.subList(limit, books.size()).clear();
+		}
+		BookSummary.loadAuthors(books, em);
+		Long lastId = books.isEmpty() ? after : books.get(books.size() - 1).getId();
+		return Paging.ok(books, hasNext, lastId, limit, uriInfo).build();
+	}
+	
+	/**
+	 * Creates the query for the requested properties of books. If only 
+	 * columns are requested, the query selects just those columns; otherwise 
+	 * it is the named query reading whole books.
+	 * @param namedQuery The named query reading whole books.
+	 * @param projection The same query as a projection, see {@link #ALL_BOOKS}.
+	 */
+	private static Query createBookQuery(String namedQuery, String projection, 
+			FieldSet fields, EntityManager em) {
+		if (!fields.isAll() && fields.hasColumnsOnly()) {
+			return em.createQuery(String.format(projection, fields.select("b")));
+		}
+		return em.createNamedQuery(namedQuery);
+	}
+	
+	/**
+	 * Returns the requested properties of a book read with a query from 
+	 * {@link #createBookQuery}: the book itself if all properties are 
+	 * requested, or a new book with only the requested properties set. 
+	 */
+	private static Book toBook(Object row, FieldSet fields) {
+		if (fields.isAll()) {
+			return (Book)row;
+		}
+		if (!(row instanceof Book)) {
+			return new Book((Long)fields.value(row, "id"), 
+					(String)fields.value(row, "title"), 
+					(String)fields.value(row, "description"), 
+					(String)fields.value(row, "isbn"), 
+					(Integer)fields.value(row, "nbOfPage"));
+		}
+		Book book = (Book)row;
+		Book copy = new Book(
+				fields.contains("id") ? book.getId() : null, 
+				fields.contains("title") ? book.getTitle() : null, 
+				fields.contains("description") ? book.getDescription() : null, 
+				fields.contains("isbn") ? book.getIsbn() : null, 
+				fields.contains("nbOfPage") ? book.getNbOfPage() : null);
+		if (fields.contains("author")) {
+			copy.setAuthors(book.getAuthors());
+		}
+		return copy;
+	}
+	
+	private static Books toBooks(List<?> rows, FieldSet fields) {
+		Books books = new Books();
+		for (Object row : rows) {
+			books.add(toBook(row, fields));
+		}
+		return books;
+	}
+	
+	/**
+	 * Returns the id of a row read with a query from {@link #createBookQuery}.
+	 */
+	private static Long idOf(Object row) {
+		return row instanceof Book ? ((Book)row).getId() : FieldSet.idOf(row);
+	}
+	
+	/**
+	 * Searches the title and description of the books. The books are 
+	 * returned best match first, ranked with BM25 by an in-memory index.
+	 * @param q The search terms; a book matches if it contains any of them.
+	 * @param limit The maximum number of books to return (default 10).
+	 * @param fields The properties to return, separated by commas; all 
+	 * properties if missing.
+	 * @throws BadRequestException - if the query is empty, the limit is not 
+	 * a positive number or an unknown field is requested.
 	 */
 	@GET
-	public Response getAllBooks() {
-		EntityManager em = 
-				LocalEntityManagerFactory.createEntityManager();
-		Query query = em.createNamedQuery(Book.FIND_ALL);
-		Books books = new Books((Collection<? extends Book>)(query.getResultList()));
+	@Path("/search")
+	public Response searchBooks(@QueryParam("q") String q, @QueryParam("limit") Integer limit, 
+			@QueryParam("fields") String fields) {
+		if (q == null || q.trim().isEmpty()) {
+			throw new BadRequestException("Search query must not be empty.");
+		}
+		FieldSet requested = BOOK_FIELDS.parse(fields);
+		int k = limit == null ? SEARCH_DEFAULT_LIMIT : Paging.limitOf(limit);
+		List<SearchHit> hits = SearchIndex.BOOKS.search(q, k);
+		Books books = new Books();
+		if (hits.isEmpty()) {
+			return Response.ok(books).build();
+		}
+		List<Long> ids = new ArrayList<>();
+		for (SearchHit hit : hits) {
+			ids.add(hit.getId());
+		}
+		Query query = createBookQuery(Book.FIND_BY_IDS, BOOKS_BY_IDS, requested, 
+				UnitOfWork.entityManager()).setParameter("ids", ids);
+		Map<Long, Book> booksById = new HashMap<>();
+		for (Object row : query.getResultList()) {
+			booksById.put(idOf(row), toBook(row, requested));
+		}
+		for (Long id : ids) {
+			Book book = booksById.get(id);
+			if (book != null) {
+				books.add(book);
+			}
+		}
 		return Response.ok(books).build();
 	}
 	
 	/**
-	 * Gets the book with the specified id.
+	 * Gets the book with the specified id. The response carries the version 
+	 * of the book as ETag and Last-Modified; a conditional request for an 
+	 * unchanged book is answered with 304 Not Modified without loading it. 
+	 * The encoded response is cached in the {@link RepresentationCache}.
+	 * @param fields The properties to return, separated by commas; all 
+	 * properties if missing.
+	 * @throws BadRequestException - if an unknown field is requested.
 	 * @throws NotFoundException - if no book exists with the given id.
 	 */
 	@GET
 	@Path("{id}")
-	public Response getBook(@PathParam("id") Long id) {
-		EntityManager em = LocalEntityManagerFactory.createEntityManager();
-		Book book = em.find(Book.class, id);
-		em.close();
+	public Response getBook(@PathParam("id") Long id, @QueryParam("fields") String fields, 
+			@Context Request request, @Context HttpHeaders headers) {
+		FieldSet requested = BOOK_FIELDS.parse(fields);
+		Book book = EntityCache.BOOKS.get(id);
+		if (book == null && Conditional.isConditional(headers)) {
+			List<?> versions = queryById(Book.FIND_LAST_MODIFIED, id);
+			if (versions.isEmpty()) {
+				return Response.status(Response.Status.NOT_FOUND).build();
+			}
+			Response.ResponseBuilder notModified = 
+					Conditional.evaluate(request, headers, id, versionOf((Object[])versions.get(0)), requested);
+			if (notModified != null) {
+				return notModified.build();
+			}
+		}
+		if (book == null) {
+			book = loadBook(id);
+		}
 		if (book == null) {
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
-		return Response.ok(book).build();
+		Long version = versionOf(book);
+		Response.ResponseBuilder notModified = Conditional.evaluate(request, headers, id, version, requested);
+		if (notModified != null) {
+			return notModified.build();
+		}
+		Book found = book;
+		return REPRESENTATIONS.ok(id, version, requested, () -> toBook(found, requested), 
+				request, headers, providers).build();
+	}
+
+	/**
+	 * Gets the book with the specified ISBN, which may be an ISBN-10 or an 
+	 * ISBN-13, with or without hyphens. The id of the book is found in the 
+	 * {@link IsbnIndex}; the response is the same as for {@link #getBook}.
+	 * @throws BadRequestException - if the ISBN is not a valid ISBN-10 or 
+	 * ISBN-13.
+	 * @throws NotFoundException - if no book exists with the given ISBN.
+	 */
+	@GET
+	@Path("/isbn/{isbn}")
+	public Response getBookByIsbn(@PathParam("isbn") String isbn, 
+			@QueryParam("fields") String fields, @Context Request request, 
+			@Context HttpHeaders headers) {
+		String isbnKey = Isbn.toKey(isbn);
+		if (isbnKey == null) {
+			throw new BadRequestException("Invalid ISBN.");
+		}
+		Long id = IsbnIndex.BOOKS.find(isbnKey);
+		if (id == null) {
+			return Response.status(Response.Status.NOT_FOUND).build();
+		}
+		return getBook(id, fields, request, headers);
+	}
+
+	/**
+	 * Gets the description of the book with the specified id as plain text. 
+	 * Only the description is read from the database, unless the book is 
+	 * cached. The response carries the version of the book as ETag and 
+	 * Last-Modified, like {@link #getBook}.
+	 * @throws NotFoundException - if no book exists with the given id.
+	 */
+	@GET
+	@Path("{id}/description")
+	@Produces(MediaType.TEXT_PLAIN)
+	public Response getDescription(@PathParam("id") Long id, @Context Request request, 
+			@Context HttpHeaders headers) {
+		String description;
+		Long version;
+		Book book = EntityCache.BOOKS.get(id);
+		if (book != null) {
+			description = book.getDescription();
+			version = book.getLastModified();
+		} else {
+			List<?> rows = queryById(Book.FIND_DESCRIPTION, id);
+			if (rows.isEmpty()) {
+				return Response.status(Response.Status.NOT_FOUND).build();
+			}
+			description = (String)((Object[])rows.get(0))[0];
+			version = (Long)((Object[])rows.get(0))[1];
+		}
+		Response.ResponseBuilder notModified = 
+				Conditional.evaluate(request, headers, id, version, DESCRIPTION_FIELDS);
+		if (notModified != null) {
+			return notModified.build();
+		}
+		if (description == null) {
+			return Response.noContent().build();
+		}
+		return Conditional.ok(description, id, version, DESCRIPTION_FIELDS).build();
 	}
 
 	/**
@@ -129,7 +710,7 @@ public class BookRestService {
 	@DELETE
 	@Path("{id}")
 	public Response deleteBook(@PathParam("id") Long id) {
-		EntityManager em = LocalEntityManagerFactory.createEntityManager();
+		EntityManager em = UnitOfWork.entityManager();
 		Book book = em.find(Book.class, id);
 		if (book == null) {
 			return Response.status(Response.Status.NOT_FOUND).build();
@@ -138,39 +719,139 @@ public class BookRestService {
 		tx.begin();
 		em.remove(book);
 		tx.commit();
+		EntityCache.BOOKS.invalidate(id);
+		RepresentationCache.BOOKS.invalidate(id);
+		SearchIndex.BOOKS.remove(id);
+		IsbnIndex.BOOKS.remove(id);
 		return Response.noContent().build();
 	}
 	
 	/**
-	 * Returns all books by the specified author.
+	 * Returns all books by the specified author, or a page of them if the 
+	 * <code>after</code> or <code>limit</code> parameter is given. Unless 
+	 * other fields are requested, the books are returned as summaries 
+	 * without their description.
 	 * @param authorId The id of the author.
+	 * @param after The id of the last book of the previous page.
+	 * @param limit The maximum number of books to return.
+	 * @param fields The properties to return, separated by commas; all 
+	 * properties but the description if missing.
 	 * @return
 	 */
 	@GET
 	@Path("/byauthor/{author_id}")
-	public Response getBooksForAuthor(@PathParam("author_id")Long authorId) {
-		EntityManager em = LocalEntityManagerFactory.createEntityManager();
-		Query query = em.createNamedQuery(Book.FIND_ALL_BY_AUTHOR)
-				.setParameter("id", authorId);
-		Books books = new Books((Collection<? extends Book>)(query.getResultList()));
-		return Response.ok(books).build();
+	public Response getBooksForAuthor(@PathParam("author_id")Long authorId, 
+			@QueryParam("after") Long after, @QueryParam("limit") Integer limit, 
+			@QueryParam("fields") String fields) {
+		FieldSet requested = BOOK_FIELDS.parse(fields);
+		EntityManager em = UnitOfWork.entityManager();
+		if (isSummary(fields)) {
+			if (Paging.isPaged(after, limit)) {
+				TypedQuery<BookSummary> query = em.createNamedQuery(
+						Book.FIND_SUMMARY_PAGE_BY_AUTHOR, BookSummary.class)
+						.setParameter("id", authorId);
+				return pageOfSummaries(query, after, Paging.limitOf(limit), em);
+			}
+			TypedQuery<BookSummary> query = em.createNamedQuery(
+					Book.FIND_ALL_SUMMARIES_BY_AUTHOR, BookSummary.class)
+					.setParameter("id", authorId);
+			return summaries(query, em);
+		}
+		if (Paging.isPaged(after, limit)) {
+			Query query = createBookQuery(Book.FIND_PAGE_BY_AUTHOR, PAGE_OF_BOOKS_BY_AUTHOR, 
+					requested, em).setParameter("id", authorId);
+			return pageOfBooks(query, after, Paging.limitOf(limit), requested);
+		}
+		Query query = createBookQuery(Book.FIND_ALL_BY_AUTHOR, ALL_BOOKS_BY_AUTHOR, 
+				requested, em).setParameter("id", authorId);
+		return Response.ok(toBooks(query.getResultList(), requested)).build();
+	}
+	
+	/**
+	 * Helper method for reading one page of books with a keyset query and 
+	 * building the response, including the link to the next page.
+	 */
+	private Response pageOfBooks(Query query, Long after, int limit, FieldSet fields) {
+		List<?> rows = Paging.fetch(query, after, limit);
+		boolean hasNext = rows.size() > limit;
+		if (hasNext) {
+			rows = rows.subList(0, limit);
+		}
+		Long lastId = rows.isEmpty() ? after : idOf(rows.get(rows.size() - 1));
+		return Paging.ok(toBooks(rows, fields), hasNext, lastId, limit, uriInfo).build();
 	}
 	
 	/**
-	 * Returns the authors of a book.
+	 * Returns the authors of a book. The list has the same version as the 
+	 * book; a conditional request for an unchanged list is answered with 
+	 * 304 Not Modified.
 	 * @param bookId The book id.
+	 * @param fields The properties of the authors to return, separated by 
+	 * commas; all properties if missing.
 	 * @return
 	 */
 	@GET
 	@Path("/{book_id}/authors")
-	public Response getAuthorsOfBook(@PathParam("book_id")Long bookId) {
-		EntityManager em = LocalEntityManagerFactory.createEntityManager();
-		Book book = em.find(Book.class, bookId);
-		em.close();
+	public Response getAuthorsOfBook(@PathParam("book_id")Long bookId, 
+			@QueryParam("fields") String fields, @Context Request request, 
+			@Context HttpHeaders headers) {
+		FieldSet requested = AuthorRestService.AUTHOR_FIELDS.parse(fields);
+		Book book = EntityCache.BOOKS.get(bookId);
+		if (book == null && Conditional.isConditional(headers)) {
+			List<?> versions = queryById(Book.FIND_LAST_MODIFIED, bookId);
+			if (versions.isEmpty()) {
+				return Response.status(Response.Status.NOT_FOUND).build();
+			}
+			Response.ResponseBuilder notModified = 
+					Conditional.evaluate(request, headers, bookId, versionOf((Object[])versions.get(0)), requested);
+			if (notModified != null) {
+				return notModified.build();
+			}
+		}
+		if (book == null) {
+			book = loadBook(bookId);
+		}
 		if (book == null) {
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
-		return Response.ok(new Authors(book.getAuthors())).build();
+		Long version = versionOf(book);
+		Response.ResponseBuilder notModified = 
+				Conditional.evaluate(request, headers, bookId, version, requested);
+		if (notModified != null) {
+			return notModified.build();
+		}
+		Authors authors = new Authors();
+		for (Author author : book.getAuthors()) {
+			authors.add(AuthorRestService.toAuthor(author, requested));
+		}
+		return Conditional.ok(authors, bookId, version, requested).build();
+	}
+	
+	/**
+	 * Returns the version of a book's representation: the latest change to 
+	 * the book or to any of its authors, since the authors are embedded.
+	 */
+	private static Long versionOf(Book book) {
+		Long version = book.getLastModified();
+		for (Author author : book.getAuthors()) {
+			version = latest(version, author.getLastModified());
+		}
+		return version;
+	}
+	
+	/**
+	 * Returns the version of a book from a row of the 
+	 * {@link Book#FIND_LAST_MODIFIED} query.
+	 */
+	private static Long versionOf(Object[] row) {
+		return latest((Long)row[0], (Long)row[1]);
+	}
+	
+	private static Long latest(Long a, Long b) {
+		if (a == null || b == null) {
+			return a == null ? b : a;
+		}
+		return Math.max(a, b);
 	}
 	
 	/**
@@ -182,45 +863,91 @@ public class BookRestService {
 	@POST
 	@Path("/{book_id}/authors")
 	public Response addAuthorToBook(@PathParam("book_id")Long bookId, Author author) {
-		EntityManager em = LocalEntityManagerFactory.createEntityManager();
-		Book book = em.find(Book.class, bookId);
+		EntityManager em = UnitOfWork.entityManager();
+		EntityTransaction tx = em.getTransaction();
+		tx.begin();
+		Book book = findForUpdate(bookId, em);
 		if (book == null) {
+			tx.rollback();
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
-		EntityTransaction tx = em.getTransaction();
-		tx.begin();
 		Response response = addAuthorToBook(book, author, em);
+		book.touch();
 		tx.commit();
+		EntityCache.BOOKS.invalidate(bookId);
+		RepresentationCache.BOOKS.invalidate(bookId);
 		return response;
 	}
 	
 	/**
-	 * Modifies a book's author list.
+	 * Replaces a book's author list. Only the difference to the current list 
+	 * is written: the removed authors are deleted from and the added authors 
+	 * inserted into the join table, and the added authors are checked with a 
+	 * single query. A book whose authors do not change is not written.
 	 * @param bookId The book id.
-	 * @param author The author.
-	 * @return
+	 * @param authors The new authors of the book.
+	 * @return 200 OK, or 204 No Content if the new list is empty.
+	 * @throws BadRequestException - if the list is missing, or if an author 
+	 * has no id field set, is listed twice or does not exist in the database.
 	 */
 	@PUT
 	@Path("/{book_id}/authors")
 	public Response updateAuthorsOfBook(@PathParam("book_id")Long bookId, Authors authors) {
-		EntityManager em = LocalEntityManagerFactory.createEntityManager();
-		Book book = em.find(Book.class, bookId);
-		if (book == null) {
-			return Response.status(Response.Status.NOT_FOUND).build();
+		if (authors == null) {
+			throw new BadRequestException("Authors were null.");
 		}
-		Response response = null;
+		Map<Long, Author> added = new LinkedHashMap<>();
+		for (Author author : authors) {
+			if (author.getId() == null) {
+				throw new BadRequestException("Author must have id field set.");
+			}
+			if (added.put(author.getId(), author) != null) {
+				throw new BadRequestException("Author is already author of this book.");
+			}
+		}
+		EntityManager em = UnitOfWork.entityManager();
 		EntityTransaction tx = em.getTransaction();
 		tx.begin();
-		book.getAuthors().clear();
-		for (Author author : authors) {
-			response = addAuthorToBook(book, author, em);
-			if (!response.getStatusInfo().toString().equals("OK")) {
-				em.close(); // <- If anything goes wrong, we abort without committing.
-				return response; 
+		Book book = findForUpdate(bookId, em);
+		if (book == null) {
+			tx.rollback();
+			return Response.status(Response.Status.NOT_FOUND).build();
+		}
+		Response response = authors.isEmpty() ? Response.noContent().build() : Response.ok().build();
+		boolean changed = false;
+		for (Iterator<Author> it = book.getAuthors().iterator(); it.hasNext();) {
+			Author current = it.next();
+			Author requested = added.remove(current.getId());
+			if (requested == null) {
+				it.remove();
+				changed = true;
+			} else if (!current.equals(requested)) {
+				throw new BadRequestException("Author does not exist in database.");
+			}
+		}
+		if (!added.isEmpty()) {
+			Map<Long, Author> authorsInDB = new HashMap<>();
+			for (Object author : em.createNamedQuery(Author.FIND_BY_IDS)
+					.setParameter("ids", added.keySet()).getResultList()) {
+				authorsInDB.put(((Author)author).getId(), (Author)author);
 			}
+			for (Author author : added.values()) {
+				Author authorInDB = authorsInDB.get(author.getId());
+				if (authorInDB == null || !authorInDB.equals(author)) {
+					throw new BadRequestException("Author does not exist in database.");
+				}
+				book.getAuthors().add(authorInDB);
+			}
+			changed = true;
+		}
+		if (!changed) {
+			tx.rollback();
+			return response;
 		}
+		book.touch();
 		tx.commit();
-		em.close();
+		EntityCache.BOOKS.invalidate(bookId);
+		RepresentationCache.BOOKS.invalidate(bookId);
 		return response;
 	}
 	
@@ -231,44 +958,72 @@ public class BookRestService {
 	 * @throws BadRequestException If the action is not allowed.
 	 */
 	private Response addAuthorToBook(Book book, Author author, EntityManager em) {
-		System.out.println("Adding author to book: Author id = '" + author.getId() + "', name = '" + author.getName() + "'");
 		if (author.getId() == null) {
 			throw new BadRequestException("Author must have id field set.");
 		}
 		if (book.getAuthors().contains(author)) {
 			throw new BadRequestException("Author is already author of this book.");
 		}
-		confirmAuthorExistsInDatabase(author, em);
-		book.getAuthors().add(author);
+		book.getAuthors().add(confirmAuthorExistsInDatabase(author, em));
 		return Response.ok().build();
 	}
 	
-	private void confirmAuthorExistsInDatabase(Author author) {
-		confirmAuthorExistsInDatabase(author, null);
-	}
-	
-	private void confirmAuthorExistsInDatabase(Author author, EntityManager em) {
-		boolean shouldClose = false;
-		if (em == null) {
-			em = LocalEntityManagerFactory.createEntityManager();
-			shouldClose = true;
-		}
+	/**
+	 * Returns the managed instance of the given author. Writes are validated 
+	 * against the database and not against the shared cache.
+	 * @throws BadRequestException If the author does not exist in the database.
+	 */
+	private Author confirmAuthorExistsInDatabase(Author author, EntityManager em) {
 		Author authorInDB = em.find(Author.class, author.getId());
-		if (shouldClose) {
-			em.close();
-		}
 		if (authorInDB == null || !authorInDB.equals(author)) {
 			throw new BadRequestException("Author does not exist in database.");
 		}
+		return authorInDB;
 	}
 	
-	private boolean doesBookExistInDatabase(Long id) {
+	private boolean doesBookExistInDatabase(Long id, EntityManager em) {
 		if (id == null) {
 			return false;
 		}
-		EntityManager em = LocalEntityManagerFactory.createEntityManager();
-		boolean exists = em.find(Book.class, id) != null;
-		em.close();
-		return exists;
+		return em.find(Book.class, id) != null;
+	}
+	
+	/**
+	 * Reads and locks the book with the given id, or returns null if there 
+	 * is none. The last modified time of the book is not sent by clients, 
+	 * so an update must continue from the locked value for 
+	 * {@link Book#touch()} to give every version a new time.
+	 */
+	private static Book findForUpdate(Long id, EntityManager em) {
+		if (id == null) {
+			return null;
+		}
+		List<?> books = em.createNamedQuery(Book.FIND_FOR_UPDATE)
+				.setParameter("id", id)
+				.getResultList();
+		return books.isEmpty() ? null : (Book)books.get(0);
+	}
+	
+	/**
+	 * Reads the book with the given id from the database and caches it. The 
+	 * book is shared between requests once the request's EntityManager is 
+	 * closed, so it must not be modified.
+	 */
+	private Book loadBook(Long id) {
+		long generation = EntityCache.BOOKS.generation();
+		Book book = UnitOfWork.entityManager().find(Book.class, id);
+		if (book != null) {
+			book.getAuthors().size(); // <- Loads the lazy author list before it is shared.
+		}
+		EntityCache.BOOKS.put(id, book, generation);
+		return book;
+	}
+	
+	/**
+	 * Runs a named query with an id parameter, such as a version lookup.
+	 */
+	private List<?> queryById(String namedQuery, Long id) {
+		return UnitOfWork.entityManager().createNamedQuery(namedQuery)
+				.setParameter("id", id).getResultList();
 	}
 }
\ No newline at end of file
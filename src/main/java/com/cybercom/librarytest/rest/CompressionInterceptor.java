@@ -0,0 +1,370 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Priority;
+import javax.ws.rs.NotSupportedException;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import com.cybercom.librarytest.cache.RepresentationCache.Representation;
+
+/**
+ * Compresses response bodies with gzip or deflate, as negotiated with the
+ * <code>Accept-Encoding</code> header of the request, and decompresses
+ * request bodies sent with <code>Content-Encoding: gzip</code> or
+ * <code>deflate</code>.
+ * <p>
+ * Small bodies are not worth the CPU and the framing overhead, so the first
+ * {@link #getThreshold()} bytes of a response are buffered; only if the body
+ * grows beyond them is <code>Content-Encoding</code> set and the body
+ * compressed, otherwise it is written as is. The threshold is read from the
+ * system property {@value #THRESHOLD_PROPERTY} and defaults to
+ * {@value #DEFAULT_THRESHOLD} bytes. The Deflaters come from the
+ * {@link DeflaterPool}.
+ * <p>
+ * The header is only set once the body is being written, after the
+ * RESTEasy <code>GZIPEncodingInterceptor</code> has looked for it, so a body
+ * is never compressed twice; likewise, this interceptor runs before the
+ * RESTEasy <code>GZIPDecodingInterceptor</code> and removes the
+ * <code>Content-Encoding</code> of the request bodies it decompresses.
+ * Cached {@link Representation}s are already encoded and are written as
+ * they are.
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER - 100)
+public class CompressionInterceptor implements WriterInterceptor, ReaderInterceptor {
+
+	static final String THRESHOLD_PROPERTY = "librarytest.compression.threshold";
+	static final int DEFAULT_THRESHOLD = 1024;
+
+	static final String GZIP = "gzip";
+	static final String DEFLATE = "deflate";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final int threshold;
+
+	@Context
+	private HttpHeaders requestHeaders;
+
+	public CompressionInterceptor() {
+		this(configuredThreshold());
+	}
+
+	CompressionInterceptor(int threshold) {
+		this.threshold = threshold;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Returns the threshold set with the system property
+	 * {@value #THRESHOLD_PROPERTY}.
+	 */
+	static int configuredThreshold() {
+		return Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD);
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context)
+			throws IOException, WebApplicationException {
+		MultivaluedMap<String, Object> headers = context.getHeaders();
+		if (headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+			context.proceed();
+			return;
+		}
+		if (!varies(headers, HttpHeaders.ACCEPT_ENCODING)) {
+			headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		}
+		if (context.getEntity() instanceof Representation) {
+			context.proceed();
+			return;
+		}
+		String encoding = negotiate(requestHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING));
+		if (encoding == null) {
+			context.proceed();
+			return;
+		}
+		CompressingOutputStream output =
+				new CompressingOutputStream(context.getOutputStream(), encoding, threshold, headers);
+		context.setOutputStream(output);
+		try {
+			context.proceed();
+			output.finish();
+		} finally {
+			output.release();
+		}
+	}
+
+	@Override
+	public Object aroundReadFrom(ReaderInterceptorContext context)
+			throws IOException, WebApplicationException {
+		String encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+		if (encoding == null || encoding.trim().equalsIgnoreCase("identity")) {
+			return context.proceed();
+		}
+		InputStream input = context.getInputStream();
+		if (encoding.trim().equalsIgnoreCase(GZIP)) {
+			context.setInputStream(new GZIPInputStream(input, BUFFER_SIZE));
+		} else if (encoding.trim().equalsIgnoreCase(DEFLATE)) {
+			context.setInputStream(new InflaterInputStream(input));
+		} else {
+			throw new NotSupportedException("Unsupported Content-Encoding: " + encoding);
+		}
+		context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+		return context.proceed();
+	}
+
+	/**
+	 * Returns the content coding to use for the given
+	 * <code>Accept-Encoding</code> header values: gzip or deflate, whichever
+	 * has the higher quality value, gzip if they are equal, or null if the
+	 * client accepts neither.
+	 */
+	static String negotiate(List<String> acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		float gzip = -1;
+		float deflate = -1;
+		float any = -1;
+		for (String header : acceptEncoding) {
+			for (String coding : header.split(",")) {
+				String[] parts = coding.split(";");
+				String name = parts[0].trim().toLowerCase(Locale.ROOT);
+				float quality = qualityOf(parts);
+				if (name.equals(GZIP) || name.equals("x-gzip")) {
+					gzip = quality;
+				} else if (name.equals(DEFLATE)) {
+					deflate = quality;
+				} else if (name.equals("*")) {
+					any = quality;
+				}
+			}
+		}
+		gzip = gzip < 0 ? any : gzip;
+		deflate = deflate < 0 ? any : deflate;
+		if (gzip <= 0 && deflate <= 0) {
+			return null;
+		}
+		return gzip >= deflate ? GZIP : DEFLATE;
+	}
+
+	/**
+	 * Compresses a whole body with the given content coding, regardless of
+	 * the threshold.
+	 */
+	static void compress(byte[] body, String encoding, OutputStream output) throws IOException {
+		CompressingOutputStream compressing =
+				new CompressingOutputStream(output, encoding, 0, new MultivaluedHashMap<String, Object>());
+		try {
+			compressing.write(body, 0, body.length);
+			compressing.finish();
+		} finally {
+			compressing.release();
+		}
+	}
+
+	private static float qualityOf(String[] parts) {
+		for (int i = 1; i < parts.length; i++) {
+			String parameter = parts[i].trim();
+			if (parameter.startsWith("q=")) {
+				try {
+					return Float.parseFloat(parameter.substring(2));
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Returns true if a <code>Vary</code> header of the response already
+	 * names the given request header.
+	 */
+	private static boolean varies(MultivaluedMap<String, Object> headers, String header) {
+		List<Object> vary = headers.get(HttpHeaders.VARY);
+		if (vary == null) {
+			return false;
+		}
+		for (Object value : vary) {
+			for (String name : String.valueOf(value).split(",")) {
+				if (name.trim().equalsIgnoreCase(header)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Buffers the first <code>threshold</code> bytes of the body; if more are
+	 * written, it sets the <code>Content-Encoding</code> header and
+	 * compresses the body from there on. Flushing before the threshold is
+	 * reached is ignored, since the headers cannot be changed once the body
+	 * has been sent.
+	 */
+	static class CompressingOutputStream extends OutputStream {
+
+		private final OutputStream output;
+		private final String encoding;
+		private final MultivaluedMap<String, Object> headers;
+		private byte[] buffer;
+		private int count;
+		private DeflaterPool pool;
+		private Deflater deflater;
+		private DeflaterOutputStream compressed;
+		private boolean finished;
+
+		CompressingOutputStream(OutputStream output, String encoding, int threshold,
+				MultivaluedMap<String, Object> headers) {
+			this.output = output;
+			this.encoding = encoding;
+			this.headers = headers;
+			this.buffer = new byte[threshold];
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte)b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (compressed != null) {
+				compressed.write(b, off, len);
+			} else if (count + len <= buffer.length) {
+				System.arraycopy(b, off, buffer, count, len);
+				count += len;
+			} else {
+				startCompression();
+				compressed.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (compressed != null) {
+				compressed.flush();
+			}
+		}
+
+		/**
+		 * Writes the rest of the body: the buffered bytes as they are if the
+		 * threshold was not reached, or else the end of the compressed data.
+		 * The underlying stream is not closed.
+		 */
+		void finish() throws IOException {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			if (compressed == null) {
+				output.write(buffer, 0, count);
+			} else {
+				compressed.finish();
+			}
+			output.flush();
+		}
+
+		/**
+		 * Returns the Deflater to the pool.
+		 */
+		void release() {
+			if (deflater != null) {
+				pool.release(deflater);
+				deflater = null;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			finish();
+		}
+
+		boolean isCompressed() {
+			return compressed != null;
+		}
+
+		private void startCompression() throws IOException {
+			headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+			headers.remove(HttpHeaders.CONTENT_LENGTH);
+			if (encoding.equals(GZIP)) {
+				pool = DeflaterPool.GZIP;
+				deflater = pool.acquire();
+				compressed = new GzipOutputStream(output, deflater);
+			} else {
+				pool = DeflaterPool.DEFLATE;
+				deflater = pool.acquire();
+				compressed = new DeflaterOutputStream(output, deflater, BUFFER_SIZE, true);
+			}
+			compressed.write(buffer, 0, count);
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Writes the gzip format with a Deflater from the pool, which
+	 * {@link java.util.zip.GZIPOutputStream} does not accept.
+	 */
+	static class GzipOutputStream extends DeflaterOutputStream {
+
+		private static final byte[] HEADER = {
+			0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte)0xff
+		};
+
+		private final CRC32 crc = new CRC32();
+		private boolean finished;
+
+		GzipOutputStream(OutputStream output, Deflater deflater) throws IOException {
+			super(output, deflater, BUFFER_SIZE, true);
+			output.write(HEADER);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			super.write(b, off, len);
+			crc.update(b, off, len);
+		}
+
+		@Override
+		public void finish() throws IOException {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			super.finish();
+			writeInt((int)crc.getValue());
+			writeInt((int)def.getBytesRead());
+		}
+
+		private void writeInt(int value) throws IOException {
+			out.write(value & 0xff);
+			out.write((value >> 8) & 0xff);
+			out.write((value >> 16) & 0xff);
+			out.write((value >> 24) & 0xff);
+		}
+	}
+}
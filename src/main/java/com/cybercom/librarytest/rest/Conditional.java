@@ -0,0 +1,102 @@
+package com.cybercom.librarytest.rest;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+/**
+ * Helper for conditional GETs. The version of a representation is the last
+ * modified time of the entity it was built from; it is sent as both the
+ * <code>ETag</code> and the <code>Last-Modified</code> header, and requests
+ * carrying a matching <code>If-None-Match</code> or
+ * <code>If-Modified-Since</code> header are answered with 304 Not Modified.
+ * The entity tag also identifies the requested {@link FieldSet}, since every 
+ * fieldset of a resource is a representation of its own.
+ * <p>
+ * The XML, JSON and binary representations of a version, compressed or 
+ * not, share its entity tag, so the tag is weak (RFC 7232, section 2.1) 
+ * and the responses carry <code>Vary: Accept, Accept-Encoding</code> for 
+ * caches to tell the variants apart.
+ */
+final class Conditional {
+
+	private static final String VARY = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+
+	private Conditional() {
+	}
+
+	/**
+	 * Returns the weak entity tag for version <code>lastModified</code> of 
+	 * the given fieldset of the resource with the given id.
+	 */
+	static EntityTag tag(Long id, long lastModified, FieldSet fields) {
+		String tag = Long.toHexString(id) + "-" + Long.toHexString(lastModified);
+		return new EntityTag(fields.isAll() ? tag : tag + "-" + fields.tag(), true);
+	}
+
+	/**
+	 * Returns true if the request carries a validator that may let it be 
+	 * answered with 304 Not Modified.
+	 */
+	static boolean isConditional(HttpHeaders headers) {
+		return isPresent(headers.getRequestHeader(HttpHeaders.IF_NONE_MATCH))
+				|| isPresent(headers.getRequestHeader(HttpHeaders.IF_MODIFIED_SINCE));
+	}
+
+	/**
+	 * RESTEasy returns an empty list rather than null for a header the
+	 * request does not carry.
+	 */
+	private static boolean isPresent(List<String> values) {
+		return values != null && !values.isEmpty();
+	}
+
+	/**
+	 * Evaluates the preconditions of the request against the given version.
+	 * Returns the builder of the 304 response if the client's copy is
+	 * current, or null if the representation must be sent. As required by
+	 * RFC 7232, <code>If-Modified-Since</code> is ignored when the request
+	 * carries <code>If-None-Match</code>; RESTEasy would fall back to the
+	 * date, which cannot tell apart two versions of the same second.
+	 */
+	static Response.ResponseBuilder evaluate(Request request, HttpHeaders headers, Long id, 
+			Long lastModified, FieldSet fields) {
+		if (lastModified == null) {
+			return null;
+		}
+		EntityTag tag = tag(id, lastModified, fields);
+		Response.ResponseBuilder notModified = 
+				isPresent(headers.getRequestHeader(HttpHeaders.IF_NONE_MATCH)) 
+						? request.evaluatePreconditions(tag) 
+						: request.evaluatePreconditions(toHttpDate(lastModified), tag);
+		if (notModified != null) {
+			notModified.tag(tag).header(HttpHeaders.VARY, VARY);
+		}
+		return notModified;
+	}
+
+	/**
+	 * Returns a 200 response with the given entity and its version headers.
+	 */
+	static Response.ResponseBuilder ok(Object entity, Long id, Long lastModified, 
+			FieldSet fields) {
+		Response.ResponseBuilder builder = Response.ok(entity);
+		if (lastModified != null) {
+			builder.tag(tag(id, lastModified, fields)).lastModified(toHttpDate(lastModified))
+					.header(HttpHeaders.VARY, VARY);
+		}
+		return builder;
+	}
+
+	/**
+	 * HTTP dates have a precision of one second, so the time is truncated
+	 * to make <code>If-Modified-Since</code> comparisons match.
+	 */
+	private static Date toHttpDate(long lastModified) {
+		return new Date(lastModified / 1000 * 1000);
+	}
+}
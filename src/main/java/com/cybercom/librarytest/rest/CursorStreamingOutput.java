@@ -0,0 +1,187 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.queries.ScrollableCursor;
+
+import com.cybercom.librarytest.LocalEntityManagerFactory;
+
+/**
+ * Writes the result of a named query to the response while it is being read
+ * from the database, instead of materializing the whole list first. The rows
+ * are read through an EclipseLink scrollable cursor in chunks of
+ * {@link #CHUNK_SIZE}; every element is marshalled as soon as it is read and
+ * the EntityManager is cleared between chunks, so the heap use is bounded by
+ * the chunk size and not by the size of the table.
+ * <p>
+ * The output is written after the request's {@link com.cybercom.librarytest.UnitOfWork}
+ * has ended, so it opens and closes an EntityManager of its own. The query 
+ * is therefore passed as a function that creates it, and every row can be 
+ * mapped to the element to marshal, e.g. from a projection of a few columns.
+ * <p>
+ * The XML output has the same shape as the <code>Books</code>/<code>Authors</code>
+ * containers. The JSON output is written by {@link JsonOutput} in the shape 
+ * of the JSON provider, which writes a list with one element as that element 
+ * and leaves out an empty list; the cursor is read one element ahead to tell 
+ * these cases apart. The binary output is the same as that of the 
+ * {@link BinaryProvider}, whose lists need not know their length up front.
+ */
+class CursorStreamingOutput implements StreamingOutput {
+
+	static final int CHUNK_SIZE = 500;
+
+	private static final ConcurrentMap<Class<?>, JAXBContext> CONTEXTS =
+			new ConcurrentHashMap<>();
+
+	private final Function<EntityManager, Query> queryFactory;
+	private final Function<Object, ?> mapper;
+	private final String rootName;
+	private final String elementName;
+	private final Class<?> elementClass;
+	private final boolean json;
+	private final boolean binary;
+
+	/**
+	 * @param namedQuery The named query returning the elements.
+	 * @param rootName The name of the list element, e.g. "books".
+	 * @param elementName The name of each element, e.g. "book".
+	 * @param elementClass The JAXB class of the elements.
+	 * @param mediaType The negotiated media type: XML, JSON or binary.
+	 */
+	CursorStreamingOutput(String namedQuery, String rootName, String elementName,
+			Class<?> elementClass, MediaType mediaType) {
+		this(em -> em.createNamedQuery(namedQuery), Function.identity(), 
+				rootName, elementName, elementClass, mediaType);
+	}
+
+	/**
+	 * @param queryFactory Creates the query returning the rows.
+	 * @param mapper Maps each row to the element to marshal.
+	 * @param rootName The name of the list element, e.g. "books".
+	 * @param elementName The name of each element, e.g. "book".
+	 * @param elementClass The JAXB class of the elements.
+	 * @param mediaType The negotiated media type: XML, JSON or binary.
+	 */
+	CursorStreamingOutput(Function<EntityManager, Query> queryFactory, 
+			Function<Object, ?> mapper, String rootName, String elementName,
+			Class<?> elementClass, MediaType mediaType) {
+		this.queryFactory = queryFactory;
+		this.mapper = mapper;
+		this.rootName = rootName;
+		this.elementName = elementName;
+		this.elementClass = elementClass;
+		this.json = MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+		this.binary = BinaryProvider.MEDIA_TYPE_TYPE.isCompatible(mediaType);
+	}
+
+	@Override
+	public void write(OutputStream output) throws IOException, WebApplicationException {
+		Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+		EntityManager em = LocalEntityManagerFactory.createEntityManager();
+		ScrollableCursor cursor = null;
+		try {
+			Query query = queryFactory.apply(em)
+					.setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE)
+					.setHint(QueryHints.JDBC_FETCH_SIZE, CHUNK_SIZE);
+			cursor = (ScrollableCursor) query.getSingleResult();
+			if (binary) {
+				writeBinary(cursor, em, output);
+				return;
+			}
+			if (json) {
+				writeJson(cursor, em, output);
+				return;
+			}
+			Marshaller marshaller = createMarshaller();
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+			writer.write("<" + rootName + ">");
+			while (cursor.hasNext()) {
+				for (int i = 0; i < CHUNK_SIZE && cursor.hasNext(); i++) {
+					marshaller.marshal(mapper.apply(cursor.next()), writer);
+				}
+				writer.flush();
+				cursor.clear();
+				em.clear();
+			}
+			writer.write("</" + rootName + ">");
+			writer.flush();
+		} catch (JAXBException e) {
+			throw new WebApplicationException(e);
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+			em.close();
+		}
+	}
+
+	private void writeBinary(ScrollableCursor cursor, EntityManager em, OutputStream output) 
+			throws IOException {
+		BinaryOutput binaryOutput = new BinaryOutput(output);
+		binaryOutput.writeListStart(elementClass);
+		while (cursor.hasNext()) {
+			for (int i = 0; i < CHUNK_SIZE && cursor.hasNext(); i++) {
+				binaryOutput.writeElement(mapper.apply(cursor.next()));
+			}
+			binaryOutput.flush();
+			cursor.clear();
+			em.clear();
+		}
+		binaryOutput.writeListEnd();
+		binaryOutput.flush();
+	}
+
+	private void writeJson(ScrollableCursor cursor, EntityManager em, OutputStream output) 
+			throws IOException {
+		JsonOutput jsonOutput = new JsonOutput(output);
+		if (!cursor.hasNext()) {
+			jsonOutput.writeEmptyList(rootName);
+			jsonOutput.flush();
+			return;
+		}
+		Object first = mapper.apply(cursor.next());
+		boolean array = cursor.hasNext();
+		jsonOutput.writeListStart(rootName, elementName, array);
+		jsonOutput.writeElement(first, true);
+		while (cursor.hasNext()) {
+			for (int i = 0; i < CHUNK_SIZE && cursor.hasNext(); i++) {
+				jsonOutput.writeElement(mapper.apply(cursor.next()), false);
+			}
+			jsonOutput.flush();
+			cursor.clear();
+			em.clear();
+		}
+		jsonOutput.writeListEnd(array);
+		jsonOutput.flush();
+	}
+
+	private Marshaller createMarshaller() throws JAXBException {
+		JAXBContext context = CONTEXTS.get(elementClass);
+		if (context == null) {
+			context = JAXBContext.newInstance(elementClass);
+			CONTEXTS.putIfAbsent(elementClass, context);
+		}
+		Marshaller marshaller = context.createMarshaller();
+		marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+		marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+		return marshaller;
+	}
+}
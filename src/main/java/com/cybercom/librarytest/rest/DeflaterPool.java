@@ -0,0 +1,56 @@
+package com.cybercom.librarytest.rest;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Pool of {@link Deflater}s. A Deflater holds a few hundred kilobytes of
+ * native zlib state, which is only freed by {@link Deflater#end()} or the
+ * finalizer, so allocating one per response costs native memory and GC
+ * work. Released Deflaters are reset and kept, up to {@link #MAX_IDLE}.
+ */
+final class DeflaterPool {
+
+	static final int MAX_IDLE = 64;
+
+	/** Deflaters writing raw deflate data, for the gzip format. */
+	static final DeflaterPool GZIP = new DeflaterPool(true);
+	/** Deflaters writing the zlib format, for the deflate encoding. */
+	static final DeflaterPool DEFLATE = new DeflaterPool(false);
+
+	private final boolean nowrap;
+	private final Queue<Deflater> idle = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	private DeflaterPool(boolean nowrap) {
+		this.nowrap = nowrap;
+	}
+
+	Deflater acquire() {
+		Deflater deflater = idle.poll();
+		if (deflater == null) {
+			return new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+		}
+		idleCount.decrementAndGet();
+		return deflater;
+	}
+
+	/**
+	 * Returns the Deflater to the pool; it must not be used afterwards.
+	 */
+	void release(Deflater deflater) {
+		if (idleCount.incrementAndGet() > MAX_IDLE) {
+			idleCount.decrementAndGet();
+			deflater.end();
+			return;
+		}
+		deflater.reset();
+		idle.offer(deflater);
+	}
+
+	int idle() {
+		return idleCount.get();
+	}
+}
@@ -0,0 +1,140 @@
+package com.cybercom.librarytest.rest;
+
+import org.jboss.resteasy.spi.BadRequestException;
+
+/**
+ * The properties of an entity requested with <code>?fields=a,b,...</code>
+ * (a sparse fieldset). Without the parameter all properties are returned.
+ * <p>
+ * Each property is mapped to the path of its column in JPQL, or to null if
+ * it is not a column (such as a collection). If only columns are requested,
+ * the list endpoints select just those columns instead of whole entities;
+ * the id is always selected first, since it is the cursor of the pages. The
+ * properties that were not requested are left null in the returned objects,
+ * which JAXB leaves out of the XML and JSON output.
+ */
+final class FieldSet {
+
+	private final String[] names;
+	private final String[] columns;
+	private final int mask;
+
+	/**
+	 * Creates the fieldset of all properties of an entity.
+	 * @param names The property names, as they appear in the output; the
+	 * first one must be the id.
+	 * @param columns The JPQL path of each property relative to the entity,
+	 * or null if the property is not a column.
+	 */
+	FieldSet(String[] names, String[] columns) {
+		this(names, columns, (1 << names.length) - 1);
+	}
+
+	private FieldSet(String[] names, String[] columns, int mask) {
+		this.names = names;
+		this.columns = columns;
+		this.mask = mask;
+	}
+
+	/**
+	 * Returns the fieldset requested with the given <code>fields</code>
+	 * parameter, or this fieldset if the parameter is missing or empty.
+	 * @throws BadRequestException - if a requested property does not exist.
+	 */
+	FieldSet parse(String fields) {
+		if (fields == null || fields.trim().isEmpty()) {
+			return this;
+		}
+		int requested = 0;
+		for (String field : fields.split(",")) {
+			int index = indexOf(field.trim());
+			if (index < 0) {
+				throw new BadRequestException("Unknown field: " + field.trim());
+			}
+			requested |= 1 << index;
+		}
+		return new FieldSet(names, columns, requested & mask);
+	}
+
+	boolean isAll() {
+		return mask == (1 << names.length) - 1;
+	}
+
+	boolean contains(String name) {
+		int index = indexOf(name);
+		return index >= 0 && (mask & 1 << index) != 0;
+	}
+
+	/**
+	 * Returns true if all requested properties are columns, so that they can
+	 * be read without loading the entities.
+	 */
+	boolean hasColumnsOnly() {
+		for (int i = 0; i < names.length; i++) {
+			if ((mask & 1 << i) != 0 && columns[i] == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the JPQL select list of the requested columns: the id, followed
+	 * by the other requested columns.
+	 */
+	String select(String alias) {
+		StringBuilder select = new StringBuilder(alias).append('.').append(columns[0]);
+		for (int i = 1; i < names.length; i++) {
+			if ((mask & 1 << i) != 0 && columns[i] != null) {
+				select.append(", ").append(alias).append('.').append(columns[i]);
+			}
+		}
+		return select.toString();
+	}
+
+	/**
+	 * Returns the value of a property in a row read with {@link #select}, or
+	 * null if the property was not requested.
+	 * @param row The row; a single selected column is not wrapped in an array.
+	 */
+	Object value(Object row, String name) {
+		int index = indexOf(name);
+		if (index < 0 || (mask & 1 << index) == 0) {
+			return null;
+		}
+		if (!(row instanceof Object[])) {
+			return row;
+		}
+		int column = 0;
+		for (int i = 1; i <= index; i++) {
+			if ((mask & 1 << i) != 0 && columns[i] != null) {
+				column++;
+			}
+		}
+		return ((Object[])row)[column];
+	}
+
+	/**
+	 * Returns the id of a row read with {@link #select}.
+	 */
+	static Long idOf(Object row) {
+		return (Long)(row instanceof Object[] ? ((Object[])row)[0] : row);
+	}
+
+	/**
+	 * Returns a short string that identifies the requested properties, for
+	 * use in entity tags.
+	 */
+	String tag() {
+		return Integer.toHexString(mask);
+	}
+
+	private int indexOf(String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,498 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.jboss.resteasy.spi.BadRequestException;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.Books;
+
+/**
+ * Reads the model classes from JSON in the shape written by
+ * {@link JsonOutput}, and accepts what the Jettison mapped convention
+ * accepts: a list with one element may be given as that element, any
+ * property may be given as a string, a number or a boolean, an id or a
+ * number of pages that cannot be parsed is read as null, and unknown
+ * properties are skipped. The
+ * input after the object of the root element is not read.
+ * <p>
+ * The bytes are read through a buffer that is reused by all JsonInputs of a
+ * thread, so only one JsonInput may be in use per thread at a time.
+ */
+final class JsonInput {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final ThreadLocal<byte[]> BUFFERS =
+			ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+	private final InputStream input;
+	private final byte[] buffer;
+	private int position;
+	private int limit;
+	private final StringBuilder text = new StringBuilder();
+
+	JsonInput(InputStream input) {
+		this.input = input;
+		this.buffer = BUFFERS.get();
+	}
+
+	/**
+	 * Returns true if {@link #readMessage} can read objects of the given
+	 * class.
+	 */
+	static boolean isReadable(Class<?> type) {
+		return type == Book.class || type == Author.class
+				|| type == Books.class || type == Authors.class;
+	}
+
+	/**
+	 * Reads an object of the given class, wrapped in an object with its root
+	 * element name.
+	 * @throws BadRequestException - if the JSON is malformed or the root
+	 * element is not that of the class.
+	 */
+	Object readMessage(Class<?> type) throws IOException {
+		String root = type == Book.class ? "book" : type == Author.class ? "author"
+				: type == Books.class ? "books" : "authors";
+		expect('{');
+		String name = readKey();
+		if (!name.equals(root)) {
+			throw malformed("expected \"" + root + "\" but got \"" + name + "\"");
+		}
+		if (type == Book.class) {
+			return readBook();
+		} else if (type == Author.class) {
+			return readAuthor();
+		} else if (type == Books.class) {
+			Books books = new Books();
+			if (startObject()) {
+				do {
+					if (readKey().equals("book")) {
+						readBooks(books);
+					} else {
+						skipValue();
+					}
+				} while (nextField());
+			}
+			return books;
+		} else {
+			Authors authors = new Authors();
+			if (startObject()) {
+				do {
+					if (readKey().equals("author")) {
+						readAuthors(authors);
+					} else {
+						skipValue();
+					}
+				} while (nextField());
+			}
+			return authors;
+		}
+	}
+
+	private void readBooks(List<Book> books) throws IOException {
+		if (peek() != '[') {
+			books.add(readBook());
+			return;
+		}
+		next();
+		if (peek() == ']') {
+			next();
+			return;
+		}
+		do {
+			books.add(readBook());
+		} while (nextElement());
+	}
+
+	private void readAuthors(List<Author> authors) throws IOException {
+		if (peek() != '[') {
+			authors.add(readAuthor());
+			return;
+		}
+		next();
+		if (peek() == ']') {
+			next();
+			return;
+		}
+		do {
+			authors.add(readAuthor());
+		} while (nextElement());
+	}
+
+	/**
+	 * Reads a book; any value other than an object is read as a book
+	 * without properties.
+	 */
+	private Book readBook() throws IOException {
+		Book book = new Book();
+		if (!startObject()) {
+			return book;
+		}
+		do {
+			String name = readKey();
+			if (name.equals("author")) {
+				readAuthors(book.getAuthors());
+				continue;
+			}
+			String value = readText();
+			if (value == null) {
+				continue;
+			}
+			switch (name) {
+			case "description":
+				book.setDescription(value);
+				break;
+			case "id":
+				book.setId(toLong(value));
+				break;
+			case "isbn":
+				book.setIsbn(value);
+				break;
+			case "nbOfPage":
+				Long nbOfPage = toLong(value);
+				book.setNbOfPage(nbOfPage == null ? null : nbOfPage.intValue());
+				break;
+			case "title":
+				book.setTitle(value);
+				break;
+			default:
+				break;
+			}
+		} while (nextField());
+		return book;
+	}
+
+	/**
+	 * Reads an author; any value other than an object is read as an author
+	 * without properties.
+	 */
+	private Author readAuthor() throws IOException {
+		Author author = new Author();
+		if (!startObject()) {
+			return author;
+		}
+		do {
+			String name = readKey();
+			String value = readText();
+			if (value == null) {
+				continue;
+			}
+			if (name.equals("id")) {
+				author.setId(toLong(value));
+			} else if (name.equals("name")) {
+				author.setName(value);
+			}
+		} while (nextField());
+		return author;
+	}
+
+	private static Long toLong(String value) {
+		String trimmed = value.trim();
+		if (trimmed.isEmpty()) {
+			return null;
+		}
+		try {
+			return Long.valueOf(trimmed);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Consumes the start of an object, or skips any other value.
+	 * @return True if the value is an object with at least one property,
+	 * whose first key is to be read next.
+	 */
+	private boolean startObject() throws IOException {
+		if (peek() != '{') {
+			skipValue();
+			return false;
+		}
+		next();
+		if (peek() == '}') {
+			next();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Consumes the comma before the next property of an object, or the end
+	 * of the object.
+	 * @return True if another property follows.
+	 */
+	private boolean nextField() throws IOException {
+		int c = next();
+		if (c == ',') {
+			return true;
+		}
+		if (c != '}') {
+			throw malformed("expected ',' or '}'");
+		}
+		return false;
+	}
+
+	/**
+	 * Consumes the comma before the next element of an array, or the end of
+	 * the array.
+	 * @return True if another element follows.
+	 */
+	private boolean nextElement() throws IOException {
+		int c = next();
+		if (c == ',') {
+			return true;
+		}
+		if (c != ']') {
+			throw malformed("expected ',' or ']'");
+		}
+		return false;
+	}
+
+	private String readKey() throws IOException {
+		expect('"');
+		String key = readString();
+		expect(':');
+		return key;
+	}
+
+	/**
+	 * Reads the value of a property as text: a string as it is, a number or
+	 * a boolean as it is written and null as the empty string. Of an array,
+	 * the last element counts; an object counts as the empty string.
+	 * @return The text, or null for an empty array.
+	 */
+	private String readText() throws IOException {
+		int c = peek();
+		if (c == '"') {
+			next();
+			return readString();
+		}
+		if (c == '[') {
+			next();
+			String last = null;
+			if (peek() == ']') {
+				next();
+				return null;
+			}
+			do {
+				last = readText();
+			} while (nextElement());
+			return last;
+		}
+		if (c == '{') {
+			skipValue();
+			return "";
+		}
+		String literal = readLiteral();
+		if (literal.equals("null")) {
+			return "";
+		}
+		char first = literal.charAt(0);
+		if ((first == '-' || first >= '0' && first <= '9') && (literal.indexOf('.') >= 0
+				|| literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0)) {
+			// Jettison reads a number with a fraction or an exponent as a
+			// double: 1.50 is read as "1.5".
+			try {
+				return Double.toString(Double.parseDouble(literal));
+			} catch (NumberFormatException e) {
+				return literal;
+			}
+		}
+		return literal;
+	}
+
+	/**
+	 * Reads a number, true, false or null as it is written.
+	 */
+	private String readLiteral() throws IOException {
+		text.setLength(0);
+		for (int c = peek(); c >= 0 && isLiteralChar(c); c = peekRaw()) {
+			text.append((char)c);
+			position++;
+		}
+		if (text.length() == 0) {
+			throw malformed("unexpected character");
+		}
+		return text.toString();
+	}
+
+	private static boolean isLiteralChar(int c) {
+		return c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z'
+				|| c == '-' || c == '+' || c == '.';
+	}
+
+	/**
+	 * Skips a value of any kind.
+	 */
+	private void skipValue() throws IOException {
+		int c = peek();
+		if (c == '"') {
+			next();
+			readString();
+		} else if (c == '{') {
+			next();
+			if (peek() == '}') {
+				next();
+				return;
+			}
+			do {
+				readKey();
+				skipValue();
+			} while (nextField());
+		} else if (c == '[') {
+			next();
+			if (peek() == ']') {
+				next();
+				return;
+			}
+			do {
+				skipValue();
+			} while (nextElement());
+		} else {
+			readLiteral();
+		}
+	}
+
+	/**
+	 * Reads the rest of a string whose opening quote has been consumed,
+	 * decoding the UTF-8 bytes and the escapes.
+	 */
+	private String readString() throws IOException {
+		text.setLength(0);
+		while (true) {
+			int b = readByte();
+			if (b == '"') {
+				return text.toString();
+			}
+			if (b == '\\') {
+				readEscape();
+			} else if (b < 0x80) {
+				text.append((char)b);
+			} else if ((b & 0xe0) == 0xc0) {
+				text.append((char)((b & 0x1f) << 6 | readContinuation()));
+			} else if ((b & 0xf0) == 0xe0) {
+				int high = (b & 0x0f) << 12 | readContinuation() << 6;
+				text.append((char)(high | readContinuation()));
+			} else if ((b & 0xf8) == 0xf0) {
+				int codePoint = (b & 0x07) << 18 | readContinuation() << 12;
+				codePoint |= readContinuation() << 6;
+				codePoint |= readContinuation();
+				if (Character.isValidCodePoint(codePoint)) {
+					text.appendCodePoint(codePoint);
+				} else {
+					text.append('\ufffd');
+				}
+			} else {
+				text.append('\ufffd');
+			}
+		}
+	}
+
+	private int readContinuation() throws IOException {
+		int b = readByte();
+		if ((b & 0xc0) != 0x80) {
+			throw malformed("invalid UTF-8");
+		}
+		return b & 0x3f;
+	}
+
+	private void readEscape() throws IOException {
+		int c = readByte();
+		switch (c) {
+		case 'b':
+			text.append('\b');
+			break;
+		case 't':
+			text.append('\t');
+			break;
+		case 'n':
+			text.append('\n');
+			break;
+		case 'f':
+			text.append('\f');
+			break;
+		case 'r':
+			text.append('\r');
+			break;
+		case 'u':
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				int digit = Character.digit(readByte(), 16);
+				if (digit < 0) {
+					throw malformed("invalid \\u escape");
+				}
+				value = value << 4 | digit;
+			}
+			text.append((char)value);
+			break;
+		default:
+			text.append((char)c);
+		}
+	}
+
+	private void expect(char expected) throws IOException {
+		if (next() != expected) {
+			throw malformed("expected '" + expected + "'");
+		}
+	}
+
+	/**
+	 * Consumes and returns the next character that is not whitespace.
+	 */
+	private int next() throws IOException {
+		int c = peek();
+		if (c < 0) {
+			throw malformed("unexpected end of data");
+		}
+		position++;
+		return c;
+	}
+
+	/**
+	 * Returns the next character that is not whitespace without consuming
+	 * it, or -1 at the end of the data.
+	 */
+	private int peek() throws IOException {
+		while (true) {
+			int c = peekRaw();
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				return c;
+			}
+			position++;
+		}
+	}
+
+	private int peekRaw() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		return buffer[position] & 0xff;
+	}
+
+	private int readByte() throws IOException {
+		if (position == limit && !fill()) {
+			throw malformed("unexpected end of data");
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	private boolean fill() throws IOException {
+		int count = input.read(buffer, 0, buffer.length);
+		if (count <= 0) {
+			return false;
+		}
+		position = 0;
+		limit = count;
+		return true;
+	}
+
+	private static BadRequestException malformed(String reason) {
+		return new BadRequestException("Malformed JSON entity: " + reason + ".");
+	}
+}
@@ -0,0 +1,456 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.BatchError;
+import com.cybercom.librarytest.model.BatchResult;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.BookSummaries;
+import com.cybercom.librarytest.model.BookSummary;
+import com.cybercom.librarytest.model.Books;
+
+/**
+ * Writes the model classes as JSON in the shape of the Jettison mapped
+ * convention, which the JSON provider of RESTEasy produces from the JAXB
+ * bindings:
+ * <ul>
+ * <li>the object is wrapped in an object with its root element name, e.g.
+ * <code>{"book":{...}}</code>, and its properties are in the JAXB order;</li>
+ * <li>null properties are left out, and an object without properties is
+ * written as <code>""</code>;</li>
+ * <li>a list with one element is written as that element, not as an array,
+ * and an empty list is left out;</li>
+ * <li>a string is written as a number or a boolean if it is the string form
+ * of one, see {@link #primitive(String)};</li>
+ * <li>'/' is escaped and characters outside ASCII are written as they are.</li>
+ * </ul>
+ * The UTF-8 bytes are written straight into a buffer that is reused by all
+ * JsonOutputs of a thread, so only one JsonOutput may be in use per thread
+ * at a time. Nothing is written to the underlying stream until the buffer
+ * is full or {@link #flush()} is called.
+ */
+final class JsonOutput {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final ThreadLocal<byte[]> BUFFERS =
+			ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+	private static final byte[] HEX_DIGITS = {
+		'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+	};
+
+	private final OutputStream output;
+	private final byte[] buffer;
+	private int count;
+
+	JsonOutput(OutputStream output) {
+		this.output = output;
+		this.buffer = BUFFERS.get();
+	}
+
+	/**
+	 * Returns true if {@link #writeMessage} can write objects of the given
+	 * class.
+	 */
+	static boolean isWritable(Class<?> type) {
+		return type == Book.class || type == Author.class
+				|| Books.class.isAssignableFrom(type) || Authors.class.isAssignableFrom(type)
+				|| type == BookSummary.class || type == BookSummaries.class
+				|| type == BatchResult.class || type == BatchError.class;
+	}
+
+	/**
+	 * Writes the object wrapped in an object with its root element name.
+	 */
+	void writeMessage(Object entity) throws IOException {
+		if (entity instanceof Book || entity instanceof BookSummary) {
+			key("book", 0);
+			writeValue(entity);
+		} else if (entity instanceof Author) {
+			key("author", 0);
+			writeValue(entity);
+		} else if (entity instanceof Books || entity instanceof BookSummaries) {
+			key("books", 0);
+			endObject(writeList("book", (List<?>)entity, 0));
+		} else if (entity instanceof Authors) {
+			key("authors", 0);
+			endObject(writeList("author", (Authors)entity, 0));
+		} else if (entity instanceof BatchResult) {
+			BatchResult result = (BatchResult)entity;
+			key("batchResult", 0);
+			int fields = writeList("id", result.getCreated(), 0);
+			endObject(writeList("error", result.getErrors(), fields));
+		} else if (entity instanceof BatchError) {
+			key("error", 0);
+			writeValue(entity);
+		} else {
+			throw new IllegalArgumentException("Cannot write " + entity.getClass().getName());
+		}
+		writeByte('}');
+	}
+
+	/**
+	 * Starts a list whose elements are then written one at a time with
+	 * {@link #writeElement}, in the shape of a list written by
+	 * {@link #writeMessage}: <code>{"books":{"book":[...]}}</code> if it has
+	 * more than one element, <code>{"books":{"book":{...}}}</code> if it has
+	 * one. An empty list is written by {@link #writeEmptyList} instead.
+	 * @param array Whether the list has more than one element.
+	 */
+	void writeListStart(String rootName, String elementName, boolean array) throws IOException {
+		key(rootName, 0);
+		key(elementName, 0);
+		if (array) {
+			writeByte('[');
+		}
+	}
+
+	/**
+	 * Writes one element of a list started with {@link #writeListStart}.
+	 */
+	void writeElement(Object element, boolean first) throws IOException {
+		if (!first) {
+			writeByte(',');
+		}
+		writeValue(element);
+	}
+
+	/**
+	 * Ends a list started with {@link #writeListStart}.
+	 * @param array Whether the list has more than one element.
+	 */
+	void writeListEnd(boolean array) throws IOException {
+		if (array) {
+			writeByte(']');
+		}
+		writeAscii("}}");
+	}
+
+	/**
+	 * Writes an empty list, as {@link #writeMessage} does:
+	 * <code>{"books":""}</code>.
+	 */
+	void writeEmptyList(String rootName) throws IOException {
+		key(rootName, 0);
+		endObject(0);
+		writeByte('}');
+	}
+
+	/**
+	 * Writes the buffered bytes and flushes the underlying stream.
+	 */
+	void flush() throws IOException {
+		drain();
+		output.flush();
+	}
+
+	private void writeValue(Object value) throws IOException {
+		if (value instanceof Book) {
+			Book book = (Book)value;
+			writeBook(book.getId(), book.getTitle(), book.getDescription(), book.getIsbn(),
+					book.getNbOfPage(), book.getAuthors());
+		} else if (value instanceof BookSummary) {
+			BookSummary book = (BookSummary)value;
+			writeBook(book.getId(), book.getTitle(), null, book.getIsbn(),
+					book.getNbOfPage(), book.getAuthors());
+		} else if (value instanceof Author) {
+			Author author = (Author)value;
+			int fields = 0;
+			if (author.getId() != null) {
+				fields = key("id", fields);
+				writeLong(author.getId());
+			}
+			if (author.getName() != null) {
+				fields = key("name", fields);
+				writeText(author.getName());
+			}
+			endObject(fields);
+		} else if (value instanceof BatchError) {
+			BatchError error = (BatchError)value;
+			int fields = 0;
+			if (error.getIndex() != null) {
+				fields = key("index", fields);
+				writeLong(error.getIndex());
+			}
+			if (error.getMessage() != null) {
+				fields = key("message", fields);
+				writeText(error.getMessage());
+			}
+			endObject(fields);
+		} else {
+			writeLong((Long)value);
+		}
+	}
+
+	private void writeBook(Long id, String title, String description, String isbn,
+			Integer nbOfPage, List<Author> authors) throws IOException {
+		int fields = writeList("author", authors, 0);
+		if (description != null) {
+			fields = key("description", fields);
+			writeText(description);
+		}
+		if (id != null) {
+			fields = key("id", fields);
+			writeLong(id);
+		}
+		if (isbn != null) {
+			fields = key("isbn", fields);
+			writeText(isbn);
+		}
+		if (nbOfPage != null) {
+			fields = key("nbOfPage", fields);
+			writeLong(nbOfPage);
+		}
+		if (title != null) {
+			fields = key("title", fields);
+			writeText(title);
+		}
+		endObject(fields);
+	}
+
+	/**
+	 * Writes a list property of an object: nothing if the list has no
+	 * elements but nulls, the element if it has one, or else an array.
+	 * @param fields The number of properties of the object written so far.
+	 * @return The number of properties written, including this one.
+	 */
+	private int writeList(String name, List<?> list, int fields) throws IOException {
+		int size = 0;
+		if (list != null) {
+			for (Object element : list) {
+				if (element != null) {
+					size++;
+				}
+			}
+		}
+		if (size == 0) {
+			return fields;
+		}
+		fields = key(name, fields);
+		if (size > 1) {
+			writeByte('[');
+		}
+		boolean first = true;
+		for (Object element : list) {
+			if (element != null) {
+				writeElement(element, first);
+				first = false;
+			}
+		}
+		if (size > 1) {
+			writeByte(']');
+		}
+		return fields;
+	}
+
+	/**
+	 * Writes the name of a property, preceded by the start of the object or
+	 * by a comma.
+	 * @param fields The number of properties of the object written so far.
+	 * @return The number of properties written, including this one.
+	 */
+	private int key(String name, int fields) throws IOException {
+		writeByte(fields == 0 ? '{' : ',');
+		writeByte('"');
+		writeAscii(name);
+		writeByte('"');
+		writeByte(':');
+		return fields + 1;
+	}
+
+	private void endObject(int fields) throws IOException {
+		if (fields == 0) {
+			writeAscii("\"\"");
+		} else {
+			writeByte('}');
+		}
+	}
+
+	private void writeText(String text) throws IOException {
+		String primitive = primitive(text);
+		if (primitive != null) {
+			writeAscii(primitive);
+		} else {
+			writeString(text);
+		}
+	}
+
+	/**
+	 * Returns the JSON number or boolean that Jettison's default type
+	 * converter writes for the given text, or null if it writes a string.
+	 * The text is converted if it is the string form of a long, a double or
+	 * a boolean: "354" and "true" are, "0354", "1e3" and "TRUE" are not.
+	 */
+	static String primitive(String text) {
+		int length = text.length();
+		if (length == 0) {
+			return null;
+		}
+		char first = text.charAt(0);
+		if (first == 't' || first == 'f') {
+			return text.equals("true") || text.equals("false") ? text : null;
+		}
+		if (first != '-' && first != '+' && (first < '0' || first > '9')) {
+			return null;
+		}
+		boolean integer = true;
+		for (int i = 1; i < length; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				if (c != '.' && c != 'E' && c != '-') {
+					return null;
+				}
+				integer = false;
+			}
+		}
+		try {
+			if (integer) {
+				return Long.toString(Long.parseLong(text)).equals(text) ? text : null;
+			}
+			double value = Double.parseDouble(text);
+			if (Double.isInfinite(value) || !Double.toString(value).equals(text)) {
+				return null;
+			}
+		} catch (NumberFormatException e) {
+			// Too long for a long, or not a number at all; either way its
+			// string form is not the text.
+			return null;
+		}
+		// Like JSONObject.numberToString, which drops the trailing zeros of
+		// a double without an exponent: "100.0" is written as 100.
+		if (text.indexOf('E') >= 0) {
+			return text;
+		}
+		int end = length;
+		while (text.charAt(end - 1) == '0') {
+			end--;
+		}
+		if (text.charAt(end - 1) == '.') {
+			end--;
+		}
+		return text.substring(0, end);
+	}
+
+	private void writeLong(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			writeAscii(Long.toString(value));
+			return;
+		}
+		if (count + 20 > buffer.length) {
+			drain();
+		}
+		if (value < 0) {
+			buffer[count++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (long rest = value / 10; rest != 0; rest /= 10) {
+			digits++;
+		}
+		for (int i = count + digits - 1; i >= count; i--) {
+			buffer[i] = (byte)('0' + value % 10);
+			value /= 10;
+		}
+		count += digits;
+	}
+
+	/**
+	 * Writes a quoted string, encoding the characters straight into the
+	 * buffer. A lone surrogate is written as '?', like {@link String#getBytes}.
+	 */
+	private void writeString(String s) throws IOException {
+		writeByte('"');
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			if (count + 6 > buffer.length) {
+				drain();
+			}
+			char c = s.charAt(i);
+			if (c >= 0x20 && c < 0x80) {
+				if (c == '"' || c == '\\' || c == '/') {
+					buffer[count++] = '\\';
+				}
+				buffer[count++] = (byte)c;
+			} else if (c < 0x20) {
+				writeControl(c);
+			} else if (c < 0x800) {
+				buffer[count++] = (byte)(0xc0 | c >> 6);
+				buffer[count++] = (byte)(0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				buffer[count++] = (byte)(0xf0 | codePoint >> 18);
+				buffer[count++] = (byte)(0x80 | codePoint >> 12 & 0x3f);
+				buffer[count++] = (byte)(0x80 | codePoint >> 6 & 0x3f);
+				buffer[count++] = (byte)(0x80 | codePoint & 0x3f);
+			} else if (Character.isSurrogate(c)) {
+				buffer[count++] = '?';
+			} else {
+				buffer[count++] = (byte)(0xe0 | c >> 12);
+				buffer[count++] = (byte)(0x80 | c >> 6 & 0x3f);
+				buffer[count++] = (byte)(0x80 | c & 0x3f);
+			}
+		}
+		writeByte('"');
+	}
+
+	private void writeControl(char c) {
+		buffer[count++] = '\\';
+		switch (c) {
+		case '\b':
+			buffer[count++] = 'b';
+			break;
+		case '\t':
+			buffer[count++] = 't';
+			break;
+		case '\n':
+			buffer[count++] = 'n';
+			break;
+		case '\f':
+			buffer[count++] = 'f';
+			break;
+		case '\r':
+			buffer[count++] = 'r';
+			break;
+		default:
+			buffer[count++] = 'u';
+			buffer[count++] = '0';
+			buffer[count++] = '0';
+			buffer[count++] = HEX_DIGITS[c >> 4];
+			buffer[count++] = HEX_DIGITS[c & 0xf];
+		}
+	}
+
+	private void writeAscii(String s) throws IOException {
+		int length = s.length();
+		if (count + length > buffer.length) {
+			drain();
+			if (length > buffer.length) {
+				for (int i = 0; i < length; i++) {
+					writeByte(s.charAt(i));
+				}
+				return;
+			}
+		}
+		for (int i = 0; i < length; i++) {
+			buffer[count++] = (byte)s.charAt(i);
+		}
+	}
+
+	private void writeByte(int b) throws IOException {
+		if (count == buffer.length) {
+			drain();
+		}
+		buffer[count++] = (byte)b;
+	}
+
+	private void drain() throws IOException {
+		output.write(buffer, 0, count);
+		count = 0;
+	}
+}
@@ -0,0 +1,65 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reads and writes the model classes as JSON without going through JAXB.
+ * The JSON provider of RESTEasy marshals an object to XML events with JAXB
+ * and maps them to JSON with Jettison, which allocates several times the
+ * size of the output; this provider writes the same JSON, see
+ * {@link JsonOutput}, straight from the getters. Since an application
+ * provider takes precedence over the built-in ones, RESTEasy uses it for
+ * the classes it supports and Jettison for any other class.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class JsonProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType) {
+		return JsonInput.isReadable(type);
+	}
+
+	@Override
+	public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType, MultivaluedMap<String, String> httpHeaders,
+			InputStream entityStream) throws IOException, WebApplicationException {
+		return new JsonInput(entityStream).readMessage(type);
+	}
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType) {
+		return JsonOutput.isWritable(type);
+	}
+
+	@Override
+	public long getSize(Object t, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType) {
+		return -1;
+	}
+
+	@Override
+	public void writeTo(Object t, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+			OutputStream entityStream) throws IOException, WebApplicationException {
+		JsonOutput output = new JsonOutput(entityStream);
+		output.writeMessage(t);
+		output.flush();
+	}
+}
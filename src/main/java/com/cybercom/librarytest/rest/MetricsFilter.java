@@ -0,0 +1,163 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Path;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import com.cybercom.librarytest.metrics.RequestMetrics;
+import com.cybercom.librarytest.metrics.RouteMetrics;
+import com.cybercom.librarytest.metrics.Trace;
+
+/**
+ * Container filter and writer interceptor recording the
+ * {@link RouteMetrics} of every request: the route is the HTTP method and
+ * the path template of the resource method, such as
+ * <code>GET /books/{id}</code>, so that all books count towards one route.
+ * The latency is measured from the matching of the resource method to the
+ * response, before its body is written; the allocations of the request,
+ * if they are measured, until its body has been written, and the size of
+ * the body as it is sent, after compression. Requests that match no
+ * resource method only have their status counted, under
+ * {@link RouteMetrics#UNMATCHED}. A request that fails without a response
+ * is counted with status 500 by the {@link MetricsServletFilter}.
+ * <p>
+ * The filter runs before and after all other filters and interceptors, so
+ * that their work is part of the measurements. While a request is handled,
+ * its {@link RequestMetrics} are the {@link RequestMetrics#current()
+ * current} ones of the thread, to which the work done for the request,
+ * such as its queries, can be attributed. If the request is traced, the
+ * resource method, from the request to the response filters, and the
+ * writing of the body are spans of its {@link Trace}.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION - 100)
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter,
+		WriterInterceptor {
+
+	private static final String REQUEST = MetricsFilter.class.getName() + ".request";
+
+	private static final ConcurrentMap<Method, String> TEMPLATES = new ConcurrentHashMap<>();
+
+	@Context
+	private ResourceInfo resourceInfo;
+
+	@Override
+	public void filter(ContainerRequestContext requestContext) throws IOException {
+		Method method = resourceInfo.getResourceMethod();
+		if (method == null) {
+			return;
+		}
+		RouteMetrics route = RouteMetrics.of(requestContext.getMethod(),
+				template(resourceInfo.getResourceClass(), method));
+		requestContext.setProperty(REQUEST, RequestMetrics.start(route));
+		Trace.Span span = Trace.begin("resource");
+		if (span != null) {
+			span.setDetail(resourceInfo.getResourceClass().getSimpleName() + '.' + method.getName());
+		}
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext,
+			ContainerResponseContext responseContext) throws IOException {
+		RequestMetrics request = (RequestMetrics)requestContext.getProperty(REQUEST);
+		if (request == null) {
+			RouteMetrics.of(requestContext.getMethod(), RouteMetrics.UNMATCHED)
+					.counted(responseContext.getStatus());
+			return;
+		}
+		Trace.end("resource");
+		request.responded(responseContext.getStatus());
+		if (!responseContext.hasEntity()) {
+			requestContext.removeProperty(REQUEST);
+			request.written(-1);
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context)
+			throws IOException, WebApplicationException {
+		RequestMetrics request = (RequestMetrics)context.getProperty(REQUEST);
+		if (request == null) {
+			context.proceed();
+			return;
+		}
+		context.removeProperty(REQUEST);
+		CountingOutputStream body = new CountingOutputStream(context.getOutputStream());
+		context.setOutputStream(body);
+		Trace.Span span = Trace.begin("write");
+		if (span != null) {
+			span.setDetail(context.getType().getSimpleName() + " as " + context.getMediaType());
+		}
+		try {
+			context.proceed();
+		} finally {
+			Trace.end(span);
+			request.written(body.count);
+		}
+	}
+
+	/**
+	 * Returns the path template of the resource method, the paths of the
+	 * resource class and of the method joined by a single slash.
+	 */
+	static String template(Class<?> resourceClass, Method method) {
+		String template = TEMPLATES.get(method);
+		if (template == null) {
+			StringBuilder sb = new StringBuilder();
+			appendPath(sb, resourceClass.getAnnotation(Path.class));
+			appendPath(sb, method.getAnnotation(Path.class));
+			template = sb.length() == 0 ? "/" : sb.toString();
+			TEMPLATES.putIfAbsent(method, template);
+		}
+		return template;
+	}
+
+	private static void appendPath(StringBuilder sb, Path path) {
+		if (path == null) {
+			return;
+		}
+		for (String segment : path.value().split("/")) {
+			if (!segment.isEmpty()) {
+				sb.append('/').append(segment);
+			}
+		}
+	}
+
+	private static final class CountingOutputStream extends FilterOutputStream {
+
+		private long count;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.cybercom.librarytest.rest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import com.cybercom.librarytest.metrics.Histogram;
+import com.cybercom.librarytest.metrics.LatencyHistogram;
+import com.cybercom.librarytest.metrics.RequestMetrics;
+import com.cybercom.librarytest.metrics.RouteMetrics;
+
+/**
+ * REST interface exposing the {@link RouteMetrics} recorded by the
+ * {@link MetricsFilter} in the Prometheus text format: per route, a
+ * summary of the latencies with their 50th, 90th, 99th and 99.9th
+ * percentiles, the greatest latency, the number of responses per status
+ * code, the number of requests in flight, and summaries of the response
+ * sizes and, if {@link RequestMetrics#isAllocationMeasured() measured}, of
+ * the bytes allocated per request. The number and the time of the garbage
+ * collections of the JVM are exposed with them, so that the allocations of
+ * the routes can be related to the time spent collecting them.
+ */
+@Path("/metrics")
+@Produces(MetricsRestService.MEDIA_TYPE)
+public class MetricsRestService {
+
+	static final String MEDIA_TYPE = "text/plain; version=0.0.4";
+
+	private static final String DURATION = "librarytest_http_request_duration_seconds";
+	private static final String DURATION_MAX = "librarytest_http_request_duration_seconds_max";
+	private static final String REQUESTS = "librarytest_http_requests_total";
+	private static final String IN_FLIGHT = "librarytest_http_requests_in_flight";
+	private static final String RESPONSE_SIZE = "librarytest_http_response_size_bytes";
+	private static final String ALLOCATED = "librarytest_http_request_allocated_bytes";
+	private static final String GC_COLLECTIONS = "librarytest_jvm_gc_collections_total";
+	private static final String GC_TIME = "librarytest_jvm_gc_collection_seconds_total";
+
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+	@GET
+	public String getMetrics() {
+		List<RouteMetrics> routes = RouteMetrics.all();
+		StringBuilder sb = new StringBuilder();
+
+		header(sb, DURATION, "summary", "Time from the matching of a request to its response.");
+		summaries(sb, DURATION, routes, RouteMetrics::getLatencies, 1e6);
+
+		header(sb, DURATION_MAX, "gauge", "Greatest time from the matching of a request to its response.");
+		for (RouteMetrics route : routes) {
+			LatencyHistogram latencies = route.getLatencies();
+			if (latencies.getCount() > 0) {
+				sb.append(DURATION_MAX);
+				labels(sb, route).append("} ").append(seconds(latencies.getMaxMicros())).append('\n');
+			}
+		}
+
+		header(sb, REQUESTS, "counter", "Responses by status code.");
+		for (RouteMetrics route : routes) {
+			long[] statuses = route.getStatuses();
+			for (int status = 0; status < statuses.length; status++) {
+				if (statuses[status] > 0) {
+					sb.append(REQUESTS);
+					labels(sb, route).append(",status=\"").append(status).append("\"} ");
+					sb.append(statuses[status]).append('\n');
+				}
+			}
+		}
+
+		header(sb, IN_FLIGHT, "gauge", "Requests being handled.");
+		for (RouteMetrics route : routes) {
+			if (!RouteMetrics.UNMATCHED.equals(route.getRoute())) {
+				sb.append(IN_FLIGHT);
+				labels(sb, route).append("} ").append(route.getInFlight()).append('\n');
+			}
+		}
+
+		header(sb, RESPONSE_SIZE, "summary", "Size of the response bodies as sent, after compression.");
+		summaries(sb, RESPONSE_SIZE, routes, RouteMetrics::getResponseBytes, 1);
+
+		if (RequestMetrics.isAllocationMeasured()) {
+			header(sb, ALLOCATED, "summary", "Bytes allocated on the heap by the threads handling a request.");
+			summaries(sb, ALLOCATED, routes, RouteMetrics::getAllocatedBytes, 1);
+		}
+
+		List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		header(sb, GC_COLLECTIONS, "counter", "Garbage collections by collector.");
+		for (GarbageCollectorMXBean collector : collectors) {
+			sb.append(GC_COLLECTIONS).append("{gc=\"");
+			escape(sb, collector.getName());
+			sb.append("\"} ").append(collector.getCollectionCount()).append('\n');
+		}
+		header(sb, GC_TIME, "counter", "Time spent in garbage collections by collector.");
+		for (GarbageCollectorMXBean collector : collectors) {
+			sb.append(GC_TIME).append("{gc=\"");
+			escape(sb, collector.getName());
+			sb.append("\"} ").append(collector.getCollectionTime() / 1e3).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the quantiles, sum and count of the histogram of each route
+	 * that has recorded values, divided by the given scale.
+	 */
+	private static void summaries(StringBuilder sb, String name, List<RouteMetrics> routes,
+			Function<RouteMetrics, ? extends Histogram> histogram, double scale) {
+		for (RouteMetrics route : routes) {
+			Histogram values = histogram.apply(route);
+			if (values.getCount() == 0) {
+				continue;
+			}
+			for (double quantile : QUANTILES) {
+				sb.append(name);
+				labels(sb, route).append(",quantile=\"").append(quantile).append("\"} ");
+				value(sb, values.getQuantile(quantile), scale).append('\n');
+			}
+			sb.append(name).append("_sum");
+			value(labels(sb, route).append("} "), values.getTotal(), scale).append('\n');
+			sb.append(name).append("_count");
+			labels(sb, route).append("} ").append(values.getCount()).append('\n');
+		}
+	}
+
+	private static StringBuilder value(StringBuilder sb, long value, double scale) {
+		return scale == 1 ? sb.append(value) : sb.append(value / scale);
+	}
+
+	private static void header(StringBuilder sb, String name, String type, String help) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	/**
+	 * Appends the opening brace and the method and route labels.
+	 */
+	private static StringBuilder labels(StringBuilder sb, RouteMetrics route) {
+		sb.append("{method=\"");
+		escape(sb, route.getMethod());
+		sb.append("\",route=\"");
+		escape(sb, route.getRoute());
+		return sb.append('"');
+	}
+
+	private static void escape(StringBuilder sb, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '"') {
+				sb.append('\\').append(c);
+			} else if (c == '\n') {
+				sb.append("\\n");
+			} else {
+				sb.append(c);
+			}
+		}
+	}
+
+	private static double seconds(long micros) {
+		return micros / 1e6;
+	}
+}
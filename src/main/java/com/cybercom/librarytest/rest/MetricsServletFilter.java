@@ -0,0 +1,49 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import com.cybercom.librarytest.metrics.RequestMetrics;
+
+/**
+ * Servlet filter ending the {@link RequestMetrics} still attached to the
+ * request thread once RESTEasy has handled the request. The
+ * {@link MetricsFilter} records the response in its response filter, but
+ * RESTEasy skips the response filters when the request fails with an
+ * exception that no mapper handles; the request would then stay in flight,
+ * its 500 response would not be counted and it would stay attached to the
+ * thread until the thread serves another request.
+ * <p>
+ * An asynchronous request is detached from the request thread when it is
+ * suspended, and {@link AsyncResources} ends it if its work fails, so the
+ * filter supports asynchronous requests.
+ */
+public class MetricsServletFilter implements Filter {
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			RequestMetrics metrics = RequestMetrics.current();
+			if (metrics != null) {
+				metrics.failed();
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+}
@@ -0,0 +1,94 @@
+package com.cybercom.librarytest.rest;
+
+import java.net.URI;
+import java.util.List;
+
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import org.jboss.resteasy.spi.BadRequestException;
+
+/**
+ * Helper for keyset (cursor) pagination of the list endpoints. A page is
+ * requested with <code>?after=&lt;id&gt;&amp;limit=N</code> and is read with
+ * an id-ordered range query, so the cost of a page does not depend on how
+ * far into the table it is. The cursor of the next page is returned in a
+ * <code>Link: &lt;...&gt;; rel="next"</code> header.
+ */
+final class Paging {
+
+	static final int DEFAULT_LIMIT = 100;
+	static final int MAX_LIMIT = 1000;
+
+	private Paging() {
+	}
+
+	/**
+	 * Returns true if the client asked for a page rather than the full list.
+	 */
+	static boolean isPaged(Long after, Integer limit) {
+		return after != null || limit != null;
+	}
+
+	/**
+	 * Returns the page size to use for the given limit parameter.
+	 * @throws BadRequestException - if the limit is not a positive number.
+	 */
+	static int limitOf(Integer limit) {
+		if (limit == null) {
+			return DEFAULT_LIMIT;
+		}
+		if (limit <= 0) {
+			throw new BadRequestException("Limit must be a positive number.");
+		}
+		return Math.min(limit, MAX_LIMIT);
+	}
+
+	/**
+	 * Returns the lower (exclusive) id bound for the given cursor parameter.
+	 */
+	static long afterOf(Long after) {
+		return after == null ? Long.MIN_VALUE : after;
+	}
+
+	/**
+	 * Binds the cursor to the query and fetches one row more than the page
+	 * size, so that the caller can tell whether there is a next page.
+	 */
+	static <T> List<T> fetch(TypedQuery<T> query, Long after, int limit) {
+		return query.setParameter("after", afterOf(after))
+				.setMaxResults(limit + 1)
+				.getResultList();
+	}
+
+	/**
+	 * Like {@link #fetch(TypedQuery, Long, int)}, for a query whose rows are
+	 * either entities or projections.
+	 */
+	static List<?> fetch(Query query, Long after, int limit) {
+		return query.setParameter("after", afterOf(after))
+				.setMaxResults(limit + 1)
+				.getResultList();
+	}
+
+	/**
+	 * Builds the response for a page read with {@link #fetch}.
+	 * @param page The rows of the page, without the extra look-ahead row.
+	 * @param hasNext Whether the look-ahead row was present.
+	 * @param lastId The id of the last row of the page.
+	 */
+	static Response.ResponseBuilder ok(Object page, boolean hasNext, Long lastId,
+			int limit, UriInfo uriInfo) {
+		Response.ResponseBuilder builder = Response.ok(page);
+		if (hasNext) {
+			URI next = uriInfo.getRequestUriBuilder()
+					.replaceQueryParam("after", lastId)
+					.replaceQueryParam("limit", limit)
+					.build();
+			builder.link(next, "next");
+		}
+		return builder;
+	}
+}
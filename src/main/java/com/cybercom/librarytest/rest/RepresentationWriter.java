@@ -0,0 +1,52 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.cybercom.librarytest.cache.RepresentationCache.Representation;
+
+/**
+ * Writes a cached {@link Representation} as it is. The
+ * <code>Content-Encoding</code> of a compressed body is set here, while
+ * the body is being written, for the same reason as in
+ * {@link CompressionInterceptor}: the RESTEasy
+ * <code>GZIPEncodingInterceptor</code> would compress the body again if the
+ * header were set on the response.
+ */
+@Provider
+@Produces(MediaType.WILDCARD)
+public class RepresentationWriter implements MessageBodyWriter<Representation> {
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType) {
+		return type == Representation.class;
+	}
+
+	@Override
+	public long getSize(Representation t, Class<?> type, Type genericType,
+			Annotation[] annotations, MediaType mediaType) {
+		return -1;
+	}
+
+	@Override
+	public void writeTo(Representation t, Class<?> type, Type genericType,
+			Annotation[] annotations, MediaType mediaType,
+			MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+			throws IOException, WebApplicationException {
+		if (t.getContentEncoding() != null) {
+			httpHeaders.putSingle(HttpHeaders.CONTENT_ENCODING, t.getContentEncoding());
+		}
+		entityStream.write(t.getBody());
+	}
+}
@@ -0,0 +1,127 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+
+import com.cybercom.librarytest.cache.RepresentationCache;
+import com.cybercom.librarytest.cache.RepresentationCache.Representation;
+
+/**
+ * Builds the 200 responses of single-entity GETs from a
+ * {@link RepresentationCache}. The media type is negotiated with the
+ * variants of the resource and the content coding as in
+ * {@link CompressionInterceptor}; a cached body is written as it is by the
+ * {@link RepresentationWriter}, and on a miss the entity is encoded and
+ * compressed here, cached and then written the same way.
+ */
+final class Representations {
+
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+	private static final int MAX_NEGOTIATED = 64;
+
+	private final RepresentationCache cache;
+	private final List<Variant> variants;
+	private final int threshold = CompressionInterceptor.configuredThreshold();
+	private final Map<List<String>, MediaType> negotiated = new ConcurrentHashMap<>();
+
+	Representations(RepresentationCache cache, List<Variant> variants) {
+		this.cache = cache;
+		this.variants = variants;
+	}
+
+	/**
+	 * Returns a 200 response with the given version of the given fieldset of
+	 * an entity, like {@link Conditional#ok}. If the cache is disabled, the
+	 * entity has no version or none of the variants is acceptable, the
+	 * entity is returned for RESTEasy to write.
+	 * @param entity Supplies the entity to encode on a miss.
+	 */
+	Response.ResponseBuilder ok(Long id, Long version, FieldSet fields, Supplier<?> entity,
+			Request request, HttpHeaders headers, Providers providers) {
+		MediaType mediaType = cache.isEnabled() && version != null
+				? negotiate(request, headers) : null;
+		if (mediaType == null) {
+			return Conditional.ok(entity.get(), id, version, fields);
+		}
+		String encoding = CompressionInterceptor.negotiate(
+				headers.getRequestHeader(HttpHeaders.ACCEPT_ENCODING));
+		String key = mediaType + " " + encoding + " " + (fields.isAll() ? "" : fields.tag());
+		Representation representation = cache.get(id, version, key);
+		if (representation == null) {
+			long generation = cache.generation();
+			Object value = entity.get();
+			try {
+				representation = encode(value, mediaType, encoding, providers);
+			} catch (IOException e) {
+				return Conditional.ok(value, id, version, fields);
+			}
+			cache.put(id, version, key, representation, generation);
+		}
+		return Conditional.ok(representation, id, version, fields).type(mediaType);
+	}
+
+	/**
+	 * Returns the media type of the variant selected for the request, or
+	 * null if none is acceptable. Clients send few distinct
+	 * <code>Accept</code> headers, so the result is remembered for the first
+	 * {@value #MAX_NEGOTIATED} of them.
+	 */
+	private MediaType negotiate(Request request, HttpHeaders headers) {
+		List<String> accept = headers.getRequestHeader(HttpHeaders.ACCEPT);
+		if (accept == null) {
+			accept = Collections.emptyList();
+		}
+		MediaType mediaType = negotiated.get(accept);
+		if (mediaType == null) {
+			Variant variant = request.selectVariant(variants);
+			if (variant == null) {
+				return null;
+			}
+			mediaType = variant.getMediaType();
+			if (negotiated.size() < MAX_NEGOTIATED) {
+				negotiated.put(new ArrayList<>(accept), mediaType);
+			}
+		}
+		return mediaType;
+	}
+
+	/**
+	 * Encodes the entity with the provider RESTEasy would use for the media
+	 * type and compresses it if it exceeds the threshold of the
+	 * {@link CompressionInterceptor}.
+	 * @param encoding The negotiated content coding, or null.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Representation encode(Object entity, MediaType mediaType, String encoding,
+			Providers providers) throws IOException {
+		Class type = entity.getClass();
+		MessageBodyWriter writer = providers.getMessageBodyWriter(type, type, NO_ANNOTATIONS,
+				mediaType);
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		writer.writeTo(entity, type, type, NO_ANNOTATIONS, mediaType,
+				new MultivaluedHashMap<String, Object>(), body);
+		if (encoding == null || body.size() <= threshold) {
+			return new Representation(body.toByteArray(), null);
+		}
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.size() / 4);
+		CompressionInterceptor.compress(body.toByteArray(), encoding, compressed);
+		return new Representation(compressed.toByteArray(), encoding);
+	}
+}
@@ -0,0 +1,48 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import com.cybercom.librarytest.LocalEntityManagerFactory;
+import com.cybercom.librarytest.UnitOfWork;
+
+/**
+ * Container filter scoping the {@link UnitOfWork} to the request: it is
+ * started when the request comes in and ended, closing the EntityManager
+ * and rolling back an unfinished transaction, when the response goes out.
+ * A request that fails without a response is ended by the
+ * {@link UnitOfWorkServletFilter}.
+ * <p>
+ * The launcher accepts requests while the persistence unit is still being
+ * initialized. Requests wait here until it is done, except those for the
+ * admin and metrics resources, which use neither the database nor the
+ * indexes built from it.
+ */
+@Provider
+public class UnitOfWorkFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+	@Context
+	private ResourceInfo resourceInfo;
+
+	@Override
+	public void filter(ContainerRequestContext requestContext) throws IOException {
+		Class<?> resource = resourceInfo.getResourceClass();
+		if (resource != AdminRestService.class && resource != MetricsRestService.class) {
+			LocalEntityManagerFactory.awaitInitialization();
+		}
+		UnitOfWork.begin();
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext,
+			ContainerResponseContext responseContext) throws IOException {
+		UnitOfWork.end();
+	}
+}
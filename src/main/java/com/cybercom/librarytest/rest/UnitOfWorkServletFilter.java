@@ -0,0 +1,44 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import com.cybercom.librarytest.UnitOfWork;
+
+/**
+ * Servlet filter ending the {@link UnitOfWork} of the request thread once
+ * RESTEasy has handled the request. The {@link UnitOfWorkFilter} ends it
+ * before the response is written, but RESTEasy skips the response filters
+ * when the request fails with an exception that no mapper handles; the
+ * EntityManager would then stay open, bound to the thread, until the
+ * thread serves another request.
+ * <p>
+ * The work of an asynchronous request runs in a unit of work of its own
+ * on another thread, so the filter supports asynchronous requests.
+ */
+public class UnitOfWorkServletFilter implements Filter {
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			UnitOfWork.end();
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+}
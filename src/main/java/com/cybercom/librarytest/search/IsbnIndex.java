@@ -0,0 +1,89 @@
+package com.cybercom.librarytest.search;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityManager;
+
+import com.cybercom.librarytest.model.Book;
+
+/**
+ * In-memory hash index from the normalized ISBN of a book to its id, so
+ * that a lookup or a duplicate check does not need a database query. The
+ * database enforces the same uniqueness with a unique index on the
+ * <code>isbn_key</code> column.
+ * <p>
+ * Lookups do not lock. Like the {@link SearchIndex}, the index is not kept
+ * in sync by the persistence layer; every path that creates, deletes or
+ * changes the ISBN of a book must call {@link #put(Book)} or
+ * {@link #remove(Long)} after committing.
+ */
+public class IsbnIndex {
+
+	public static final IsbnIndex BOOKS = new IsbnIndex();
+
+	private final Map<String, Long> idsByKey = new ConcurrentHashMap<>();
+	private final Map<Long, String> keysById = new HashMap<>();
+
+	/**
+	 * Returns the id of the book with the given normalized ISBN, or null if
+	 * there is none.
+	 * @see com.cybercom.librarytest.model.Isbn#toKey(String)
+	 */
+	public Long find(String isbnKey) {
+		return isbnKey == null ? null : idsByKey.get(isbnKey);
+	}
+
+	/**
+	 * Adds the book to the index, replacing its previous ISBN.
+	 */
+	public void put(Book book) {
+		put(book.getId(), book.getIsbnKey());
+	}
+
+	/**
+	 * Sets the normalized ISBN of the book with the given id; a null key
+	 * removes the book from the index.
+	 */
+	public synchronized void put(Long id, String isbnKey) {
+		String previous = isbnKey == null ? keysById.remove(id) : keysById.put(id, isbnKey);
+		if (previous != null && !previous.equals(isbnKey)) {
+			idsByKey.remove(previous, id);
+		}
+		if (isbnKey != null) {
+			idsByKey.put(isbnKey, id);
+		}
+	}
+
+	/**
+	 * Removes the book with the given id from the index.
+	 */
+	public void remove(Long id) {
+		put(id, null);
+	}
+
+	/**
+	 * Removes all books from the index.
+	 */
+	public synchronized void clear() {
+		idsByKey.clear();
+		keysById.clear();
+	}
+
+	public int size() {
+		return idsByKey.size();
+	}
+
+	/**
+	 * Rebuilds the index from the database.
+	 */
+	public synchronized void rebuild(EntityManager em) {
+		clear();
+		List<?> rows = em.createNamedQuery(Book.FIND_ISBN_KEYS).getResultList();
+		for (Object row : rows) {
+			put((Long)((Object[])row)[1], (String)((Object[])row)[0]);
+		}
+	}
+}
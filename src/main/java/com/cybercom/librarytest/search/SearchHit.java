@@ -0,0 +1,23 @@
+package com.cybercom.librarytest.search;
+
+/**
+ * A document matching a search, with its relevance score.
+ */
+public final class SearchHit {
+
+	private final long id;
+	private final float score;
+
+	public SearchHit(long id, float score) {
+		this.id = id;
+		this.score = score;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public float getScore() {
+		return score;
+	}
+}
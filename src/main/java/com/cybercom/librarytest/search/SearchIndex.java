@@ -0,0 +1,420 @@
+package com.cybercom.librarytest.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import com.cybercom.librarytest.model.Book;
+
+/**
+ * In-memory inverted index over the title and description of the books,
+ * ranking matches with BM25. Title terms weigh {@link #TITLE_WEIGHT} times
+ * as much as description terms.
+ * <p>
+ * Every document gets an int ordinal, and the postings of a term are
+ * parallel arrays of ordinals and term frequencies, so a search only walks
+ * the postings of its own terms. The terms are scored rarest first; once
+ * the remaining, more common terms cannot lift a new document into the
+ * top results, they only add to the scores of the documents already found
+ * (the MaxScore optimization). A removed document is only marked as
+ * deleted and skipped by searches; its postings are dropped, and its
+ * ordinal reused, when the deleted documents make up a quarter of the index.
+ * <p>
+ * The index is not kept in sync by the persistence layer; every path that
+ * changes the title or description of a book must call {@link #put(Book)}
+ * or {@link #remove(Long)} after committing.
+ */
+public class SearchIndex {
+
+	public static final SearchIndex BOOKS = new SearchIndex();
+
+	static final int TITLE_WEIGHT = 3;
+
+	private static final float K1 = 1.2f;
+	private static final float B = 0.75f;
+	private static final int REBUILD_PAGE_SIZE = 10000;
+	private static final int DELETED = -1;
+	private static final int FREE = -2;
+
+	private static final Comparator<SearchHit> RANKING = new Comparator<SearchHit>() {
+		@Override
+		public int compare(SearchHit a, SearchHit b) {
+			int byScore = Float.compare(b.getScore(), a.getScore());
+			return byScore != 0 ? byScore : Long.compare(a.getId(), b.getId());
+		}
+	};
+
+	/**
+	 * Score accumulators, reused between searches. Only the entries of the 
+	 * matched documents are set, and they are reset before an array is 
+	 * returned to the pool.
+	 */
+	private final Queue<float[]> scorePool = new ConcurrentLinkedQueue<>();
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, Postings> postings = new HashMap<>();
+	private final Map<Long, Integer> ordinals = new HashMap<>();
+	private long[] ids = new long[1024];
+	private int[] lengths = new int[1024];
+	private int[] free = new int[0];
+	private int freeCount;
+	private int nextOrdinal;
+	private int live;
+	private int deleted;
+	private long totalLength;
+
+	/**
+	 * Adds the book to the index, replacing its previous version.
+	 */
+	public void put(Book book) {
+		put(book.getId(), book.getTitle(), book.getDescription());
+	}
+
+	/**
+	 * Adds the document with the given id to the index, replacing its
+	 * previous version.
+	 */
+	public void put(Long id, String title, String description) {
+		Document document = new Document(id, title, description);
+		lock.writeLock().lock();
+		try {
+			removeDocument(id);
+			addDocument(document);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the document with the given id from the index.
+	 */
+	public void remove(Long id) {
+		lock.writeLock().lock();
+		try {
+			removeDocument(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes all documents from the index.
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			postings.clear();
+			ordinals.clear();
+			ids = new long[1024];
+			lengths = new int[1024];
+			free = new int[0];
+			freeCount = 0;
+			nextOrdinal = 0;
+			live = 0;
+			deleted = 0;
+			totalLength = 0;
+			scorePool.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Rebuilds the index from the database. The books are read in pages of
+	 * {@link #REBUILD_PAGE_SIZE}, and the text of each page is analyzed in
+	 * parallel before it is added to the index.
+	 */
+	public void rebuild(EntityManager em) {
+		clear();
+		long after = Long.MIN_VALUE;
+		while (true) {
+			List<?> rows = em.createNamedQuery(Book.FIND_TEXT_PAGE)
+					.setParameter("after", after)
+					.setMaxResults(REBUILD_PAGE_SIZE)
+					.getResultList();
+			if (rows.isEmpty()) {
+				return;
+			}
+			List<Document> documents = rows.parallelStream()
+					.map(row -> (Object[])row)
+					.map(row -> new Document((Long)row[0], (String)row[1], (String)row[2]))
+					.collect(Collectors.toList());
+			lock.writeLock().lock();
+			try {
+				for (Document document : documents) {
+					removeDocument(document.id);
+					addDocument(document);
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+			after = documents.get(documents.size() - 1).id;
+		}
+	}
+
+	/**
+	 * Returns the <code>limit</code> best matches for the query, best first.
+	 * A document matches if it contains any of the terms of the query.
+	 */
+	public List<SearchHit> search(String query, int limit) {
+		List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.terms(query)));
+		if (terms.isEmpty() || limit <= 0) {
+			return Collections.emptyList();
+		}
+		lock.readLock().lock();
+		try {
+			if (live == 0) {
+				return Collections.emptyList();
+			}
+			List<Postings> termPostings = new ArrayList<>();
+			for (String term : terms) {
+				Postings p = postings.get(term);
+				if (p != null) {
+					termPostings.add(p);
+				}
+			}
+			Collections.sort(termPostings, new Comparator<Postings>() {
+				@Override
+				public int compare(Postings a, Postings b) {
+					return Integer.compare(a.size, b.size);
+				}
+			});
+			float[] idfs = new float[termPostings.size()];
+			float[] remaining = new float[termPostings.size() + 1];
+			for (int t = termPostings.size() - 1; t >= 0; t--) {
+				int df = termPostings.get(t).size;
+				idfs[t] = (float)Math.log(1 + (live - df + 0.5) / (df + 0.5));
+				remaining[t] = remaining[t + 1] + idfs[t] * (K1 + 1);
+			}
+			float[] scores = takeScores(nextOrdinal);
+			int[] matches = new int[16];
+			int matchCount = 0;
+			try {
+				float averageLength = (float)totalLength / live;
+				for (int t = 0; t < termPostings.size(); t++) {
+					Postings p = termPostings.get(t);
+					boolean addMatches = matchCount < limit
+							|| kthScore(scores, matches, matchCount, limit) < remaining[t];
+					for (int i = 0; i < p.size; i++) {
+						int ordinal = p.ordinals[i];
+						int length = lengths[ordinal];
+						if (length < 0 || !addMatches && scores[ordinal] == 0) {
+							continue;
+						}
+						int tf = p.frequencies[i];
+						float norm = K1 * (1 - B + B * length / averageLength);
+						if (scores[ordinal] == 0) {
+							if (matchCount == matches.length) {
+								matches = Arrays.copyOf(matches, matchCount * 2);
+							}
+							matches[matchCount++] = ordinal;
+						}
+						scores[ordinal] += idfs[t] * tf * (K1 + 1) / (tf + norm);
+					}
+				}
+				return top(scores, matches, matchCount, limit);
+			} finally {
+				for (int i = 0; i < matchCount; i++) {
+					scores[matches[i]] = 0;
+				}
+				scorePool.offer(scores);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of documents in the index.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return live;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private float[] takeScores(int size) {
+		float[] scores = scorePool.poll();
+		if (scores == null || scores.length < size) {
+			scores = new float[Math.max(size, 1024) + size / 4];
+		}
+		return scores;
+	}
+
+	/**
+	 * Returns the <code>k</code>th best score among the matches so far.
+	 */
+	private static float kthScore(float[] scores, int[] matches, int matchCount, int k) {
+		PriorityQueue<Float> best = new PriorityQueue<>(k + 1);
+		for (int i = 0; i < matchCount; i++) {
+			float score = scores[matches[i]];
+			if (best.size() < k) {
+				best.add(score);
+			} else if (score > best.peek()) {
+				best.poll();
+				best.add(score);
+			}
+		}
+		return best.peek();
+	}
+
+	private List<SearchHit> top(float[] scores, int[] matches, int matchCount, int limit) {
+		PriorityQueue<SearchHit> best = new PriorityQueue<>(Math.min(limit, matchCount) + 1,
+				Collections.reverseOrder(RANKING));
+		for (int i = 0; i < matchCount; i++) {
+			int ordinal = matches[i];
+			float score = scores[ordinal];
+			if (best.size() == limit) {
+				SearchHit worst = best.peek();
+				if (score < worst.getScore()
+						|| score == worst.getScore() && ids[ordinal] > worst.getId()) {
+					continue;
+				}
+				best.poll();
+			}
+			best.add(new SearchHit(ids[ordinal], score));
+		}
+		List<SearchHit> hits = new ArrayList<>(best);
+		Collections.sort(hits, RANKING);
+		return hits;
+	}
+
+	private void addDocument(Document document) {
+		if (document.length == 0) {
+			return;
+		}
+		int ordinal = allocateOrdinal();
+		ids[ordinal] = document.id;
+		lengths[ordinal] = document.length;
+		ordinals.put(document.id, ordinal);
+		live++;
+		totalLength += document.length;
+		for (Map.Entry<String, Integer> term : document.frequencies.entrySet()) {
+			Postings termPostings = postings.get(term.getKey());
+			if (termPostings == null) {
+				termPostings = new Postings();
+				postings.put(term.getKey(), termPostings);
+			}
+			termPostings.add(ordinal, term.getValue());
+		}
+	}
+
+	private void removeDocument(Long id) {
+		Integer ordinal = ordinals.remove(id);
+		if (ordinal == null) {
+			return;
+		}
+		totalLength -= lengths[ordinal];
+		lengths[ordinal] = DELETED;
+		live--;
+		deleted++;
+		if (deleted > 1024 && deleted > live / 3) {
+			compact();
+		}
+	}
+
+	private int allocateOrdinal() {
+		if (freeCount > 0) {
+			return free[--freeCount];
+		}
+		if (nextOrdinal == ids.length) {
+			ids = Arrays.copyOf(ids, nextOrdinal * 2);
+			lengths = Arrays.copyOf(lengths, nextOrdinal * 2);
+		}
+		return nextOrdinal++;
+	}
+
+	/**
+	 * Drops the postings of deleted documents and frees their ordinals.
+	 */
+	private void compact() {
+		Iterator<Postings> iterator = postings.values().iterator();
+		while (iterator.hasNext()) {
+			Postings termPostings = iterator.next();
+			termPostings.removeDeleted(lengths);
+			if (termPostings.size == 0) {
+				iterator.remove();
+			}
+		}
+		free = Arrays.copyOf(free, freeCount + deleted);
+		for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+			if (lengths[ordinal] == DELETED) {
+				lengths[ordinal] = FREE;
+				free[freeCount++] = ordinal;
+			}
+		}
+		deleted = 0;
+	}
+
+	/**
+	 * The analyzed text of a document: its term frequencies, with title
+	 * terms counted {@link #TITLE_WEIGHT} times, and its weighted length.
+	 */
+	private static final class Document {
+		final long id;
+		final Map<String, Integer> frequencies = new HashMap<>();
+		int length;
+
+		Document(Long id, String title, String description) {
+			this.id = id;
+			add(title, TITLE_WEIGHT);
+			add(description, 1);
+		}
+
+		private void add(String text, int weight) {
+			for (String term : TextAnalyzer.terms(text)) {
+				Integer frequency = frequencies.get(term);
+				frequencies.put(term, frequency == null ? weight : frequency + weight);
+				length += weight;
+			}
+		}
+	}
+
+	/**
+	 * The documents containing a term, as parallel arrays of ordinals and
+	 * term frequencies.
+	 */
+	private static final class Postings {
+		int[] ordinals = new int[2];
+		int[] frequencies = new int[2];
+		int size;
+
+		void add(int ordinal, int frequency) {
+			if (size == ordinals.length) {
+				ordinals = Arrays.copyOf(ordinals, size * 2);
+				frequencies = Arrays.copyOf(frequencies, size * 2);
+			}
+			ordinals[size] = ordinal;
+			frequencies[size] = frequency;
+			size++;
+		}
+
+		void removeDeleted(int[] lengths) {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (lengths[ordinals[i]] != DELETED) {
+					ordinals[kept] = ordinals[i];
+					frequencies[kept] = frequencies[i];
+					kept++;
+				}
+			}
+			size = kept;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.cybercom.librarytest.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into the terms of the search index: the text is lower-cased,
+ * accents are removed, and it is split on everything that is not a letter
+ * or a digit. Single characters and common English stop words are dropped,
+ * since they match most documents and only cost time.
+ */
+public final class TextAnalyzer {
+
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+			"an", "and", "are", "as", "at", "be", "but", "by", "for", "from",
+			"has", "he", "her", "his", "in", "is", "it", "its", "of", "on",
+			"or", "she", "that", "the", "their", "they", "this", "to", "was",
+			"were", "which", "who", "will", "with"));
+
+	private TextAnalyzer() {
+	}
+
+	/**
+	 * Returns the terms of the given text, in order and with duplicates.
+	 */
+	public static List<String> terms(String text) {
+		List<String> terms = new ArrayList<>();
+		if (text == null || text.isEmpty()) {
+			return terms;
+		}
+		String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+				.replaceAll("").toLowerCase(Locale.ROOT);
+		for (String term : SEPARATORS.split(normalized)) {
+			if (term.length() > 1 && !STOP_WORDS.contains(term)) {
+				terms.add(term);
+			}
+		}
+		return terms;
+	}
+}
@@ -0,0 +1,95 @@
+package com.cybercom.librarytest;
+
+import org.junit.Test;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Book;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration tests for the asynchronous book and author services.
+ */
+public class AsyncRestServiceIT extends RestServiceIntegrationTest {
+
+	private static WebTarget books = client.target(ASYNC_BOOK_BASE_URI);
+	private static WebTarget authors = client.target(ASYNC_AUTHOR_BASE_URI);
+
+	@Test
+	public void shouldCreateUpdateAndDeleteABook() {
+		Book book = new Book(TEST_BOOK_TITLE, TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
+		response = books.request().post(Entity.entity(book, MediaType.APPLICATION_XML));
+		assertEquals("Created", response.getStatusInfo().toString());
+		String location = response.getLocation().toString();
+		assertTrue(location, location.startsWith(ASYNC_BOOK_BASE_URI + "/"));
+		response.close();
+		Long id = Long.valueOf(location.substring(location.lastIndexOf('/') + 1));
+
+		Book created = books.path(id.toString()).request(MediaType.APPLICATION_XML).get(Book.class);
+		assertEquals(TEST_BOOK_TITLE, created.getTitle());
+		assertEquals(Integer.valueOf(TEST_BOOK_NBRPAGES), created.getNbOfPage());
+
+		created.setTitle(TEST_BOOK_TITLE + " updated");
+		response = books.request().put(Entity.entity(created, MediaType.APPLICATION_XML));
+		assertEquals("OK", response.getStatusInfo().toString());
+		response.close();
+		Book updated = client.target(BOOK_BASE_URI).path(id.toString())
+				.request(MediaType.APPLICATION_XML).get(Book.class);
+		assertEquals(TEST_BOOK_TITLE + " updated", updated.getTitle());
+
+		response = books.path(id.toString()).request().delete();
+		assertEquals("No Content", response.getStatusInfo().toString());
+		response.close();
+		response = books.path(id.toString()).request(MediaType.APPLICATION_XML).get();
+		assertEquals("Not Found", response.getStatusInfo().toString());
+		response.close();
+	}
+
+	@Test
+	public void shouldAnswerABadRequest() {
+		response = books.path("isbn").path("1-2-3").request(MediaType.APPLICATION_XML).get();
+		assertEquals("Bad Request", response.getStatusInfo().toString());
+		response.close();
+	}
+
+	@Test
+	public void shouldCreateAndGetAnAuthor() {
+		response = authors.request().post(
+				Entity.entity(new Author(TEST_AUTHOR_NAME_2), MediaType.APPLICATION_XML));
+		assertEquals("Created", response.getStatusInfo().toString());
+		String location = response.getLocation().toString();
+		assertTrue(location, location.startsWith(ASYNC_AUTHOR_BASE_URI + "/"));
+		response.close();
+
+		Author author = client.target(location).request(MediaType.APPLICATION_XML).get(Author.class);
+		assertEquals(TEST_AUTHOR_NAME_2, author.getName());
+	}
+
+	@Test
+	public void shouldCountTheCompletedTasks() throws InterruptedException {
+		long before = executorStatistic("executor.completed");
+		response = authors.request(MediaType.APPLICATION_XML).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		response.close();
+		// the task is counted once it returns, which may be after the response is sent
+		for (int i = 0; i < 50 && executorStatistic("executor.completed") == before; i++) {
+			Thread.sleep(20);
+		}
+		assertTrue(executorStatistic("executor.completed") > before);
+	}
+
+	private static long executorStatistic(String name) {
+		String statistics = client.target(ADMIN_BASE_URI).path("executor").request().get(String.class);
+		for (String line : statistics.split("\n")) {
+			if (line.startsWith(name + " ")) {
+				return Long.parseLong(line.substring(line.indexOf(' ') + 1).trim());
+			}
+		}
+		throw new AssertionError("No executor statistics: " + statistics);
+	}
+}
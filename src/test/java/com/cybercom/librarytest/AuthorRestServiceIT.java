@@ -4,9 +4,11 @@ import org.junit.Test;
 
 import com.cybercom.librarytest.model.Author;
 import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.BatchResult;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Link;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.xml.bind.JAXBContext;
@@ -17,6 +19,8 @@ import java.io.StringWriter;
 import java.net.URI;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Integration tests for the Author REST service.
@@ -116,6 +120,70 @@ public class AuthorRestServiceIT extends RestServiceIntegrationTest {
 		response.close();
 	}
 
+	@Test
+	public void shouldStreamTheSameJsonAsTheList() {
+		Response response = target.request(MediaType.APPLICATION_JSON).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		String list = response.readEntity(String.class);
+		response.close();
+
+		response = target.queryParam("stream", true).request(MediaType.APPLICATION_JSON).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		assertEquals(list, response.readEntity(String.class));
+		response.close();
+	}
+
+	@Test
+	public void shouldPageThroughAuthorsWithCursor() throws JAXBException {
+
+		// GETs the first page of two authors
+		Response response = target.queryParam("limit", 2).request().get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		Authors page = response.readEntity(Authors.class);
+		Link next = response.getLink("next");
+		response.close();
+		assertEquals(2, page.size());
+		assertNotNull(next);
+
+		// GETs the next page by following the link, confirms that it 
+		// starts after the last author of the first page
+		response = client.target(next).request().get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		Authors nextPage = response.readEntity(Authors.class);
+		response.close();
+		assertTrue(nextPage.get(0).getId() > page.get(1).getId());
+	}
+
+	@Test
+	public void shouldCreateTheValidAuthorsOfABatch() {
+		Authors authors = new Authors();
+		authors.add(new Author(TEST_AUTHOR_NAME_1));
+		authors.add(new Author());
+		authors.add(new Author(1L, TEST_AUTHOR_NAME_2));
+		authors.add(new Author(TEST_AUTHOR_NAME_2));
+
+		// POSTs the batch, confirms that the invalid authors are reported 
+		// and the others created
+		Response response = target.path("batch").request(MediaType.APPLICATION_XML)
+				.post(Entity.entity(authors, MediaType.APPLICATION_XML));
+		assertEquals("OK", response.getStatusInfo().toString());
+		BatchResult result = response.readEntity(BatchResult.class);
+		response.close();
+		assertEquals(2, result.getCreated().size());
+		assertEquals(2, result.getErrors().size());
+		assertError(1, "Author must have a name.", result.getErrors().get(0));
+		assertError(2, "Author in a batch must not have an id.", result.getErrors().get(1));
+
+		// GETs the created authors
+		String[] names = {TEST_AUTHOR_NAME_1, TEST_AUTHOR_NAME_2};
+		for (int i = 0; i < names.length; i++) {
+			response = target.path(String.valueOf(result.getCreated().get(i))).request().get();
+			assertEquals("OK", response.getStatusInfo().toString());
+			assertEquals(names[i], response.readEntity(Author.class).getName());
+			response.close();
+		}
+	}
+
 	@Test
 	public void shouldNotFindTheAuthorID() throws JAXBException {
 
@@ -27,7 +27,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 	@Test
 	public void shouldReturnAuthorsOfBook() throws JAXBException {
 		Book book = new Book(TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		Author author1 = new Author(TEST_AUTHOR_NAME_1);
 		Author author2 = new Author(TEST_AUTHOR_NAME_2);
 		
@@ -77,7 +77,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 	public void shouldAddExistingAuthorToBook() throws JAXBException {
 		
 		Book book = new Book(TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		Author author = new Author(TEST_AUTHOR_NAME_1);
 		
 		// Create the book
@@ -130,7 +130,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 	public void shouldNotAddNonExistingAuthorToBook() throws JAXBException {
 		
 		Book book = new Book(TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		Author author = new Author(TEST_AUTHOR_NAME_1);
 		
 		// Create the book
@@ -162,7 +162,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 	public void shouldAddExistingAuthorToBookByUpdatingBook() throws JAXBException {
 		
 		Book book = new Book(TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		Author author = new Author(TEST_AUTHOR_NAME_1);
 		
 		// Create the book
@@ -182,7 +182,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 		
 		// Add the author to the book
 		Book updatedBook = new Book(Long.parseLong(bookId), TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		updatedBook.getAuthors().add(author);
 		response = client.target(BOOK_BASE_URI).request()
 				.put(Entity.entity(updatedBook, MediaType.APPLICATION_XML));
@@ -211,7 +211,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 	public void shouldNotAddNonExistingAuthorToBookByUpdatingBook() throws JAXBException {
 		
 		Book book = new Book(TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		Author author = new Author(TEST_AUTHOR_NAME_1);
 		
 		// Create the book
@@ -224,7 +224,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 		// Add an author to the book that has no id field set thus does not 
 		// exist in the database, confirm that an error is thrown
 		Book updatedBook = new Book(Long.parseLong(bookId), TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		updatedBook.getAuthors().add(author);
 		response = client.target(BOOK_BASE_URI).request()
 				.put(Entity.entity(updatedBook, MediaType.APPLICATION_XML));
@@ -246,7 +246,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 	public void shouldUpdateBookWithExistingAuthors() throws JAXBException {
 		
 		Book book = new Book(TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		Author author1 = new Author(TEST_AUTHOR_NAME_1);
 		Author author2 = new Author(TEST_AUTHOR_NAME_2);
 		
@@ -302,7 +302,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 	public void shouldNotUpdateBookWithNonExistingAuthors() throws JAXBException {
 		
 		Book book = new Book(TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		Author author1 = new Author(TEST_AUTHOR_NAME_1);
 		Author author2 = new Author(TEST_AUTHOR_NAME_2);
 		
@@ -347,7 +347,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 	public void shouldCreateBookWithExistingAuthor() throws JAXBException {
 		
 		Book book = new Book(TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		Author author = new Author(TEST_AUTHOR_NAME_1);
 		
 		// Create an author
@@ -388,7 +388,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 	public void shouldNotCreateBookWithNonExistingAuthor() throws JAXBException {
 		
 		Book book = new Book(TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		Author author = new Author(TEST_AUTHOR_NAME_1);
 		
 		// Create the book, with an author included that has no id value 
@@ -404,7 +404,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 	public void shouldRemoveAuthorFromBook() throws JAXBException {
 
 		Book book = new Book(TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		Author author = new Author(TEST_AUTHOR_NAME_1);
 		
 		// Create an author
@@ -426,7 +426,7 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 		
 		// Remove the author from the book
 		Book updatedBook = new Book(book.getId(), TEST_BOOK_TITLE, 
-				TEST_BOOK_DESCRIPTION, TEST_BOOK_ISBN, TEST_BOOK_NBRPAGES);
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
 		response = client.target(BOOK_BASE_URI).request()
 				.put(Entity.entity(updatedBook, MediaType.APPLICATION_XML));
 		assertEquals("OK", response.getStatusInfo().toString());
@@ -440,6 +440,44 @@ public class BookAuthorRestServiceIT extends RestServiceIntegrationTest {
 		response.close();
 	}
 	
+	@Test
+	public void shouldRemoveAllAuthorsFromBookWithAnEmptyList() throws JAXBException {
+
+		Author author = new Author(TEST_AUTHOR_NAME_1);
+		
+		// Create an author
+		response = client.target(AUTHOR_BASE_URI).request()
+				.post(Entity.entity(author, MediaType.APPLICATION_XML));
+		assertEquals("Created", response.getStatusInfo().toString());
+		author.setId(Long.parseLong(response.getLocation().toString().split("/")[6]));
+		response.close();
+		
+		// Create the book, with the author included
+		Book book = new Book(TEST_BOOK_TITLE, 
+				TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES);
+		book.getAuthors().add(author);
+		response = client.target(BOOK_BASE_URI).request()
+				.post(Entity.entity(book, MediaType.APPLICATION_XML));
+		assertEquals("Created", response.getStatusInfo().toString());
+		String bookId = response.getLocation().toString().split("/")[6];
+		response.close();
+		
+		// Replace the authors with an empty list
+		response = client.target(BOOK_BASE_URI)
+				.path(bookId)
+				.path("authors")
+				.request()
+				.put(Entity.entity(new Authors(), MediaType.APPLICATION_XML));
+		assertEquals("No Content", response.getStatusInfo().toString());
+		response.close();
+		
+		// Get the book by id, confirm that the author was removed.
+		response = client.target(BOOK_BASE_URI).path(bookId).request().get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		assertEquals(0, response.readEntity(Book.class).getAuthors().size());
+		response.close();
+	}
+	
 	/**
 	 * Removes from the database all data generated by these tests.
 	 */
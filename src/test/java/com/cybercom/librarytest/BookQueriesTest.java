@@ -0,0 +1,209 @@
+package com.cybercom.librarytest;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.BookSummary;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.Query;
+
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.queries.ScrollableCursor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Statement-count regression tests for the list queries of {@link Book}, run
+ * against an in-memory H2 database. The shared cache is disabled, so every
+ * author list that is not batch-fetched costs a query of its own.
+ */
+public class BookQueriesTest {
+
+	private static final long NEIL_GAIMAN = 2L;
+
+	private static MeteredDataSource dataSource;
+	private static EntityManagerFactory emf;
+
+	private EntityManager em;
+
+	@BeforeClass
+	public static void setUpPersistenceUnit() {
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:BookQueriesTest;DB_CLOSE_DELAY=-1");
+		dataSource = new MeteredDataSource(h2);
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("javax.persistence.nonJtaDataSource", dataSource);
+		properties.put("eclipselink.cache.shared.default", "false");
+		emf = Persistence.createEntityManagerFactory("LibraryPU", properties);
+		TestData.initTestData(emf.createEntityManager());
+	}
+
+	@AfterClass
+	public static void tearDownPersistenceUnit() {
+		emf.close();
+	}
+
+	@Before
+	public void openEntityManager() {
+		em = emf.createEntityManager();
+	}
+
+	@After
+	public void closeEntityManager() {
+		em.close();
+	}
+
+	@Test
+	public void shouldLoadTheAuthorsOfAllBooksWithOneQuery() {
+		List<?> books = em.createNamedQuery(Book.FIND_ALL).getResultList();
+		long plainStatements = statementsToLoadAuthors(em.createNamedQuery(Book.FIND_ALL));
+		assertTrue(plainStatements > books.size());
+
+		assertEquals(2, statementsToLoadAuthors(em.createNamedQuery(Book.FIND_ALL_WITH_AUTHORS)));
+	}
+
+	@Test
+	public void shouldReadAllBooksAndTheirAuthorsThroughACursorWithOneQuery() {
+		List<?> books = em.createNamedQuery(Book.FIND_ALL).getResultList();
+		int authors = countAuthors(books);
+		em.clear();
+		long before = dataSource.getStatements();
+		ScrollableCursor cursor = (ScrollableCursor)em.createNamedQuery(Book.FIND_ALL_FOR_CURSOR)
+				.setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE)
+				.getSingleResult();
+		List<Object> streamed = new ArrayList<>();
+		try {
+			while (cursor.hasNext()) {
+				streamed.add(cursor.next());
+			}
+		} finally {
+			cursor.close();
+		}
+
+		assertEquals(books.size(), streamed.size());
+		assertEquals(authors, countAuthors(streamed));
+		assertEquals(1, dataSource.getStatements() - before);
+	}
+
+	@Test
+	public void shouldLoadTheAuthorsOfAllBooksByAnAuthorWithOneQuery() {
+		Query query = em.createNamedQuery(Book.FIND_ALL_BY_AUTHOR)
+				.setParameter("id", NEIL_GAIMAN);
+
+		assertEquals(2, statementsToLoadAuthors(query));
+		assertEquals(countAuthors(Book.FIND_ALL, NEIL_GAIMAN), countAuthors(query.getResultList()));
+	}
+
+	@Test
+	public void shouldLoadTheAuthorsOfAPageWithOneQuery() {
+		Query query = em.createNamedQuery(Book.FIND_PAGE)
+				.setParameter("after", 1L)
+				.setMaxResults(4);
+
+		assertEquals(2, statementsToLoadAuthors(query));
+		assertEquals(4, query.getResultList().size());
+	}
+
+	@Test
+	public void shouldLoadTheAuthorsOfAPageByAnAuthorWithOneQuery() {
+		Query query = em.createNamedQuery(Book.FIND_PAGE_BY_AUTHOR)
+				.setParameter("id", NEIL_GAIMAN)
+				.setParameter("after", 0L)
+				.setMaxResults(3);
+
+		assertEquals(2, statementsToLoadAuthors(query));
+		assertEquals(3, query.getResultList().size());
+	}
+
+	@Test
+	public void shouldLoadSummariesAndTheirAuthorsWithTwoQueries() {
+		em.clear();
+		long before = dataSource.getStatements();
+		List<BookSummary> summaries = 
+				em.createNamedQuery(Book.FIND_ALL_SUMMARIES, BookSummary.class).getResultList();
+		BookSummary.loadAuthors(summaries, em);
+		assertEquals(2, dataSource.getStatements() - before);
+
+		int authors = 0;
+		for (BookSummary summary : summaries) {
+			authors += summary.getAuthors().size();
+		}
+		assertEquals(countAuthors(em.createNamedQuery(Book.FIND_ALL).getResultList()), authors);
+	}
+
+	@Test
+	public void shouldLoadAPageOfSummariesByAnAuthor() {
+		List<BookSummary> summaries = em
+				.createNamedQuery(Book.FIND_SUMMARY_PAGE_BY_AUTHOR, BookSummary.class)
+				.setParameter("id", NEIL_GAIMAN)
+				.setParameter("after", 0L)
+				.setMaxResults(3)
+				.getResultList();
+		BookSummary.loadAuthors(summaries, em);
+
+		assertEquals(3, summaries.size());
+		assertTrue(summaries.get(0).getId() < summaries.get(1).getId());
+		for (BookSummary summary : summaries) {
+			boolean byNeilGaiman = false;
+			for (Author author : summary.getAuthors()) {
+				byNeilGaiman |= author.getId() == NEIL_GAIMAN;
+			}
+			assertTrue(byNeilGaiman);
+		}
+	}
+
+	/**
+	 * Runs the query in a fresh persistence context and reads the authors of
+	 * every book, returning the number of statements executed.
+	 */
+	private long statementsToLoadAuthors(Query query) {
+		em.clear();
+		long before = dataSource.getStatements();
+		countAuthors(query.getResultList());
+		long statements = dataSource.getStatements() - before;
+		em.clear();
+		return statements;
+	}
+
+	/**
+	 * Counts the authors of the books by the given author, reading all books
+	 * with the given query.
+	 */
+	private int countAuthors(String namedQuery, long authorId) {
+		int authors = 0;
+		for (Object book : em.createNamedQuery(namedQuery).getResultList()) {
+			List<Author> authorsOfBook = ((Book)book).getAuthors();
+			for (Author author : authorsOfBook) {
+				if (author.getId() == authorId) {
+					authors += authorsOfBook.size();
+					break;
+				}
+			}
+		}
+		return authors;
+	}
+
+	private static int countAuthors(List<?> books) {
+		int authors = 0;
+		for (Object book : books) {
+			authors += ((Book)book).getAuthors().size();
+		}
+		return authors;
+	}
+}
@@ -3,8 +3,10 @@ package com.cybercom.librarytest;
 import org.junit.Test;
 
 import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.BatchResult;
 import com.cybercom.librarytest.model.Book;
 import com.cybercom.librarytest.model.Books;
+import com.cybercom.librarytest.rest.BinaryProvider;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
@@ -17,6 +19,7 @@ import java.io.StringWriter;
 import java.net.URI;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Integration tests for the Book REST service.
@@ -153,6 +156,222 @@ public class BookRestServiceIT extends RestServiceIntegrationTest {
 		response.close();
 	}
 
+	@Test
+	public void shouldFindABookByIsbnAndRejectDuplicates() throws JAXBException {
+		String isbn = uniqueIsbn();
+		String hyphenated = isbn.substring(0, 3) + "-" + isbn.substring(3, 12) + "-" + isbn.substring(12);
+		Book book = new Book(TEST_BOOK_TITLE, TEST_BOOK_DESCRIPTION, hyphenated, TEST_BOOK_NBRPAGES);
+
+		// POSTs (creates) a Book
+		Response response = target.request()
+				.post(Entity.entity(book, MediaType.APPLICATION_XML));
+		assertEquals("Created", response.getStatusInfo().toString());
+		response.close();
+		String bookId = response.getLocation().toString().split("/")[6];
+
+		// GETs the book by its ISBN without hyphens
+		response = target.path("isbn").path(isbn).request().get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		assertEquals(Long.valueOf(bookId), response.readEntity(Book.class).getId());
+		response.close();
+
+		// POSTs another book with the same ISBN, confirms it is rejected
+		response = target.request()
+				.post(Entity.entity(book, MediaType.APPLICATION_XML));
+		assertEquals("Conflict", response.getStatusInfo().toString());
+		response.close();
+
+		// GETs a book by an ISBN with a wrong check digit
+		response = target.path("isbn").path("0-575-04800-1").request().get();
+		assertEquals("Bad Request", response.getStatusInfo().toString());
+		response.close();
+
+		// DELETEs the book, confirms it can no longer be found by ISBN
+		response = target.path(bookId).request().delete();
+		assertEquals("No Content", response.getStatusInfo().toString());
+		response.close();
+		response = target.path("isbn").path(isbn).request().get();
+		assertEquals("Not Found", response.getStatusInfo().toString());
+		response.close();
+	}
+
+	@Test
+	public void shouldCreateAndGetABookInTheBinaryFormat() {
+		WebTarget binaryTarget = client.target(BOOK_BASE_URI).register(BinaryProvider.class);
+		Book book = new Book(TEST_BOOK_TITLE, "Caf\u00e9 \u6771\u4eac", uniqueIsbn(), TEST_BOOK_NBRPAGES);
+
+		// POSTs (creates) a Book in the binary format
+		Response response = binaryTarget.request()
+				.post(Entity.entity(book, BinaryProvider.MEDIA_TYPE));
+		assertEquals("Created", response.getStatusInfo().toString());
+		response.close();
+		String bookId = response.getLocation().toString().split("/")[6];
+
+		// GETs the Book in the binary format
+		response = binaryTarget.path(bookId).request(BinaryProvider.MEDIA_TYPE).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		assertEquals(BinaryProvider.MEDIA_TYPE_TYPE, response.getMediaType());
+		Book read = response.readEntity(Book.class);
+		assertEquals(Long.valueOf(bookId), read.getId());
+		assertEquals(book.getDescription(), read.getDescription());
+		assertEquals(book.getIsbn(), read.getIsbn());
+		response.close();
+
+		// GETs a page and a stream of books in the binary format
+		response = binaryTarget.queryParam("limit", 10).request(BinaryProvider.MEDIA_TYPE).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		assertTrue(response.readEntity(Books.class).size() <= 10);
+		response.close();
+		response = binaryTarget.queryParam("stream", true).request(BinaryProvider.MEDIA_TYPE).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		boolean found = false;
+		for (Book streamed : response.readEntity(Books.class)) {
+			found |= streamed.getId().equals(read.getId());
+		}
+		assertTrue(found);
+		response.close();
+
+		// DELETEs the book
+		response = target.path(bookId).request().delete();
+		assertEquals("No Content", response.getStatusInfo().toString());
+		response.close();
+	}
+
+	@Test
+	public void shouldServeTheCachedRepresentationUntilTheBookChanges() {
+		StringBuilder description = new StringBuilder();
+		for (int i = 0; i < 40; i++) {
+			description.append("A description long enough to be compressed. ");
+		}
+		Book book = new Book(TEST_BOOK_TITLE, description.toString(), uniqueIsbn(), TEST_BOOK_NBRPAGES);
+
+		// POSTs (creates) a Book
+		Response response = target.request()
+				.post(Entity.entity(book, MediaType.APPLICATION_XML));
+		assertEquals("Created", response.getStatusInfo().toString());
+		response.close();
+		String bookId = response.getLocation().toString().split("/")[6];
+
+		// GETs the gzipped JSON of the book twice, confirms the second 
+		// response is the cached one
+		response = target.path(bookId).request(MediaType.APPLICATION_JSON)
+				.header("Accept-Encoding", "gzip").get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		assertEquals("gzip", response.getHeaderString("Content-Encoding"));
+		String json = response.readEntity(String.class);
+		String tag = response.getHeaderString("ETag");
+		response.close();
+		long hits = representationCacheHits();
+		response = target.path(bookId).request(MediaType.APPLICATION_JSON)
+				.header("Accept-Encoding", "gzip").get();
+		assertEquals("gzip", response.getHeaderString("Content-Encoding"));
+		assertEquals(MediaType.APPLICATION_JSON_TYPE, response.getMediaType());
+		assertEquals(tag, response.getHeaderString("ETag"));
+		assertEquals(json, response.readEntity(String.class));
+		response.close();
+		assertEquals(hits + 1, representationCacheHits());
+
+		// PUTs (updates) the book, confirms the new title is returned
+		book.setId(Long.valueOf(bookId));
+		book.setTitle("Updated title");
+		response = target.request()
+				.put(Entity.entity(book, MediaType.APPLICATION_XML));
+		assertEquals("OK", response.getStatusInfo().toString());
+		response.close();
+		response = target.path(bookId).request(MediaType.APPLICATION_JSON)
+				.header("Accept-Encoding", "gzip").get();
+		assertEquals("Updated title", response.readEntity(Book.class).getTitle());
+		response.close();
+
+		// DELETEs the book
+		response = target.path(bookId).request().delete();
+		assertEquals("No Content", response.getStatusInfo().toString());
+		response.close();
+	}
+
+	private static long representationCacheHits() {
+		String statistics = client.target(ADMIN_BASE_URI).path("cache").request().get(String.class);
+		for (String line : statistics.split("\n")) {
+			if (line.startsWith("cache.bookRepresentations.hits ")) {
+				return Long.parseLong(line.substring(line.indexOf(' ') + 1));
+			}
+		}
+		throw new AssertionError("No representation cache statistics: " + statistics);
+	}
+
+	@Test
+	public void shouldStreamAllBooks() throws JAXBException {
+		
+		// GETs all books the ordinary way
+		Response response = target.request().get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		Books books = response.readEntity(Books.class);
+		response.close();
+		
+		// GETs all books streamed, confirms that the same books are returned
+		response = target.queryParam("stream", true)
+				.request(MediaType.APPLICATION_XML).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		Books streamedBooks = response.readEntity(Books.class);
+		response.close();
+		assertEquals(books.size(), streamedBooks.size());
+	}
+
+	@Test
+	public void shouldCreateTheValidBooksOfABatch() {
+		Response response = client.target(AUTHOR_BASE_URI).request()
+				.post(Entity.entity(new Author(TEST_AUTHOR_NAME_1), MediaType.APPLICATION_XML));
+		assertEquals("Created", response.getStatusInfo().toString());
+		response.close();
+		Author author = new Author(Long.valueOf(response.getLocation().toString().split("/")[6]), 
+				TEST_AUTHOR_NAME_1);
+		StringBuilder longDescription = new StringBuilder();
+		for (int i = 0; i <= 2000; i++) {
+			longDescription.append('x');
+		}
+		Books books = new Books();
+		books.add(new Book(TEST_BOOK_TITLE, TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES));
+		books.get(0).getAuthors().add(author);
+		books.add(new Book(null, TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES));
+		books.add(new Book(TEST_BOOK_TITLE, TEST_BOOK_DESCRIPTION, "123", TEST_BOOK_NBRPAGES));
+		books.add(new Book(TEST_BOOK_TITLE, longDescription.toString(), uniqueIsbn(), 
+				TEST_BOOK_NBRPAGES));
+		books.add(new Book(TEST_BOOK_TITLE, TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES));
+		books.get(4).getAuthors().add(new Author(author.getId(), TEST_AUTHOR_NAME_2));
+		books.add(new Book("Second title", TEST_BOOK_DESCRIPTION, uniqueIsbn(), TEST_BOOK_NBRPAGES));
+
+		// POSTs the batch; the description of the fourth book is too long 
+		// for the database, which fails the chunk before it is saved book by 
+		// book
+		response = target.path("batch").request(MediaType.APPLICATION_XML)
+				.post(Entity.entity(books, MediaType.APPLICATION_XML));
+		assertEquals("OK", response.getStatusInfo().toString());
+		BatchResult result = response.readEntity(BatchResult.class);
+		response.close();
+		assertEquals(2, result.getCreated().size());
+		assertEquals(4, result.getErrors().size());
+		assertError(1, "Book must have a title.", result.getErrors().get(0));
+		assertError(2, "Book had an invalid ISBN.", result.getErrors().get(1));
+		assertError(3, "The book could not be saved.", result.getErrors().get(2));
+		assertError(4, "Author does not exist in database.", result.getErrors().get(3));
+
+		// GETs the created books and DELETEs them
+		response = target.path(String.valueOf(result.getCreated().get(0))).request().get();
+		Book created = response.readEntity(Book.class);
+		response.close();
+		assertEquals(TEST_BOOK_TITLE, created.getTitle());
+		assertEquals(1, created.getAuthors().size());
+		assertEquals(author.getId(), created.getAuthors().get(0).getId());
+		response = target.path(String.valueOf(result.getCreated().get(1))).request().get();
+		assertEquals("Second title", response.readEntity(Book.class).getTitle());
+		response.close();
+		for (Long id : result.getCreated()) {
+			response = target.path(String.valueOf(id)).request().delete();
+			assertEquals("No Content", response.getStatusInfo().toString());
+			response.close();
+		}
+	}
+
 	@Test
 	public void shouldNotFindInvalidBookID() throws JAXBException {
 
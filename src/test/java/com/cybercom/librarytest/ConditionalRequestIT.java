@@ -0,0 +1,174 @@
+package com.cybercom.librarytest;
+
+import org.junit.Test;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.Book;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration tests for the conditional GETs of books and authors: a client 
+ * holding the current version is answered with 304 Not Modified, and every 
+ * update gives the resource a new version, even two updates in a row.
+ */
+public class ConditionalRequestIT extends RestServiceIntegrationTest {
+
+	private static WebTarget books = client.target(BOOK_BASE_URI);
+	private static WebTarget authors = client.target(AUTHOR_BASE_URI);
+
+	@Test
+	public void shouldAnswerConditionalRequestsForABook() {
+		Book book = new Book(TEST_BOOK_TITLE, TEST_BOOK_DESCRIPTION, uniqueIsbn(), 
+				TEST_BOOK_NBRPAGES);
+		String bookId = create(books, book);
+		WebTarget target = books.path(bookId);
+		String[] validators = assertNotModified(target);
+
+		// PUTs (updates) the book twice in a row, confirms both versions are new
+		book.setId(Long.valueOf(bookId));
+		book.setTitle("Updated title");
+		update(books, book);
+		String[] updated = assertModifiedSince(target, validators);
+		book.setTitle("Updated title again");
+		update(books, book);
+		assertModifiedSince(target, updated);
+
+		delete(target);
+	}
+
+	@Test
+	public void shouldAnswerConditionalRequestsForAnAuthor() {
+		Author author = new Author(TEST_AUTHOR_NAME_1);
+		String authorId = create(authors, author);
+		WebTarget target = authors.path(authorId);
+		String[] validators = assertNotModified(target);
+
+		// PUTs (updates) the author twice in a row, confirms both versions are new
+		author.setId(Long.valueOf(authorId));
+		author.setName(TEST_AUTHOR_NAME_2);
+		update(authors, author);
+		String[] updated = assertModifiedSince(target, validators);
+		author.setName(TEST_AUTHOR_NAME_1);
+		update(authors, author);
+		assertModifiedSince(target, updated);
+
+		delete(target);
+	}
+
+	@Test
+	public void shouldAnswerConditionalRequestsForTheAuthorsOfABook() {
+		Author author1 = new Author(TEST_AUTHOR_NAME_1);
+		author1.setId(Long.valueOf(create(authors, author1)));
+		Author author2 = new Author(TEST_AUTHOR_NAME_2);
+		author2.setId(Long.valueOf(create(authors, author2)));
+		Book book = new Book(TEST_BOOK_TITLE, TEST_BOOK_DESCRIPTION, uniqueIsbn(), 
+				TEST_BOOK_NBRPAGES);
+		String bookId = create(books, book);
+		WebTarget target = books.path(bookId).path("authors");
+		String[] validators = assertNotModified(target);
+
+		// Changes the authors twice in a row, confirms both versions are new
+		Authors list = new Authors();
+		list.add(author1);
+		response = target.request().put(Entity.entity(list, MediaType.APPLICATION_XML));
+		assertEquals("OK", response.getStatusInfo().toString());
+		response.close();
+		String[] updated = assertModifiedSince(target, validators);
+		response = target.request().post(Entity.entity(author2, MediaType.APPLICATION_XML));
+		assertEquals("OK", response.getStatusInfo().toString());
+		response.close();
+		assertModifiedSince(target, updated);
+
+		delete(books.path(bookId));
+	}
+
+	/**
+	 * GETs the resource and repeats the GET with its validators, once with 
+	 * <code>If-None-Match</code> and once with <code>If-Modified-Since</code>, 
+	 * confirming both are answered with 304 Not Modified.
+	 * @return The entity tag and the last modified date of the resource.
+	 */
+	private static String[] assertNotModified(WebTarget target) {
+		response = target.request(MediaType.APPLICATION_XML).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		String tag = response.getHeaderString(HttpHeaders.ETAG);
+		String lastModified = response.getHeaderString(HttpHeaders.LAST_MODIFIED);
+		assertNotNull(tag);
+		assertNotNull(lastModified);
+		assertTrue("The XML, JSON and binary variants share a weak tag: " + tag, tag.startsWith("W/"));
+		assertVariesByMediaTypeAndCoding(response);
+		response.close();
+
+		response = target.request(MediaType.APPLICATION_XML)
+				.header(HttpHeaders.IF_NONE_MATCH, tag).get();
+		assertEquals("Not Modified", response.getStatusInfo().toString());
+		assertEquals(tag, response.getHeaderString(HttpHeaders.ETAG));
+		assertVariesByMediaTypeAndCoding(response);
+		response.close();
+
+		response = target.request(MediaType.APPLICATION_XML)
+				.header(HttpHeaders.IF_MODIFIED_SINCE, lastModified).get();
+		assertEquals("Not Modified", response.getStatusInfo().toString());
+		response.close();
+		return new String[] {tag, lastModified};
+	}
+
+	private static void assertVariesByMediaTypeAndCoding(Response response) {
+		List<String> vary = new ArrayList<>();
+		for (String value : response.getStringHeaders().get(HttpHeaders.VARY)) {
+			for (String name : value.split(",")) {
+				vary.add(name.trim());
+			}
+		}
+		assertEquals("Vary: " + vary, Arrays.asList(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING), vary);
+	}
+
+	/**
+	 * GETs the resource with the validators of an earlier version, which may 
+	 * be of the same second, confirming the new version is sent, and 
+	 * confirms the new version is answered with 304 Not Modified.
+	 * @return The validators of the new version.
+	 */
+	private static String[] assertModifiedSince(WebTarget target, String[] validators) {
+		response = target.request(MediaType.APPLICATION_XML)
+				.header(HttpHeaders.IF_NONE_MATCH, validators[0])
+				.header(HttpHeaders.IF_MODIFIED_SINCE, validators[1]).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		assertNotEquals(validators[0], response.getHeaderString(HttpHeaders.ETAG));
+		response.close();
+		return assertNotModified(target);
+	}
+
+	private static String create(WebTarget target, Object entity) {
+		response = target.request().post(Entity.entity(entity, MediaType.APPLICATION_XML));
+		assertEquals("Created", response.getStatusInfo().toString());
+		response.close();
+		return response.getLocation().toString().split("/")[6];
+	}
+
+	private static void update(WebTarget target, Object entity) {
+		response = target.request().put(Entity.entity(entity, MediaType.APPLICATION_XML));
+		assertEquals("OK", response.getStatusInfo().toString());
+		response.close();
+	}
+
+	private static void delete(WebTarget target) {
+		response = target.request().delete();
+		assertEquals("No Content", response.getStatusInfo().toString());
+		response.close();
+	}
+}
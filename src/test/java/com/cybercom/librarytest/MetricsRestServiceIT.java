@@ -0,0 +1,99 @@
+package com.cybercom.librarytest;
+
+import org.junit.Test;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration tests for the metrics REST service.
+ */
+public class MetricsRestServiceIT extends RestServiceIntegrationTest {
+
+	private static WebTarget metrics = client.target(METRICS_URI);
+
+	@Test
+	public void shouldCountRequestsByRouteAndStatus() {
+		long ok = metric("librarytest_http_requests_total{method=\"GET\",route=\"/books/{id}\",status=\"200\"}");
+		long notFound = metric("librarytest_http_requests_total{method=\"GET\",route=\"/books/{id}\",status=\"404\"}");
+
+		response = client.target(BOOK_BASE_URI).path("1").request(MediaType.APPLICATION_XML).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		response.close();
+		response = client.target(BOOK_BASE_URI).path("999999999").request(MediaType.APPLICATION_XML).get();
+		assertEquals("Not Found", response.getStatusInfo().toString());
+		response.close();
+
+		assertEquals(ok + 1, metric("librarytest_http_requests_total{method=\"GET\",route=\"/books/{id}\",status=\"200\"}"));
+		assertEquals(notFound + 1, metric("librarytest_http_requests_total{method=\"GET\",route=\"/books/{id}\",status=\"404\"}"));
+		assertTrue(metric("librarytest_http_request_duration_seconds_count{method=\"GET\",route=\"/books/{id}\"}") >= 2);
+	}
+
+	@Test
+	public void shouldMeasureTheResponseSizes() {
+		long responses = metric("librarytest_http_response_size_bytes_count{method=\"GET\",route=\"/authors/{id}\"}");
+
+		response = client.target(AUTHOR_BASE_URI).path("1").request(MediaType.APPLICATION_XML).get();
+		assertEquals("OK", response.getStatusInfo().toString());
+		response.close();
+
+		assertEquals(responses + 1, metric("librarytest_http_response_size_bytes_count{method=\"GET\",route=\"/authors/{id}\"}"));
+	}
+
+	@Test
+	public void shouldCountARequestThatFailsWithoutAResponse() throws InterruptedException {
+		assertFailedRequestCounted(AUTHOR_BASE_URI, "/authors");
+	}
+
+	@Test
+	public void shouldCountAnAsynchronousRequestThatFailsWithoutAResponse() throws InterruptedException {
+		assertFailedRequestCounted(ASYNC_AUTHOR_BASE_URI, "/async/authors");
+	}
+
+	@Test
+	public void shouldCountTheMetricsRequestInFlight() {
+		assertEquals(1, metric("librarytest_http_requests_in_flight{method=\"GET\",route=\"/metrics\"}"));
+	}
+
+	/**
+	 * POSTs an author without a name, which the database rejects with an 
+	 * exception that no mapper handles, and checks that the 500 response is 
+	 * counted and the request is no longer in flight. The 500 response of 
+	 * an asynchronous request is sent before it is counted, so the counters 
+	 * are read until they change, for up to a second.
+	 */
+	private static void assertFailedRequestCounted(String uri, String route) throws InterruptedException {
+		String errors = "librarytest_http_requests_total{method=\"POST\",route=\"" + route + "\",status=\"500\"}";
+		String inFlight = "librarytest_http_requests_in_flight{method=\"POST\",route=\"" + route + "\"}";
+		long failed = metric(errors);
+
+		response = client.target(uri).request()
+				.post(Entity.entity("<author/>", MediaType.APPLICATION_XML));
+		assertEquals("Internal Server Error", response.getStatusInfo().toString());
+		response.close();
+
+		long deadline = System.currentTimeMillis() + 1000;
+		while (metric(errors) == failed && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(errors, failed + 1, metric(errors));
+		assertEquals(inFlight, 0, metric(inFlight));
+	}
+
+	/**
+	 * Returns the value of the sample, or 0 if there is none yet.
+	 */
+	private static long metric(String sample) {
+		String text = metrics.request().get(String.class);
+		for (String line : text.split("\n")) {
+			if (line.startsWith(sample + " ")) {
+				return Long.parseLong(line.substring(sample.length() + 1).trim());
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,95 @@
+package com.cybercom.librarytest;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.cybercom.librarytest.metrics.RequestMetrics;
+import com.cybercom.librarytest.metrics.RouteMetrics;
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Book;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the query statistics of the {@link QueryProfiler}, run against an
+ * in-memory H2 database.
+ */
+public class QueryProfilerTest {
+
+	private static EntityManagerFactory emf;
+
+	private EntityManager em;
+
+	@BeforeClass
+	public static void setUpPersistenceUnit() {
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:QueryProfilerTest;DB_CLOSE_DELAY=-1");
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("javax.persistence.nonJtaDataSource", h2);
+		properties.put("eclipselink.cache.shared.default", "false");
+		emf = Persistence.createEntityManagerFactory("LibraryPU", properties);
+		TestData.initTestData(emf.createEntityManager());
+	}
+
+	@AfterClass
+	public static void tearDownPersistenceUnit() {
+		emf.close();
+	}
+
+	@Before
+	public void openEntityManager() {
+		em = emf.createEntityManager();
+	}
+
+	@After
+	public void closeEntityManager() {
+		RequestMetrics request = RequestMetrics.current();
+		if (request != null) {
+			request.detach();
+		}
+		em.close();
+	}
+
+	@Test
+	public void shouldCountQueriesByRoute() {
+		RequestMetrics.start(RouteMetrics.of("GET", "/test/books"));
+		List<?> books = em.createNamedQuery(Book.FIND_ALL).getResultList();
+		em.createNamedQuery(Book.FIND_ALL).getResultList();
+		RequestMetrics.start(RouteMetrics.of("GET", "/test/authors/{id}"));
+		assertNotNull(em.find(Author.class, 1L));
+
+		QueryProfiler.Statistics findAll = statistics("GET /test/books", Book.FIND_ALL);
+		assertEquals(2, findAll.getCount());
+		assertEquals(2 * books.size(), findAll.getRows());
+		assertTrue(findAll.getTimeMicros() >= findAll.getMaxTimeMicros());
+		assertEquals(1, statistics("GET /test/authors/{id}", "Author.readObject").getCount());
+	}
+
+	@Test
+	public void shouldCountQueriesOutsideRequestsWithoutOperation() {
+		em.createNamedQuery(Book.FIND_ALL).getResultList();
+		assertTrue(statistics(QueryProfiler.NO_OPERATION, Book.FIND_ALL).getCount() > 0);
+	}
+
+	private static QueryProfiler.Statistics statistics(String operation, String query) {
+		for (QueryProfiler.Statistics statistics : QueryProfiler.getStatistics()) {
+			if (statistics.getOperation().equals(operation) && statistics.getQuery().equals(query)) {
+				return statistics;
+			}
+		}
+		throw new AssertionError("No statistics of " + query + " for " + operation);
+	}
+}
@@ -2,9 +2,15 @@ package com.cybercom.librarytest;
 
 import org.junit.After;
 
+import com.cybercom.librarytest.model.BatchError;
+import com.cybercom.librarytest.model.Isbn;
+
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.core.Response; 
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * Base class for integration tests.
@@ -16,17 +22,49 @@ public abstract class RestServiceIntegrationTest {
 	protected static final String TEST_AUTHOR_NAME_2 = "Author name 2";
 	protected static final String TEST_BOOK_TITLE = "Book title BookAuthorRestServiceIT";
 	protected static final int TEST_BOOK_NBRPAGES = 354;
-	protected static final String TEST_BOOK_ISBN = "1-84023-742-2";
 	protected static final String TEST_BOOK_DESCRIPTION = "Book description";
 	
 	protected static final String BOOK_BASE_URI =
 			"http://localhost:8080/librarytest/rest/books";
 	protected static final String AUTHOR_BASE_URI =
 			"http://localhost:8080/librarytest/rest/authors";
+	protected static final String ADMIN_BASE_URI =
+			"http://localhost:8080/librarytest/rest/admin";
+	protected static final String ASYNC_BOOK_BASE_URI =
+			"http://localhost:8080/librarytest/rest/async/books";
+	protected static final String ASYNC_AUTHOR_BASE_URI =
+			"http://localhost:8080/librarytest/rest/async/authors";
+	protected static final String METRICS_URI =
+			"http://localhost:8080/librarytest/rest/metrics";
 	
 	protected static Client client = ClientBuilder.newClient();
 	protected static Response response;
 	
+	private static final AtomicLong isbnSequence = 
+			new AtomicLong(System.currentTimeMillis() % 1000000000L);
+	
+	/**
+	 * Returns a valid ISBN-13 that no other book created by the tests has, 
+	 * since the service rejects a book with the ISBN of an existing book.
+	 */
+	protected static String uniqueIsbn() {
+		String digits = String.format("979%09d", isbnSequence.incrementAndGet() % 1000000000L);
+		for (int checkDigit = 0; ; checkDigit++) {
+			if (Isbn.isValid(digits + checkDigit)) {
+				return digits + checkDigit;
+			}
+		}
+	}
+	
+	/**
+	 * Asserts that the error of a batch result is for the item at the given 
+	 * position and has the given message.
+	 */
+	protected static void assertError(int index, String message, BatchError error) {
+		assertEquals(Integer.valueOf(index), error.getIndex());
+		assertEquals(message, error.getMessage());
+	}
+	
 	/**
 	 * Closes all open connections. Useful if the test asserted or crashed 
 	 * in the middle of a transaction. 
@@ -0,0 +1,46 @@
+package com.cybercom.librarytest;
+
+import org.junit.Test;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Integration tests for the unit of work of requests, read from the 
+ * EntityManager counters of <code>/admin/persistence</code>. Run it against 
+ * a server without other traffic.
+ */
+public class UnitOfWorkIT extends RestServiceIntegrationTest {
+
+	private static WebTarget persistence = client.target(ADMIN_BASE_URI).path("persistence");
+
+	@Test
+	public void shouldCloseTheEntityManagerOfAFailedRequest() {
+		long open = statistic("entityManagers.open");
+		long leaked = statistic("entityManagers.leaked");
+
+		// POSTs authors without a name, which the database rejects with 500
+		for (int i = 0; i < 3; i++) {
+			response = client.target(AUTHOR_BASE_URI).request()
+					.post(Entity.entity("<author/>", MediaType.APPLICATION_XML));
+			assertEquals("Internal Server Error", response.getStatusInfo().toString());
+			response.close();
+		}
+
+		assertEquals("entityManagers.open", open, statistic("entityManagers.open"));
+		assertEquals("entityManagers.leaked", leaked, statistic("entityManagers.leaked"));
+	}
+
+	private static long statistic(String name) {
+		String statistics = persistence.request(MediaType.TEXT_PLAIN).get(String.class);
+		for (String line : statistics.split("\n")) {
+			if (line.startsWith(name + " ")) {
+				return Long.parseLong(line.substring(line.indexOf(' ') + 1));
+			}
+		}
+		throw new IllegalStateException("No " + name + " in " + statistics);
+	}
+}
@@ -0,0 +1,152 @@
+package com.cybercom.librarytest;
+
+import org.junit.Test;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.Book;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark of the number of SQL statements the write requests of the Book 
+ * REST service execute, read from the statement counter of 
+ * <code>/admin/persistence</code>. Run it against a server without other 
+ * traffic. The tests assert that the counts do not grow with the number 
+ * of authors of the book.
+ */
+public class WriteStatementsIT extends RestServiceIntegrationTest {
+
+	private static final int MAX_AUTHORS = 5;
+	
+	private static WebTarget books = client.target(BOOK_BASE_URI);
+	private static WebTarget authors = client.target(AUTHOR_BASE_URI);
+	private static WebTarget persistence = client.target(ADMIN_BASE_URI).path("persistence");
+
+	@Test
+	public void shouldCheckTheAuthorsOfABookWithOneQuery() {
+		List<Author> authorsOfBook = new ArrayList<>();
+		for (int i = 1; i <= MAX_AUTHORS; i++) {
+			authorsOfBook.add(createAuthor(TEST_AUTHOR_NAME_1 + " " + i));
+		}
+		
+		long[] createStatements = new long[MAX_AUTHORS + 1];
+		long[] updateStatements = new long[MAX_AUTHORS + 1];
+		for (int n = 1; n <= MAX_AUTHORS; n++) {
+			Book book = new Book(TEST_BOOK_TITLE, TEST_BOOK_DESCRIPTION, 
+					uniqueIsbn(), TEST_BOOK_NBRPAGES);
+			book.getAuthors().addAll(authorsOfBook.subList(0, n));
+			
+			// POSTs (creates) the book, counting the statements
+			long before = statementsExecuted();
+			response = books.request().post(Entity.entity(book, MediaType.APPLICATION_XML));
+			assertEquals("Created", response.getStatusInfo().toString());
+			URI bookURI = response.getLocation();
+			response.close();
+			createStatements[n] = statementsExecuted() - before;
+			
+			// PUTs (updates) the book, counting the statements
+			Long bookId = Long.parseLong(bookURI.toString().split("/")[6]);
+			Book updatedBook = new Book(bookId, TEST_BOOK_TITLE, TEST_BOOK_DESCRIPTION, 
+					uniqueIsbn(), TEST_BOOK_NBRPAGES);
+			updatedBook.getAuthors().addAll(authorsOfBook.subList(0, n));
+			before = statementsExecuted();
+			response = books.request().put(Entity.entity(updatedBook, MediaType.APPLICATION_XML));
+			assertEquals("OK", response.getStatusInfo().toString());
+			response.close();
+			updateStatements[n] = statementsExecuted() - before;
+			
+			response = books.path(String.valueOf(bookId)).request().delete();
+			response.close();
+		}
+		
+		assertEquals("Statements of createBook with 1 and " + MAX_AUTHORS + " authors", 
+				createStatements[1], createStatements[MAX_AUTHORS]);
+		assertEquals("Statements of updateBook with 1 and " + MAX_AUTHORS + " authors", 
+				updateStatements[1], updateStatements[MAX_AUTHORS]);
+	}
+	
+	@Test
+	public void shouldWriteOnlyTheChangedAuthorsOfABook() {
+		List<Author> authorsOfBook = new ArrayList<>();
+		for (int i = 1; i <= MAX_AUTHORS; i++) {
+			authorsOfBook.add(createAuthor(TEST_AUTHOR_NAME_1 + " " + i));
+		}
+		Author newAuthor = createAuthor(TEST_AUTHOR_NAME_2);
+		
+		long[] replaceStatements = new long[MAX_AUTHORS + 1];
+		long[] unchangedStatements = new long[MAX_AUTHORS + 1];
+		for (int n = 1; n <= MAX_AUTHORS; n++) {
+			Book book = new Book(TEST_BOOK_TITLE, TEST_BOOK_DESCRIPTION, 
+					uniqueIsbn(), TEST_BOOK_NBRPAGES);
+			book.getAuthors().addAll(authorsOfBook.subList(0, n));
+			response = books.request().post(Entity.entity(book, MediaType.APPLICATION_XML));
+			assertEquals("Created", response.getStatusInfo().toString());
+			String bookId = response.getLocation().toString().split("/")[6];
+			response.close();
+			
+			// Replaces the last author, counting the statements
+			Authors replaced = new Authors(new ArrayList<>(authorsOfBook.subList(0, n - 1)));
+			replaced.add(newAuthor);
+			long before = statementsExecuted();
+			response = books.path(bookId).path("authors").request()
+					.put(Entity.entity(replaced, MediaType.APPLICATION_XML));
+			assertEquals("OK", response.getStatusInfo().toString());
+			response.close();
+			replaceStatements[n] = statementsExecuted() - before;
+			
+			// PUTs the same authors again, counting the statements
+			before = statementsExecuted();
+			response = books.path(bookId).path("authors").request()
+					.put(Entity.entity(replaced, MediaType.APPLICATION_XML));
+			assertEquals("OK", response.getStatusInfo().toString());
+			response.close();
+			unchangedStatements[n] = statementsExecuted() - before;
+			
+			response = books.path(bookId).request().get();
+			assertEquals(n, response.readEntity(Book.class).getAuthors().size());
+			response.close();
+			response = books.path(bookId).request().delete();
+			response.close();
+		}
+		
+		assertEquals("Statements of replacing one of 1 and of " + MAX_AUTHORS + " authors", 
+				replaceStatements[1], replaceStatements[MAX_AUTHORS]);
+		assertEquals("Statements of an unchanged list of 1 and of " + MAX_AUTHORS + " authors", 
+				unchangedStatements[1], unchangedStatements[MAX_AUTHORS]);
+		assertTrue("An unchanged list took " + unchangedStatements[MAX_AUTHORS] 
+				+ " statements, replacing one author " + replaceStatements[MAX_AUTHORS], 
+				unchangedStatements[MAX_AUTHORS] < replaceStatements[MAX_AUTHORS]);
+	}
+	
+	private Author createAuthor(String name) {
+		response = authors.request()
+				.post(Entity.entity(new Author(name), MediaType.APPLICATION_XML));
+		assertEquals("Created", response.getStatusInfo().toString());
+		Long id = Long.parseLong(response.getLocation().toString().split("/")[6]);
+		response.close();
+		return new Author(id, name);
+	}
+	
+	/**
+	 * Reads the number of statements executed by the server so far.
+	 */
+	private long statementsExecuted() {
+		String statistics = persistence.request(MediaType.TEXT_PLAIN).get(String.class);
+		for (String line : statistics.split("\n")) {
+			if (line.startsWith("statements.executed ")) {
+				return Long.parseLong(line.substring(line.indexOf(' ') + 1));
+			}
+		}
+		throw new IllegalStateException("No statement count in " + statistics);
+	}
+}
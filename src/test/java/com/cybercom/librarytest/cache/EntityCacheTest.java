@@ -0,0 +1,78 @@
+package com.cybercom.librarytest.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for the cache of detached entities.
+ */
+public class EntityCacheTest {
+
+	@Test
+	public void shouldEvictTheLeastRecentlyUsedEntities() {
+		EntityCache<String> cache = new EntityCache<>("test", 2, 1, TimeUnit.HOURS);
+		cache.put(1L, "one", cache.generation());
+		cache.put(2L, "two", cache.generation());
+		assertEquals("one", cache.get(1L));
+		cache.put(3L, "three", cache.generation());
+		assertEquals("one", cache.get(1L));
+		assertNull(cache.get(2L));
+		assertEquals("three", cache.get(3L));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void shouldExpireEntitiesAfterTheirTimeToLive() throws InterruptedException {
+		EntityCache<String> cache = new EntityCache<>("test", 10, 1, TimeUnit.MILLISECONDS);
+		cache.put(1L, "one", cache.generation());
+		Thread.sleep(10);
+		assertNull(cache.get(1L));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void shouldCountHitsAndMisses() {
+		EntityCache<String> cache = new EntityCache<>("test", 10, 1, TimeUnit.HOURS);
+		assertNull(cache.get(1L));
+		cache.put(1L, "one", cache.generation());
+		assertEquals("one", cache.get(1L));
+		assertEquals("one", cache.get(1L));
+		assertNull(cache.get(2L));
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.getEvictions());
+	}
+
+	@Test
+	public void shouldNotCacheAnEntityReadBeforeAnInvalidation() {
+		EntityCache<String> cache = new EntityCache<>("test", 10, 1, TimeUnit.HOURS);
+		cache.put(1L, "one", cache.generation());
+		long generation = cache.generation();
+		cache.invalidate(1L);
+		assertNull(cache.get(1L));
+		cache.put(1L, "stale", generation);
+		assertNull(cache.get(1L));
+
+		generation = cache.generation();
+		cache.clear();
+		cache.put(2L, "stale", generation);
+		assertEquals(0, cache.size());
+		cache.put(2L, "two", cache.generation());
+		assertEquals("two", cache.get(2L));
+	}
+
+	@Test
+	public void shouldNotCacheAnythingWithSizeZero() {
+		EntityCache<String> cache = new EntityCache<>("test", 0, 1, TimeUnit.HOURS);
+		cache.put(1L, "one", cache.generation());
+		assertNull(cache.get(1L));
+		assertEquals(0, cache.size());
+	}
+}
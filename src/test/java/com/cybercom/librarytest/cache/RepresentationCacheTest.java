@@ -0,0 +1,90 @@
+package com.cybercom.librarytest.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cybercom.librarytest.cache.RepresentationCache.Representation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for the cache of encoded responses.
+ */
+public class RepresentationCacheTest {
+
+	private RepresentationCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new RepresentationCache("test", 100);
+	}
+
+	@Test
+	public void shouldCacheEachVariantOfAVersion() {
+		Representation xml = representation(10);
+		Representation json = representation(20);
+		cache.put(1L, 5, "xml", xml, cache.generation());
+		cache.put(1L, 5, "json", json, cache.generation());
+		assertSame(xml, cache.get(1L, 5, "xml"));
+		assertSame(json, cache.get(1L, 5, "json"));
+		assertNull(cache.get(1L, 5, "binary"));
+		assertNull(cache.get(1L, 4, "xml"));
+		assertEquals(30, cache.getBytes());
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void shouldReplaceTheRepresentationsOfAnOlderVersion() {
+		cache.put(1L, 5, "xml", representation(10), cache.generation());
+		cache.put(1L, 5, "json", representation(20), cache.generation());
+		cache.put(1L, 6, "xml", representation(15), cache.generation());
+		assertNull(cache.get(1L, 5, "json"));
+		assertNotNull(cache.get(1L, 6, "xml"));
+		assertEquals(15, cache.getBytes());
+
+		cache.put(1L, 5, "json", representation(20), cache.generation());
+		assertNull(cache.get(1L, 5, "json"));
+		assertEquals(15, cache.getBytes());
+	}
+
+	@Test
+	public void shouldEvictTheLeastRecentlyUsedEntitiesBeyondTheMaximumSize() {
+		cache.put(1L, 1, "xml", representation(40), cache.generation());
+		cache.put(2L, 1, "xml", representation(40), cache.generation());
+		cache.get(1L, 1, "xml");
+		cache.put(3L, 1, "xml", representation(40), cache.generation());
+		assertNotNull(cache.get(1L, 1, "xml"));
+		assertNull(cache.get(2L, 1, "xml"));
+		assertNotNull(cache.get(3L, 1, "xml"));
+		assertEquals(80, cache.getBytes());
+		assertEquals(1, cache.getEvictions());
+
+		cache.put(4L, 1, "xml", representation(101), cache.generation());
+		assertNull(cache.get(4L, 1, "xml"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void shouldNotCacheARepresentationReadBeforeAnInvalidation() {
+		cache.put(1L, 1, "xml", representation(10), cache.generation());
+		long generation = cache.generation();
+		cache.invalidate(1L);
+		assertNull(cache.get(1L, 1, "xml"));
+		assertEquals(0, cache.getBytes());
+		cache.put(1L, 1, "xml", representation(10), generation);
+		assertNull(cache.get(1L, 1, "xml"));
+
+		cache.put(1L, 1, "xml", representation(10), cache.generation());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+	}
+
+	private static Representation representation(int size) {
+		return new Representation(new byte[size], null);
+	}
+}
@@ -0,0 +1,66 @@
+package com.cybercom.librarytest.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the latency histogram.
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void shouldPutEveryValueInABucketBoundingIt() {
+		int previous = -1;
+		for (long micros = 0; micros < 1L << 20; micros++) {
+			int index = LatencyHistogram.index(micros);
+			assertTrue(index == previous || index == previous + 1);
+			assertTrue(micros <= LatencyHistogram.upperBound(index));
+			assertTrue(index == 0 || micros > LatencyHistogram.upperBound(index - 1));
+			previous = index;
+		}
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(LatencyHistogram.MAX_MICROS));
+		assertEquals(LatencyHistogram.MAX_MICROS,
+				LatencyHistogram.upperBound(LatencyHistogram.BUCKETS - 1));
+	}
+
+	@Test
+	public void shouldKeepTheRelativeErrorSmall() {
+		for (long micros = 1; micros < LatencyHistogram.MAX_MICROS; micros = micros * 3 + 1) {
+			long bound = LatencyHistogram.upperBound(LatencyHistogram.index(micros));
+			assertTrue(micros + " -> " + bound, bound - micros <= micros / LatencyHistogram.SUB_BUCKETS);
+		}
+	}
+
+	@Test
+	public void shouldReturnQuantiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getQuantileMicros(0.5));
+		for (int millis = 1; millis <= 1000; millis++) {
+			histogram.record(millis, TimeUnit.MILLISECONDS);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500000L, histogram.getTotalMicros());
+		assertEquals(1000000, histogram.getMaxMicros());
+		assertWithin(500000, histogram.getQuantileMicros(0.5));
+		assertWithin(990000, histogram.getQuantileMicros(0.99));
+		assertEquals(1000000, histogram.getQuantileMicros(1));
+	}
+
+	@Test
+	public void shouldClampValuesOutOfRange() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(100, TimeUnit.NANOSECONDS);
+		histogram.record(1000, TimeUnit.DAYS);
+		assertEquals(0, histogram.getQuantileMicros(0.5));
+		assertEquals(LatencyHistogram.MAX_MICROS, histogram.getMaxMicros());
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(expected + " ~ " + actual,
+				actual >= expected && actual - expected <= expected / LatencyHistogram.SUB_BUCKETS);
+	}
+}
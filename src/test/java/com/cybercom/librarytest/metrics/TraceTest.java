@@ -0,0 +1,60 @@
+package com.cybercom.librarytest.metrics;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the spans of a trace.
+ */
+public class TraceTest {
+
+	@Test
+	public void shouldNestSpans() {
+		Trace trace = new Trace("GET /books");
+		Trace.Span resource = trace.open("resource");
+		Trace.Span query = trace.open("query");
+		trace.close("sql");
+		trace.close("query");
+		trace.close(resource);
+		trace.open("write");
+
+		List<Trace.Span> spans = trace.getSpans();
+		assertEquals(3, spans.size());
+		assertEquals("resource", spans.get(0).getName());
+		assertEquals(1, spans.get(0).getDepth());
+		assertEquals(2, spans.get(1).getDepth());
+		assertTrue(spans.get(1).getDurationMicros() >= 0);
+		assertTrue(query.getStartMicros() >= resource.getStartMicros());
+		assertEquals(1, spans.get(2).getDepth());
+		assertEquals(-1, spans.get(2).getDurationMicros());
+	}
+
+	@Test
+	public void shouldResumeTheLastSpanWithTheSameDetails() {
+		Trace trace = new Trace("GET /books");
+		Trace.Span sql = trace.reopen("sql", "SELECT 1");
+		trace.close("sql");
+		assertSame(sql, trace.reopen("sql", "SELECT 1"));
+		trace.close("sql");
+		trace.reopen("sql", "SELECT 2");
+		trace.close("sql");
+
+		List<Trace.Span> spans = trace.getSpans();
+		assertEquals(2, spans.size());
+		assertEquals("SELECT 1", spans.get(0).getDetail());
+		assertEquals("SELECT 2", spans.get(1).getDetail());
+	}
+
+	@Test
+	public void shouldNotTraceWhenSamplingIsOff() {
+		assertEquals(0, Trace.getSampleRate(), 0);
+		assertNull(Trace.sample("GET /books"));
+		assertNull(Trace.begin("resource"));
+	}
+}
@@ -0,0 +1,32 @@
+package com.cybercom.librarytest.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for the normalization of ISBNs.
+ */
+public class IsbnTest {
+
+	@Test
+	public void shouldGiveAnIsbn10AndItsIsbn13TheSameKey() {
+		assertEquals("9780575048003", Isbn.toKey("0-575-04800-X"));
+		assertEquals("9780575048003", Isbn.toKey("057504800x"));
+		assertEquals("9780575048003", Isbn.toKey("978-0-575-04800-3"));
+		assertEquals("9780575048003", Isbn.toKey("978 0575 04800 3"));
+	}
+
+	@Test
+	public void shouldRejectInvalidIsbns() {
+		assertNull(Isbn.toKey(null));
+		assertNull(Isbn.toKey(""));
+		assertNull(Isbn.toKey("0-575-04800-1"));
+		assertNull(Isbn.toKey("978-0-575-04800-4"));
+		assertNull(Isbn.toKey("0-575-0480-X"));
+		assertNull(Isbn.toKey("978-0-575-04800-3-1"));
+		assertNull(Isbn.toKey("X-575-04800-0"));
+		assertNull(Isbn.toKey("ISBN 0-575-04800-X"));
+	}
+}
@@ -0,0 +1,141 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.jboss.resteasy.spi.BadRequestException;
+import org.junit.Test;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.BookSummaries;
+import com.cybercom.librarytest.model.BookSummary;
+import com.cybercom.librarytest.model.Books;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the binary media type.
+ */
+public class BinaryProviderTest {
+
+	private final BinaryProvider provider = new BinaryProvider();
+
+	@Test
+	public void shouldReadTheBookItWrote() throws IOException {
+		Book book = new Book(12L, "Caf\u00e9 \u6771\u4eac \ud83d\udcda", "Description",
+				"978-0-575-04800-3", 354);
+		book.getAuthors().add(new Author(3L, "Author name 1"));
+		book.getAuthors().add(new Author(null, "Author name 2"));
+
+		Book read = (Book)read(Book.class, write(book));
+
+		assertEquals(book.getId(), read.getId());
+		assertEquals(book.getTitle(), read.getTitle());
+		assertEquals(book.getDescription(), read.getDescription());
+		assertEquals(book.getIsbn(), read.getIsbn());
+		assertEquals(book.getIsbnKey(), read.getIsbnKey());
+		assertEquals(book.getNbOfPage(), read.getNbOfPage());
+		assertEquals(2, read.getAuthors().size());
+		assertEquals(book.getAuthors().get(0), read.getAuthors().get(0));
+		assertNull(read.getAuthors().get(1).getId());
+		assertEquals("Author name 2", read.getAuthors().get(1).getName());
+	}
+
+	@Test
+	public void shouldLeaveOutNullProperties() throws IOException {
+		byte[] bytes = write(new Book(null, "T", null, null, null));
+		assertEquals(5, bytes.length);
+
+		Book read = (Book)read(Book.class, bytes);
+		assertNull(read.getId());
+		assertEquals("T", read.getTitle());
+		assertNull(read.getDescription());
+		assertNull(read.getNbOfPage());
+		assertTrue(read.getAuthors().isEmpty());
+	}
+
+	@Test
+	public void shouldReadTheListsItWrote() throws IOException {
+		char[] longTitle = new char[20000];
+		Arrays.fill(longTitle, '\u00e9');
+		Books books = new Books();
+		books.add(new Book(1L, new String(longTitle), null, null, -1));
+		books.add(new Book(Long.MAX_VALUE, "Title", "Description", null, Integer.MAX_VALUE));
+		Authors authors = new Authors(Arrays.asList(new Author(1L, "A"), new Author(2L, "B")));
+
+		Books readBooks = (Books)read(Books.class, write(books));
+		Authors readAuthors = (Authors)read(Authors.class, write(authors));
+
+		assertEquals(2, readBooks.size());
+		assertEquals(books.get(0).getTitle(), readBooks.get(0).getTitle());
+		assertEquals(Integer.valueOf(-1), readBooks.get(0).getNbOfPage());
+		assertEquals(Long.valueOf(Long.MAX_VALUE), readBooks.get(1).getId());
+		assertEquals(Integer.valueOf(Integer.MAX_VALUE), readBooks.get(1).getNbOfPage());
+		assertEquals(authors, readAuthors);
+		assertTrue(((Books)read(Books.class, write(new Books()))).isEmpty());
+	}
+
+	@Test
+	public void shouldWriteSummariesAsBooks() throws IOException {
+		BookSummary summary = new BookSummary(5L, "Title", "978-0-575-04800-3", 100);
+		summary.getAuthors().add(new Author(3L, "Author"));
+		BookSummaries summaries = new BookSummaries(Arrays.asList(summary));
+
+		Books read = (Books)read(Books.class, write(summaries));
+
+		assertEquals(1, read.size());
+		assertEquals(Long.valueOf(5), read.get(0).getId());
+		assertNull(read.get(0).getDescription());
+		assertEquals("Author", read.get(0).getAuthors().get(0).getName());
+	}
+
+	@Test
+	public void shouldRejectMalformedMessages() throws IOException {
+		byte[] book = write(new Book(1L, "Title", null, null, null));
+		assertMalformed(Author.class, book);
+		assertMalformed(Book.class, Arrays.copyOf(book, book.length - 1));
+		assertMalformed(Book.class, Arrays.copyOf(book, book.length + 1));
+		assertMalformed(Book.class, new byte[0]);
+		assertMalformed(Book.class, new byte[] {BinaryProvider.BOOK, (byte)0x80, 0});
+		assertMalformed(Author.class, new byte[] {BinaryProvider.AUTHOR, 2, (byte)0xff, (byte)0xff, 0x7f});
+		assertMalformed(Books.class, new byte[] {BinaryProvider.BOOKS, 2});
+	}
+
+	@Test
+	public void shouldOnlyHandleTheModelClasses() {
+		assertTrue(provider.isReadable(Books.class, null, null, BinaryProvider.MEDIA_TYPE_TYPE));
+		assertFalse(provider.isReadable(BookSummaries.class, null, null, BinaryProvider.MEDIA_TYPE_TYPE));
+		assertTrue(provider.isWriteable(BookSummaries.class, null, null, BinaryProvider.MEDIA_TYPE_TYPE));
+		assertFalse(provider.isWriteable(String.class, null, null, BinaryProvider.MEDIA_TYPE_TYPE));
+	}
+
+	private void assertMalformed(Class<?> type, byte[] bytes) throws IOException {
+		try {
+			read(type, bytes);
+			fail("Read a malformed " + type.getSimpleName());
+		} catch (BadRequestException e) {
+			assertTrue(e.getMessage().startsWith("Malformed binary entity"));
+		}
+	}
+
+	private byte[] write(Object entity) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		provider.writeTo(entity, entity.getClass(), null, null,
+				BinaryProvider.MEDIA_TYPE_TYPE, null, output);
+		return output.toByteArray();
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Object read(Class<?> type, byte[] bytes) throws IOException {
+		return provider.readFrom((Class)type, null, null, BinaryProvider.MEDIA_TYPE_TYPE,
+				null, new ByteArrayInputStream(bytes));
+	}
+}
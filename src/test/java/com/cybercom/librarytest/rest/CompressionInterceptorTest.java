@@ -0,0 +1,118 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the content negotiation and the output stream of the
+ * compression interceptor.
+ */
+public class CompressionInterceptorTest {
+
+	@Test
+	public void shouldNegotiateTheEncodingWithTheHighestQuality() {
+		assertNull(CompressionInterceptor.negotiate(null));
+		assertNull(CompressionInterceptor.negotiate(Collections.singletonList("identity")));
+		assertNull(CompressionInterceptor.negotiate(Collections.singletonList("gzip;q=0, deflate;q=0")));
+		assertNull(CompressionInterceptor.negotiate(Collections.singletonList("*;q=0")));
+		assertEquals("gzip", CompressionInterceptor.negotiate(Collections.singletonList("gzip, deflate")));
+		assertEquals("gzip", CompressionInterceptor.negotiate(Collections.singletonList("*")));
+		assertEquals("gzip", CompressionInterceptor.negotiate(Collections.singletonList("x-gzip")));
+		assertEquals("deflate", CompressionInterceptor.negotiate(Collections.singletonList("deflate")));
+		assertEquals("deflate", CompressionInterceptor.negotiate(Collections.singletonList("gzip;q=0.5, deflate")));
+		assertEquals("deflate", CompressionInterceptor.negotiate(Collections.singletonList("GZIP;q=0, *")));
+		assertEquals("deflate", CompressionInterceptor.negotiate(Arrays.asList("br", "deflate;q=0.8")));
+	}
+
+	@Test
+	public void shouldWriteSmallBodiesUncompressed() throws IOException {
+		byte[] body = body(100);
+		MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		CompressionInterceptor.CompressingOutputStream stream =
+				new CompressionInterceptor.CompressingOutputStream(output, "gzip", 1024, headers);
+		stream.write(body);
+		stream.finish();
+		stream.release();
+
+		assertFalse(stream.isCompressed());
+		assertFalse(headers.containsKey(HttpHeaders.CONTENT_ENCODING));
+		assertArrayEquals(body, output.toByteArray());
+	}
+
+	@Test
+	public void shouldGzipBodiesAboveTheThreshold() throws IOException {
+		byte[] body = body(100000);
+		MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+		headers.putSingle(HttpHeaders.CONTENT_LENGTH, body.length);
+		byte[] compressed = compress(body, "gzip", headers);
+
+		assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertFalse(headers.containsKey(HttpHeaders.CONTENT_LENGTH));
+		assertTrue(compressed.length < body.length / 4);
+		assertArrayEquals(body, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+	}
+
+	@Test
+	public void shouldDeflateBodiesAboveTheThresholdWithPooledDeflaters() throws IOException {
+		byte[] body = body(5000);
+		MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+		compress(body, "deflate", headers);
+		int idle = DeflaterPool.DEFLATE.idle();
+		assertTrue(idle > 0);
+		byte[] compressed = compress(body, "deflate", headers);
+
+		assertEquals(idle, DeflaterPool.DEFLATE.idle());
+		assertEquals("deflate", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertArrayEquals(body, readAll(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+	}
+
+	private static byte[] compress(byte[] body, String encoding, MultivaluedMap<String, Object> headers)
+			throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		CompressionInterceptor.CompressingOutputStream stream =
+				new CompressionInterceptor.CompressingOutputStream(output, encoding, 1024, headers);
+		for (int offset = 0; offset < body.length; offset += 700) {
+			stream.write(body, offset, Math.min(700, body.length - offset));
+		}
+		stream.finish();
+		stream.release();
+		assertTrue(stream.isCompressed());
+		return output.toByteArray();
+	}
+
+	private static byte[] body(int length) {
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; body.length() < length; i++) {
+			body.append("<book><id>").append(i).append("</id><title>Title ").append(i).append("</title></book>");
+		}
+		return body.substring(0, length).getBytes();
+	}
+
+	private static byte[] readAll(InputStream input) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int n; (n = input.read(buffer)) > 0;) {
+			output.write(buffer, 0, n);
+		}
+		return output.toByteArray();
+	}
+}
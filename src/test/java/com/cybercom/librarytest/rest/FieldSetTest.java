@@ -0,0 +1,64 @@
+package com.cybercom.librarytest.rest;
+
+import org.jboss.resteasy.spi.BadRequestException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for sparse fieldsets.
+ */
+public class FieldSetTest {
+
+	private static final FieldSet BOOK = BookRestService.BOOK_FIELDS;
+
+	@Test
+	public void shouldRequestAllFieldsWithoutParameter() {
+		assertTrue(BOOK.parse(null).isAll());
+		assertTrue(BOOK.parse(" ").isAll());
+		assertTrue(BOOK.parse("id,title,description,isbn,nbOfPage,author").isAll());
+	}
+
+	@Test
+	public void shouldSelectTheIdAndTheRequestedColumns() {
+		FieldSet fields = BOOK.parse("nbOfPage, title");
+		assertTrue(fields.hasColumnsOnly());
+		assertEquals("b.id, b.title, b.nbrPages", fields.select("b"));
+		Object[] row = {7L, "Coraline", 162};
+		assertEquals(Long.valueOf(7), FieldSet.idOf(row));
+		assertNull(fields.value(row, "id"));
+		assertEquals("Coraline", fields.value(row, "title"));
+		assertEquals(162, fields.value(row, "nbOfPage"));
+		assertNull(fields.value(row, "isbn"));
+	}
+
+	@Test
+	public void shouldReadASingleColumnRow() {
+		FieldSet fields = BOOK.parse("id");
+		assertEquals("b.id", fields.select("b"));
+		assertEquals(Long.valueOf(7), fields.value(7L, "id"));
+		assertEquals(Long.valueOf(7), FieldSet.idOf(7L));
+	}
+
+	@Test
+	public void shouldNotProjectCollections() {
+		FieldSet fields = BOOK.parse("title,author");
+		assertFalse(fields.hasColumnsOnly());
+		assertTrue(fields.contains("author"));
+		assertFalse(fields.contains("isbn"));
+	}
+
+	@Test
+	public void shouldTellFieldSetsApartInTags() {
+		assertFalse(BOOK.parse("id").tag().equals(BOOK.parse("title").tag()));
+		assertEquals(BOOK.parse("id,title").tag(), BOOK.parse("title,id").tag());
+	}
+
+	@Test(expected = BadRequestException.class)
+	public void shouldRejectUnknownFields() {
+		BOOK.parse("id,price");
+	}
+}
@@ -0,0 +1,254 @@
+package com.cybercom.librarytest.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+
+import org.jboss.resteasy.plugins.providers.RegisterBuiltin;
+import org.jboss.resteasy.spi.BadRequestException;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.cybercom.librarytest.model.Author;
+import com.cybercom.librarytest.model.Authors;
+import com.cybercom.librarytest.model.BatchError;
+import com.cybercom.librarytest.model.BatchResult;
+import com.cybercom.librarytest.model.Book;
+import com.cybercom.librarytest.model.BookSummaries;
+import com.cybercom.librarytest.model.BookSummary;
+import com.cybercom.librarytest.model.Books;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the JSON provider, which must read and write the same JSON
+ * as the Jettison provider of RESTEasy.
+ */
+public class JsonProviderTest {
+
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+	private static ResteasyProviderFactory jettison;
+
+	private final JsonProvider provider = new JsonProvider();
+
+	@BeforeClass
+	public static void setUpJettison() {
+		jettison = new ResteasyProviderFactory();
+		RegisterBuiltin.register(jettison);
+		ResteasyProviderFactory.pushContext(Providers.class, jettison);
+	}
+
+	@AfterClass
+	public static void tearDownJettison() {
+		ResteasyProviderFactory.clearContextData();
+	}
+
+	@Test
+	public void shouldWriteTheSameJsonAsJettison() throws IOException {
+		List<Object> entities = new ArrayList<>();
+		for (String text : new String[] {"1984", "007", "-0", "-5", "+1", "1.0", "100.0", "-0.0",
+				"1.50", "1.0E10", "1.0E-4", "1e5", "9223372036854775807", "9223372036854775808",
+				"true", "TRUE", "false", "null", "NaN", "Infinity", "", " ", " 12",
+				"a\"b\\c/d</e", "\b\t\n\f\r\u0000\u001f\u007f", "Caf\u00e9 \u6771\u4eac \u2028 \ud83d\udcda",
+				"\ud800x", "978-0-575-04800-3"}) {
+			entities.add(new Author(5L, text));
+			entities.add(new Book(1L, text, text, text, 3));
+		}
+		entities.add(new Book());
+		entities.add(new Author());
+		Book book = new Book(1L, "Title", null, "0-575-04800-X", 288);
+		book.getAuthors().add(new Author(2L, "Terry Pratchett"));
+		entities.add(book);
+		Book twoAuthors = new Book(1L, "Title", "Description", null, null);
+		twoAuthors.getAuthors().add(new Author(2L, "Terry Pratchett"));
+		twoAuthors.getAuthors().add(null);
+		twoAuthors.getAuthors().add(new Author());
+		entities.add(twoAuthors);
+		entities.add(new Books());
+		entities.add(new Books(Arrays.asList(book)));
+		entities.add(new Books(Arrays.asList(book, twoAuthors, new Book())));
+		entities.add(new Authors());
+		entities.add(new Authors(Arrays.asList(new Author(1L, "A"))));
+		entities.add(new Authors(Arrays.asList(new Author(1L, "A"), new Author(2L, "B"))));
+		BookSummary summary = new BookSummary(7L, "Title", "978-0-575-04800-3", 100);
+		summary.getAuthors().add(new Author(3L, "Author"));
+		entities.add(summary);
+		entities.add(new BookSummaries(Arrays.asList(summary, new BookSummary(8L, "1", null, null))));
+		BatchResult result = new BatchResult();
+		entities.add(result);
+		result = new BatchResult();
+		result.getCreated().add(4L);
+		result.getErrors().add(new BatchError(1, "Book was null."));
+		entities.add(result);
+		result = new BatchResult();
+		result.getCreated().addAll(Arrays.asList(4L, 5L));
+		result.getErrors().add(new BatchError(1, null));
+		result.getErrors().add(new BatchError(2, "Another book has the same ISBN."));
+		entities.add(result);
+
+		for (Object entity : entities) {
+			assertEquals(writeWithJettison(entity), write(entity));
+		}
+	}
+
+	@Test
+	public void shouldStreamListsInTheSameShapeAsJettison() throws IOException {
+		Book book = new Book(1L, "Title", null, "0-575-04800-X", 288);
+		book.getAuthors().add(new Author(2L, "Terry Pratchett"));
+		List<List<Book>> lists = Arrays.asList(Arrays.<Book>asList(), Arrays.asList(book),
+				Arrays.asList(book, new Book(2L, "Other", "D", null, 3)));
+		for (List<Book> list : lists) {
+			assertEquals(writeWithJettison(new Books(list)), stream(list));
+		}
+	}
+
+	@Test
+	public void shouldReadWhatJettisonReads() throws IOException {
+		String[] books = {
+			"{\"book\":{\"author\":[{\"id\":2,\"name\":\"N\"},{\"id\":3,\"name\":\"M\"}],"
+					+ "\"description\":\"D\",\"id\":1,\"isbn\":\"978-0-575-04800-3\",\"nbOfPage\":3,\"title\":1984}}",
+			"{\"book\":{\"id\":\"7\",\"title\":12,\"nbOfPage\":\" 12 \",\"author\":{\"name\":\"x\"}}}",
+			"{\"book\":{\"id\":7,\"author\":[\"\",{\"name\":\"y\"}],\"x\":{\"a\":[1,{}]}}}",
+			"  { \"book\" : { \"title\" : \"x\\/y\\u00e9\\ud83d\\udcda\\\"\\n\" } } trailing",
+			"{\"book\":{\"id\":\"abc\",\"nbOfPage\":1e2,\"title\":1.50,\"isbn\":null}}",
+			"{\"book\":{\"title\":\"a\",\"title\":[\"b\",\"c\"],\"description\":{\"x\":1}}}",
+			"{\"book\":{\"author\":{\"name\":\"a\"},\"author\":{\"name\":\"b\"},\"id\":true}}",
+			"{\"book\":{}}", "{\"book\":\"\"}", "{\"book\":[{\"title\":\"a\"}]}",
+		};
+		for (String json : books) {
+			Book expected = (Book)readWithJettison(Book.class, json);
+			Book actual = (Book)read(Book.class, json);
+			assertEquals(json, describe(expected), describe(actual));
+		}
+		String[] lists = {
+			"{\"books\":\"\"}", "{\"books\":{}}", "{\"books\":[]}",
+			"{\"books\":{\"book\":{\"id\":1}}}", "{\"books\":{\"book\":[{\"id\":1},\"\",{\"id\":2}]}}",
+		};
+		for (String json : lists) {
+			Books expected = (Books)readWithJettison(Books.class, json);
+			Books actual = (Books)read(Books.class, json);
+			assertEquals(json, expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(json, describe(expected.get(i)), describe(actual.get(i)));
+			}
+		}
+		Authors authors = (Authors)read(Authors.class,
+				"{\"authors\":{\"author\":[{\"id\":1,\"name\":\"A\"},{\"id\":2,\"name\":true}]}}");
+		assertEquals(Arrays.asList(new Author(1L, "A"), new Author(2L, "true")), authors);
+	}
+
+	@Test
+	public void shouldConvertOnlyTheStringFormsOfNumbersAndBooleans() {
+		assertEquals("354", JsonOutput.primitive("354"));
+		assertEquals("-5", JsonOutput.primitive("-5"));
+		assertEquals("100", JsonOutput.primitive("100.0"));
+		assertEquals("1.5", JsonOutput.primitive("1.5"));
+		assertEquals("1.0E10", JsonOutput.primitive("1.0E10"));
+		assertEquals("true", JsonOutput.primitive("true"));
+		assertNull(JsonOutput.primitive("0354"));
+		assertNull(JsonOutput.primitive("1.50"));
+		assertNull(JsonOutput.primitive("1e3"));
+		assertNull(JsonOutput.primitive("TRUE"));
+		assertNull(JsonOutput.primitive("978-0-575-04800-3"));
+		assertNull(JsonOutput.primitive(""));
+	}
+
+	@Test
+	public void shouldRejectMalformedJson() throws IOException {
+		for (String json : new String[] {"", "[]", "{\"author\":{}}",
+				"{\"book\":{\"title\":\"a}}", "{\"book\":{\"title\" \"a\"}}", "{\"book\":{\"title\":}}",
+				"{\"book\":{\"title\":\"\\u00g9\"}}"}) {
+			try {
+				read(Book.class, json);
+				fail("Read " + json);
+			} catch (BadRequestException e) {
+				assertTrue(e.getMessage().startsWith("Malformed JSON entity"));
+			}
+		}
+	}
+
+	private static String describe(Book book) {
+		StringBuilder description = new StringBuilder();
+		description.append(book.getId()).append('|').append(book.getTitle()).append('|')
+				.append(book.getDescription()).append('|').append(book.getIsbn()).append('|')
+				.append(book.getNbOfPage());
+		for (Author author : book.getAuthors()) {
+			description.append('|').append(author.getId()).append(':').append(author.getName());
+		}
+		return description.toString();
+	}
+
+	private String write(Object entity) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		provider.writeTo(entity, entity.getClass(), entity.getClass(), NO_ANNOTATIONS,
+				MediaType.APPLICATION_JSON_TYPE, null, output);
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the books one at a time, as the streaming cursor does, which
+	 * only knows whether there is a next element.
+	 */
+	private static String stream(List<Book> books) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		JsonOutput json = new JsonOutput(output);
+		Iterator<Book> it = books.iterator();
+		if (!it.hasNext()) {
+			json.writeEmptyList("books");
+		} else {
+			Book first = it.next();
+			boolean array = it.hasNext();
+			json.writeListStart("books", "book", array);
+			json.writeElement(first, true);
+			while (it.hasNext()) {
+				json.writeElement(it.next(), false);
+			}
+			json.writeListEnd(array);
+		}
+		json.flush();
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Object read(Class<?> type, String json) throws IOException {
+		return provider.readFrom((Class)type, type, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE,
+				null, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static String writeWithJettison(Object entity) throws IOException {
+		MessageBodyWriter writer = jettison.getMessageBodyWriter(entity.getClass(), entity.getClass(),
+				NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.writeTo(entity, entity.getClass(), entity.getClass(), NO_ANNOTATIONS,
+				MediaType.APPLICATION_JSON_TYPE, new MultivaluedHashMap<String, Object>(), output);
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Object readWithJettison(Class<?> type, String json) throws IOException {
+		MessageBodyReader reader = jettison.getMessageBodyReader(type, type, NO_ANNOTATIONS,
+				MediaType.APPLICATION_JSON_TYPE);
+		return reader.readFrom(type, type, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE,
+				new MultivaluedHashMap<String, String>(),
+				new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,90 @@
+package com.cybercom.librarytest.search;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the BM25 search index.
+ */
+public class SearchIndexTest {
+
+	private SearchIndex index;
+
+	@Before
+	public void setUp() {
+		index = new SearchIndex();
+		index.put(1L, "Guards! Guards!", "They summon a dragon to strike fear into the people of Ankh-Morpork.");
+		index.put(2L, "The Colour of Magic", "A tourist, a wizard and a luggage on the Discworld.");
+		index.put(3L, "Dragon's Egg", "Life on the surface of a neutron star.");
+		index.put(4L, "Good Omens", "The coming of the End Times.");
+	}
+
+	@Test
+	public void shouldAnalyzeText() {
+		assertEquals(Arrays.asList("dragon", "egg", "cafe", "2001"),
+				TextAnalyzer.terms("The Dragon's Egg, a caf\u00e9 in 2001"));
+	}
+
+	@Test
+	public void shouldRankTitleMatchesFirst() {
+		assertEquals(Arrays.asList(3L, 1L), ids(index.search("dragon", 10)));
+	}
+
+	@Test
+	public void shouldRankDocumentsMatchingMoreTermsFirst() {
+		List<Long> ids = ids(index.search("dragon star", 10));
+		assertEquals(Arrays.asList(3L, 1L), ids);
+	}
+
+	@Test
+	public void shouldReturnAtMostLimitHits() {
+		assertEquals(Arrays.asList(3L), ids(index.search("dragon", 1)));
+		assertTrue(index.search("", 10).isEmpty());
+		assertTrue(index.search("the of a", 10).isEmpty());
+	}
+
+	@Test
+	public void shouldReplaceAndRemoveDocuments() {
+		index.put(3L, "Dragon's Egg", "Life on the surface of a neutron star.");
+		assertEquals(4, index.size());
+		index.put(3L, "Starquake", "The sequel.");
+		assertEquals(Arrays.asList(1L), ids(index.search("dragon", 10)));
+		index.remove(1L);
+		assertTrue(index.search("dragon", 10).isEmpty());
+		assertEquals(3, index.size());
+	}
+
+	@Test
+	public void shouldKeepResultsWhenDeletedDocumentsAreCompacted() {
+		for (long id = 100; id < 5100; id++) {
+			index.put(id, "Filler " + id, "Nothing to see.");
+		}
+		for (long id = 100; id < 5100; id++) {
+			index.remove(id);
+		}
+		index.put(5L, "Small Gods", "A dragon, once more.");
+		assertEquals(5, index.size());
+		assertEquals(Arrays.asList(1L, 3L, 5L), sorted(ids(index.search("dragon", 10))));
+		assertTrue(index.search("filler", 10).isEmpty());
+	}
+
+	private static List<Long> ids(List<SearchHit> hits) {
+		Long[] ids = new Long[hits.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = hits.get(i).getId();
+		}
+		return Arrays.asList(ids);
+	}
+
+	private static List<Long> sorted(List<Long> ids) {
+		Long[] array = ids.toArray(new Long[ids.size()]);
+		Arrays.sort(array);
+		return Arrays.asList(array);
+	}
+}